@@ -37,14 +37,17 @@ import com.badlogic.gdx.Preferences;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.g2d.Batch;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import com.github.antag99.aquarria.ui.IngameScreen;
 import com.github.antag99.aquarria.xnb.Steam;
 
 public class Aquarria extends Game {
-	private Batch batch;
+	private static final Profiler.Scope SCREEN_SCOPE = Profiler.scope("Screen.render");
+	private static final Profiler.Scope ACT_SCOPE = Profiler.scope("Stage.act");
+	private static final Profiler.Scope DRAW_SCOPE = Profiler.scope("Stage.draw");
+
+	private ProfilingSpriteBatch batch;
 	private Stage stage;
 	private ScreenViewport viewport;
 	private Preferences preferences;
@@ -53,10 +56,18 @@ public class Aquarria extends Game {
 	private FileHandle terrariaDirectory;
 
 	private IngameScreen ingameScreen;
+	private String replayPath;
 
 	public Aquarria() {
 	}
 
+	/**
+	 * Creates the game, recording the session to the given file
+	 */
+	public Aquarria(String replayPath) {
+		this.replayPath = replayPath;
+	}
+
 	private void processAssets() {
 		terrariaAssets = Gdx.files.local("assets-terraria");
 
@@ -103,7 +114,8 @@ public class Aquarria extends Game {
 		/* process vanilla terraria assets */
 		processAssets();
 
-		batch = new SpriteBatch();
+		batch = new ProfilingSpriteBatch();
+		Profiler.setBatch(batch);
 		viewport = new ScreenViewport();
 		stage = new Stage(viewport, batch);
 
@@ -111,6 +123,7 @@ public class Aquarria extends Game {
 
 		Assets.initialize();
 		GameRegistry.initialize();
+		GameRegistry.loadVisuals();
 		ingameScreen = new IngameScreen(this);
 
 		setScreen(ingameScreen);
@@ -124,6 +137,7 @@ public class Aquarria extends Game {
 	@Override
 	public void dispose() {
 		super.dispose();
+		Profiler.stopTrace();
 		ingameScreen.dispose();
 		Assets.dispose();
 		batch.dispose();
@@ -138,15 +152,33 @@ public class Aquarria extends Game {
 		return batch;
 	}
 
+	/**
+	 * Gets the local path the session is recorded to, or null
+	 */
+	public String getReplayPath() {
+		return replayPath;
+	}
+
 	@Override
 	public void render() {
+		Profiler.beginFrame();
+
 		Gdx.gl.glClearColor(0.6f, 0.6f, 1f, 1f);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
+		SCREEN_SCOPE.begin();
 		super.render();
+		SCREEN_SCOPE.end();
 
+		ACT_SCOPE.begin();
 		stage.act();
+		ACT_SCOPE.end();
+
+		DRAW_SCOPE.begin();
 		stage.draw();
+		DRAW_SCOPE.end();
+
+		Profiler.endFrame();
 	}
 
 	@Override
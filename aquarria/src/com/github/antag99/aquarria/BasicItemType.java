@@ -43,6 +43,7 @@ public class BasicItemType extends BasicType
 
 	private int maxStack;
 
+	private String iconPath;
 	private Sprite icon;
 
 	public BasicItemType() {
@@ -56,7 +57,15 @@ public class BasicItemType extends BasicType
 		height = jsonData.getFloat("height");
 
 		maxStack = jsonData.getInt("maxStack", 99);
-		icon = Assets.getSprite(jsonData.getString("icon", "null.png"));
+		iconPath = jsonData.getString("icon", "null.png");
+	}
+
+	@Override
+	protected void createVisuals() {
+		super.createVisuals();
+
+		if (iconPath != null)
+			icon = Assets.getSprite(iconPath);
 	}
 
 	@Override
@@ -97,6 +106,7 @@ public class BasicItemType extends BasicType
 
 	@Override
 	public Sprite getIcon() {
+		loadVisuals();
 		return icon;
 	}
 
@@ -29,9 +29,11 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldRegion;
 import com.github.antag99.aquarria.world.WorldView;
 
 /**
@@ -40,8 +42,11 @@ import com.github.antag99.aquarria.world.WorldView;
 public class BasicTileType extends BasicType
 		implements TileType, Json.Serializable {
 	private boolean solid = true;
+	private String sheetPath;
 	private SpriteSheet sheet;
 	private String drop;
+	private ItemType dropType;
+	private Color mapColor = new Color(Color.PINK);
 
 	public BasicTileType() {
 	}
@@ -51,8 +56,17 @@ public class BasicTileType extends BasicType
 		super.read(json, jsonData);
 
 		solid = jsonData.getBoolean("solid", true);
-		sheet = new SpriteSheet(Assets.getTexture(jsonData.getString("sheet", "null.png")), getGrid());
+		sheetPath = jsonData.getString("sheet", "null.png");
 		drop = jsonData.getString("drop", null);
+		mapColor = readMapColor(jsonData);
+	}
+
+	@Override
+	protected void createVisuals() {
+		super.createVisuals();
+
+		if (sheetPath != null)
+			sheet = new SpriteSheet(Assets.getTexture(sheetPath), getGrid());
 	}
 
 	/**
@@ -73,6 +87,7 @@ public class BasicTileType extends BasicType
 	}
 
 	public SpriteSheet getSheet() {
+		loadVisuals();
 		return sheet;
 	}
 
@@ -84,19 +99,46 @@ public class BasicTileType extends BasicType
 		return drop;
 	}
 
+	/**
+	 * Sets the id of the item dropped by this tile; it's resolved when the
+	 * type is linked.
+	 */
 	public void setDrop(String drop) {
 		this.drop = drop;
 	}
 
+	/**
+	 * Gets the item type dropped by this tile, or null if it drops nothing.
+	 */
+	public ItemType getDropType() {
+		return dropType;
+	}
+
+	@Override
+	public Color getMapColor() {
+		return mapColor;
+	}
+
+	public void setMapColor(Color mapColor) {
+		this.mapColor = mapColor;
+	}
+
+	@Override
+	public void link() {
+		dropType = drop != null ? GameRegistry.getItem(drop) : null;
+	}
+
 	@Override
 	public Sprite getTexture(WorldView worldView, int x, int y) {
-		World world = worldView.getWorld();
+		WorldRegion region = worldView.getRegion();
+		int index = region.index(x, y);
+		int stride = region.getStride();
 		BlockFrame frame = BlockFrame.findFrame(
-				y == 0 || world.getTileType(x, y + 1).isSolid(),
-				x + 1 == world.getWidth() || world.getTileType(x + 1, y).isSolid(),
-				y + 1 == world.getHeight() || world.getTileType(x, y - 1).isSolid(),
-				x == 0 || world.getTileType(x - 1, y).isSolid());
-		return sheet.getSprite(frame.getX(), frame.getY());
+				y + 1 == region.getHeight() || region.getTileType(index + stride).isSolid(),
+				x + 1 == region.getWidth() || region.getTileType(index + 1).isSolid(),
+				y == 0 || region.getTileType(index - stride).isSolid(),
+				x == 0 || region.getTileType(index - 1).isSolid());
+		return getSheet().getSprite(frame.getX(), frame.getY());
 	}
 
 	@Override
@@ -105,7 +147,15 @@ public class BasicTileType extends BasicType
 
 	@Override
 	public void destroyed(World world, int x, int y) {
-		if (getDrop() != null)
-			world.dropItem(new Item(GameRegistry.getItem(getDrop()), 1), x, y);
+		if (dropType != null)
+			world.dropItem(new Item(dropType, 1), x, y);
+	}
+
+	@Override
+	public void tick(World world, int x, int y) {
+	}
+
+	@Override
+	public void randomTick(World world, int x, int y) {
 	}
 }
@@ -29,6 +29,7 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 
@@ -40,6 +41,7 @@ public class BasicType
 		implements Type, Json.Serializable {
 	private String id;
 	private String name;
+	private boolean visualsLoaded;
 
 	public BasicType() {
 	}
@@ -68,6 +70,25 @@ public class BasicType
 		this.name = name;
 	}
 
+	@Override
+	public void link() {
+	}
+
+	@Override
+	public final void loadVisuals() {
+		if (!visualsLoaded) {
+			visualsLoaded = true;
+			createVisuals();
+		}
+	}
+
+	/**
+	 * Creates the visuals of this type, from the paths read from its definition.
+	 * Called once by {@link #loadVisuals()}; overriders should call super.
+	 */
+	protected void createVisuals() {
+	}
+
 	@Override
 	public void write(Json json) {
 		throw new UnsupportedOperationException();
@@ -78,4 +99,13 @@ public class BasicType
 		id = jsonData.getString("id");
 		name = jsonData.getString("name");
 	}
+
+	/**
+	 * Reads the map color of a tile or wall type, as a hex string;
+	 * types without one are pink, so that they stand out.
+	 */
+	protected static Color readMapColor(JsonValue jsonData) {
+		String mapColor = jsonData.getString("mapColor", null);
+		return mapColor != null ? Color.valueOf(mapColor) : new Color(Color.PINK);
+	}
 }
@@ -29,9 +29,11 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldRegion;
 import com.github.antag99.aquarria.world.WorldView;
 
 /**
@@ -39,7 +41,9 @@ import com.github.antag99.aquarria.world.WorldView;
  */
 public class BasicWallType extends BasicType
 		implements WallType, Json.Serializable {
+	private String sheetPath;
 	private SpriteSheet sheet;
+	private Color mapColor = new Color(Color.PINK);
 
 	public BasicWallType() {
 	}
@@ -48,10 +52,20 @@ public class BasicWallType extends BasicType
 	public void read(Json json, JsonValue jsonData) {
 		super.read(json, jsonData);
 
-		sheet = new SpriteSheet(Assets.getTexture(jsonData.getString("sheet", "null.png")), Assets.wallGrid);
+		sheetPath = jsonData.getString("sheet", "null.png");
+		mapColor = readMapColor(jsonData);
+	}
+
+	@Override
+	protected void createVisuals() {
+		super.createVisuals();
+
+		if (sheetPath != null)
+			sheet = new SpriteSheet(Assets.getTexture(sheetPath), Assets.wallGrid);
 	}
 
 	public SpriteSheet getSheet() {
+		loadVisuals();
 		return sheet;
 	}
 
@@ -59,15 +73,26 @@ public class BasicWallType extends BasicType
 		this.sheet = sheet;
 	}
 
+	@Override
+	public Color getMapColor() {
+		return mapColor;
+	}
+
+	public void setMapColor(Color mapColor) {
+		this.mapColor = mapColor;
+	}
+
 	@Override
 	public Sprite getTexture(WorldView worldView, int x, int y) {
-		World world = worldView.getWorld();
+		WorldRegion region = worldView.getRegion();
+		int index = region.index(x, y);
+		int stride = region.getStride();
 		BlockFrame frame = BlockFrame.findFrame(
-				y == 0 || world.getWallType(x, y + 1) != GameRegistry.airWall,
-				x + 1 == world.getWidth() || world.getWallType(x + 1, y) != GameRegistry.airWall,
-				y + 1 == world.getHeight() || world.getWallType(x, y - 1) != GameRegistry.airWall,
-				x == 0 || world.getWallType(x - 1, y) != GameRegistry.airWall);
-		return sheet.getSprite(frame.getX(), frame.getY());
+				y + 1 == region.getHeight() || region.getWallType(index + stride) != GameRegistry.airWall,
+				x + 1 == region.getWidth() || region.getWallType(index + 1) != GameRegistry.airWall,
+				y == 0 || region.getWallType(index - stride) != GameRegistry.airWall,
+				x == 0 || region.getWallType(index - 1) != GameRegistry.airWall);
+		return getSheet().getSprite(frame.getX(), frame.getY());
 	}
 
 	@Override
@@ -29,12 +29,14 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 import com.github.antag99.aquarria.entity.PlayerEntity;
 import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldRegion;
 import com.github.antag99.aquarria.world.WorldView;
 
 /**
@@ -42,7 +44,9 @@ import com.github.antag99.aquarria.world.WorldView;
  */
 public class BlockItemType extends BasicItemType
 		implements ItemType, TileType, Json.Serializable {
+	private String sheetPath;
 	private SpriteSheet sheet;
+	private Color mapColor = new Color(Color.PINK);
 
 	public BlockItemType() {
 	}
@@ -51,7 +55,25 @@ public class BlockItemType extends BasicItemType
 	public void read(Json json, JsonValue jsonData) {
 		super.read(json, jsonData);
 
-		sheet = new SpriteSheet(Assets.getTexture(jsonData.getString("sheet")), Assets.tileGrid);
+		sheetPath = jsonData.getString("sheet");
+		mapColor = readMapColor(jsonData);
+	}
+
+	@Override
+	protected void createVisuals() {
+		super.createVisuals();
+
+		if (sheetPath != null)
+			sheet = new SpriteSheet(Assets.getTexture(sheetPath), Assets.tileGrid);
+	}
+
+	public SpriteSheet getSheet() {
+		loadVisuals();
+		return sheet;
+	}
+
+	public void setSheet(SpriteSheet sheet) {
+		this.sheet = sheet;
 	}
 
 	// Tile-specific stuff
@@ -62,13 +84,24 @@ public class BlockItemType extends BasicItemType
 
 	@Override
 	public Sprite getTexture(WorldView worldView, int x, int y) {
-		World world = worldView.getWorld();
+		WorldRegion region = worldView.getRegion();
+		int index = region.index(x, y);
+		int stride = region.getStride();
 		BlockFrame frame = BlockFrame.findFrame(
-				y == 0 || world.getTileType(x, y + 1).isSolid(),
-				x + 1 == world.getWidth() || world.getTileType(x + 1, y).isSolid(),
-				y + 1 == world.getHeight() || world.getTileType(x, y - 1).isSolid(),
-				x == 0 || world.getTileType(x - 1, y).isSolid());
-		return sheet.getSprite(frame.getX(), frame.getY());
+				y + 1 == region.getHeight() || region.getTileType(index + stride).isSolid(),
+				x + 1 == region.getWidth() || region.getTileType(index + 1).isSolid(),
+				y == 0 || region.getTileType(index - stride).isSolid(),
+				x == 0 || region.getTileType(index - 1).isSolid());
+		return getSheet().getSprite(frame.getX(), frame.getY());
+	}
+
+	@Override
+	public Color getMapColor() {
+		return mapColor;
+	}
+
+	public void setMapColor(Color mapColor) {
+		this.mapColor = mapColor;
 	}
 
 	@Override
@@ -80,6 +113,14 @@ public class BlockItemType extends BasicItemType
 		world.dropItem(new Item(this, 1), x, y);
 	}
 
+	@Override
+	public void tick(World world, int x, int y) {
+	}
+
+	@Override
+	public void randomTick(World world, int x, int y) {
+	}
+
 	// Item-specific stuff
 	@Override
 	public float getUsageDelay() {
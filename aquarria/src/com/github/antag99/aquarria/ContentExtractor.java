@@ -29,9 +29,18 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.tools.texturepacker.TexturePacker;
 import com.badlogic.gdx.tools.texturepacker.TexturePacker.Settings;
+import com.badlogic.gdx.utils.Array;
 import com.github.antag99.aquarria.xnb.XnbExtractor;
 import com.github.antag99.aquarria.xnb.XnbFontExtractor;
 import com.github.antag99.aquarria.xnb.XnbSoundExtractor;
@@ -41,52 +50,167 @@ public class ContentExtractor {
 	private FileHandle contentDirectory;
 	private FileHandle outputAssetDirectory;
 
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/* Records the steps that were run previously; see ContentManifest */
+	private ContentManifest manifest;
+
+	private static final String MANIFEST_FILE = "manifest.json";
+
+	/** Minimum interval between progress reports, in nanoseconds */
+	private static final long REPORT_INTERVAL = 1000000000L;
+
 	public ContentExtractor(FileHandle contentDirectory, FileHandle outputAssetDirectory) {
 		this.contentDirectory = contentDirectory;
 		this.outputAssetDirectory = outputAssetDirectory;
 	}
 
 	/**
-	 * Extracts vanilla assets. This is only called once, as the raw
-	 * assets are not modified in any way. Always called if vanilla
-	 * assets have not been extracted when {@link ContentExtractor#convert()} is called.
+	 * Extracts vanilla assets. Files are only extracted if they have been
+	 * modified since they were last extracted, as the raw assets are not
+	 * modified in any way. Always called by {@link ContentExtractor#convert()}.
+	 * </p>
+	 * Files are extracted in parallel by {@link #getThreadCount()} workers. Extractors
+	 * carry decoding state, so every worker thread uses its own instances.
 	 */
 	public void extract() {
+		FileHandle manifestFile = outputAssetDirectory.child(MANIFEST_FILE);
+		manifest = ContentManifest.load(manifestFile);
+		try {
+			extractChanged();
+		} finally {
+			manifest.save(manifestFile);
+		}
+	}
+
+	private void extractChanged() {
 		FileHandle rawDir = outputAssetDirectory.child("raw");
 
-		XnbExtractor textureExtractor = new XnbTextureExtractor();
-		FileHandle rawImagesDir = rawDir.child("images");
+		Array<ExtractionJob> jobs = new Array<ExtractionJob>();
+
+		ThreadLocal<XnbExtractor> textureExtractor = new ThreadLocal<XnbExtractor>() {
+			@Override
+			protected XnbExtractor initialValue() {
+				return new XnbTextureExtractor();
+			}
+		};
+		addJobs(jobs, textureExtractor, contentDirectory.child("Images"), rawDir.child("images"), ".png");
+
+		ThreadLocal<XnbExtractor> fontExtractor = new ThreadLocal<XnbExtractor>() {
+			@Override
+			protected XnbExtractor initialValue() {
+				return new XnbFontExtractor();
+			}
+		};
+		addJobs(jobs, fontExtractor, contentDirectory.child("Fonts"), rawDir.child("fonts"), ".png");
+
+		ThreadLocal<XnbExtractor> soundExtractor = new ThreadLocal<XnbExtractor>() {
+			@Override
+			protected XnbExtractor initialValue() {
+				return new XnbSoundExtractor();
+			}
+		};
+		addJobs(jobs, soundExtractor, contentDirectory.child("Sounds"), rawDir.child("sound"), ".wav");
 
-		for (FileHandle image : contentDirectory.child("Images").list(".xnb")) {
-			textureExtractor.extract(image, rawImagesDir.child(image.nameWithoutExtension() + ".png"));
+		if (jobs.size != 0) {
+			runJobs(jobs);
+		} else {
+			System.out.println("Extracted assets are up to date");
 		}
+	}
 
-		XnbExtractor fontExtractor = new XnbFontExtractor();
-		FileHandle rawFontsDir = rawDir.child("fonts");
+	private void addJobs(Array<ExtractionJob> jobs, ThreadLocal<XnbExtractor> extractor,
+			FileHandle sourceDirectory, FileHandle destDirectory, String extension) {
+		for (FileHandle source : sourceDirectory.list(".xnb")) {
+			String step = "extract:" + sourceDirectory.name() + "/" + source.name();
+			String fingerprint = ContentManifest.fingerprint(source);
 
-		for (FileHandle font : contentDirectory.child("Fonts").list(".xnb")) {
-			fontExtractor.extract(font, rawFontsDir.child(font.nameWithoutExtension() + ".png"));
+			if (!manifest.isUpToDate(outputAssetDirectory, step, fingerprint)) {
+				String output = "raw/" + destDirectory.name() + "/" + source.nameWithoutExtension() + extension;
+				jobs.add(new ExtractionJob(extractor, source, outputAssetDirectory.child(output), step, fingerprint, output));
+			}
 		}
+	}
 
-		XnbExtractor soundExtractor = new XnbSoundExtractor();
-		FileHandle rawSoundDir = rawDir.child("sound");
+	private void runJobs(Array<ExtractionJob> jobs) {
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private int threadNumber = 0;
 
-		for (FileHandle sound : contentDirectory.child("Sounds").list(".xnb")) {
-			soundExtractor.extract(sound, rawSoundDir.child(sound.nameWithoutExtension() + ".wav"));
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Content Extractor " + ++threadNumber);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			CompletionService<ExtractionJob> completionService = new ExecutorCompletionService<ExtractionJob>(executor);
+			for (ExtractionJob job : jobs) {
+				completionService.submit(job);
+			}
+
+			long startTime = System.nanoTime();
+			long lastReportTime = startTime;
+			long bytesExtracted = 0;
+
+			for (int i = 1; i <= jobs.size; ++i) {
+				ExtractionJob job;
+				try {
+					job = completionService.take().get();
+				} catch (ExecutionException ex) {
+					throw new RuntimeException("Error extracting assets", ex.getCause());
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while extracting assets", ex);
+				}
+
+				bytesExtracted += job.sourceLength;
+				manifest.put(job.step, job.fingerprint, Array.with(job.output));
+
+				long time = System.nanoTime();
+				if (time - lastReportTime >= REPORT_INTERVAL || i == jobs.size) {
+					float seconds = Math.max(time - startTime, 1L) / 1000000000f;
+					System.out.println(String.format("Extracted %d/%d files (%.1f files/s, %.1f MB/s)",
+							i, jobs.size, i / seconds, bytesExtracted / (1024f * 1024f) / seconds));
+					lastReportTime = time;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
 		}
 	}
 
+	/**
+	 * Gets the amount of worker threads used for extracting assets.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Sets the amount of worker threads used for extracting assets;
+	 * defaults to the amount of available processors.
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException("threadCount < 1");
+
+		this.threadCount = threadCount;
+	}
+
 	/**
 	 * Converts the raw vanilla assets into a more suitable format.
 	 * For example, splitting sprite sheets into the individual
 	 * images and moving files to proper locations.
+	 * </p>
+	 * Steps whose inputs have not changed since the last conversion are skipped,
+	 * and outputs of steps that no longer exist are deleted.
 	 */
 	public void convert() {
-		if (!outputAssetDirectory.child("raw").exists()) {
-			// Extract vanilla assets if not present
-			extract();
-		} else {
-			// Delete already existing processed assets
+		FileHandle manifestFile = outputAssetDirectory.child(MANIFEST_FILE);
+		if (!manifestFile.exists()) {
+			// Nothing is known about already existing processed assets; delete them
 			for (FileHandle directory : outputAssetDirectory.list()) {
 				if (!directory.name().equals("raw")) {
 					directory.deleteDirectory();
@@ -94,6 +218,17 @@ public class ContentExtractor {
 			}
 		}
 
+		manifest = ContentManifest.load(manifestFile);
+		try {
+			convertChanged();
+		} finally {
+			manifest.save(manifestFile);
+		}
+	}
+
+	private void convertChanged() {
+		extractChanged();
+
 		copy("images/Tiles_0.png", "images/tiles/dirt.png");
 		copy("images/Tiles_1.png", "images/tiles/stone.png");
 		copy("images/Tiles_2.png", "images/tiles/grass.png");
@@ -174,14 +309,52 @@ public class ContentExtractor {
 		// liquidImageCropper.resize(outputAssetDirectory.child("images/tiles/lava.png"));
 
 		// Create texture atlas for all UI images
-		createAtlas(outputAssetDirectory.child("images/ui/"), "ui");
+		createAtlas("images/ui", "ui");
+
+		for (String output : manifest.removeStale()) {
+			outputAssetDirectory.child(output).delete();
+		}
 	}
 
 	private void copy(String rawSource, String destination) {
-		outputAssetDirectory.child("raw/" + rawSource).copyTo(outputAssetDirectory.child(destination));
+		FileHandle source = outputAssetDirectory.child("raw/" + rawSource);
+		String step = "copy:" + destination;
+		String fingerprint = ContentManifest.fingerprint(source);
+
+		if (!manifest.isUpToDate(outputAssetDirectory, step, fingerprint)) {
+			source.copyTo(outputAssetDirectory.child(destination));
+			manifest.put(step, fingerprint, Array.with(destination));
+		}
 	}
 
-	private void createAtlas(FileHandle directory, String atlasName) {
+	private void createAtlas(String directoryPath, String atlasName) {
+		FileHandle directory = outputAssetDirectory.child(directoryPath);
+		String step = "atlas:" + directoryPath + "/" + atlasName;
+
+		// The atlas is written to the directory it is created from,
+		// so the previous atlas must not be treated as an input.
+		// Subdirectories are packed too, so their files are inputs.
+		Array<String> previousOutputs = manifest.getOutputs(step);
+		Array<FileHandle> inputs = new Array<FileHandle>();
+		for (FileHandle file : directory.list()) {
+			if (file.isDirectory()) {
+				listFiles(file, inputs);
+			} else if (previousOutputs == null || !previousOutputs.contains(directoryPath + "/" + file.name(), false)) {
+				inputs.add(file);
+			}
+		}
+
+		String fingerprint = ContentManifest.fingerprint(directory, inputs);
+		if (manifest.isUpToDate(outputAssetDirectory, step, fingerprint)) {
+			return;
+		}
+
+		if (previousOutputs != null) {
+			for (String output : previousOutputs) {
+				outputAssetDirectory.child(output).delete();
+			}
+		}
+
 		Settings settings = new Settings();
 		settings.minWidth = 32;
 		settings.minHeight = 32;
@@ -196,5 +369,57 @@ public class ContentExtractor {
 		String packFileName = atlasName;
 
 		TexturePacker.process(settings, inputDirectory, outputDirectory, packFileName);
+
+		Array<String> outputs = new Array<String>();
+		for (FileHandle file : directory.list()) {
+			if (!file.isDirectory() && !inputs.contains(file, false)) {
+				outputs.add(directoryPath + "/" + file.name());
+			}
+		}
+		manifest.put(step, fingerprint, outputs);
+	}
+
+	/**
+	 * Adds all files in the given directory and its subdirectories to the given array
+	 */
+	private static void listFiles(FileHandle directory, Array<FileHandle> files) {
+		for (FileHandle file : directory.list()) {
+			if (file.isDirectory()) {
+				listFiles(file, files);
+			} else {
+				files.add(file);
+			}
+		}
+	}
+
+	private static class ExtractionJob implements Callable<ExtractionJob> {
+		final ThreadLocal<XnbExtractor> extractor;
+		final FileHandle source;
+		final FileHandle dest;
+		final String step;
+		final String fingerprint;
+		final String output;
+		long sourceLength;
+
+		ExtractionJob(ThreadLocal<XnbExtractor> extractor, FileHandle source, FileHandle dest,
+				String step, String fingerprint, String output) {
+			this.extractor = extractor;
+			this.source = source;
+			this.dest = dest;
+			this.step = step;
+			this.fingerprint = fingerprint;
+			this.output = output;
+		}
+
+		@Override
+		public ExtractionJob call() {
+			try {
+				extractor.get().extract(source, dest);
+			} catch (RuntimeException ex) {
+				throw new RuntimeException("Error extracting " + source.path(), ex);
+			}
+			sourceLength = source.length();
+			return this;
+		}
 	}
 }
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/**
+ * Records the inputs and outputs of every content conversion step, so that
+ * steps whose inputs have not changed since the last run can be skipped.
+ * </p>
+ * Inputs are identified by a <em>fingerprint</em>, a hash of the size and
+ * modification time of the input files; comparing it requires no file contents
+ * to be read. Outputs are stored as paths relative to the asset directory.
+ */
+public class ContentManifest implements Json.Serializable {
+	private static final Charset utf8 = Charset.forName("UTF-8");
+
+	private ObjectMap<String, Entry> entries = new ObjectMap<String, Entry>();
+
+	/* Steps that have been recorded or verified since the manifest was loaded */
+	private ObjectSet<String> current = new ObjectSet<String>();
+
+	public ContentManifest() {
+	}
+
+	/**
+	 * Loads the manifest from the given file, or returns an
+	 * empty manifest if the file does not exist.
+	 */
+	public static ContentManifest load(FileHandle file) {
+		if (!file.exists()) {
+			return new ContentManifest();
+		}
+
+		return new Json().fromJson(ContentManifest.class, file);
+	}
+
+	/**
+	 * Saves the manifest to the given file.
+	 */
+	public void save(FileHandle file) {
+		file.writeString(new Json().prettyPrint(this), false, "UTF-8");
+	}
+
+	/**
+	 * Checks whether the given step has been run with the same inputs, and
+	 * its outputs still exist. Up to date steps are kept by {@link #removeStale()}.
+	 * 
+	 * @param directory The directory the outputs are relative to
+	 * @param step The identifier of the step
+	 * @param fingerprint The fingerprint of the step's inputs
+	 * @return Whether the step can be skipped
+	 */
+	public boolean isUpToDate(FileHandle directory, String step, String fingerprint) {
+		Entry entry = entries.get(step);
+		if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+			return false;
+		}
+
+		for (String output : entry.outputs) {
+			if (!directory.child(output).exists()) {
+				return false;
+			}
+		}
+
+		current.add(step);
+		return true;
+	}
+
+	/**
+	 * Records that the given step has been run.
+	 * 
+	 * @param step The identifier of the step
+	 * @param fingerprint The fingerprint of the step's inputs
+	 * @param outputs The outputs of the step, relative to the asset directory
+	 */
+	public void put(String step, String fingerprint, Array<String> outputs) {
+		Entry entry = new Entry();
+		entry.fingerprint = fingerprint;
+		entry.outputs = outputs;
+		entries.put(step, entry);
+		current.add(step);
+	}
+
+	/**
+	 * Gets the outputs that were recorded for the given step,
+	 * or null if the step has not been run.
+	 */
+	public Array<String> getOutputs(String step) {
+		Entry entry = entries.get(step);
+		return entry != null ? entry.outputs : null;
+	}
+
+	/**
+	 * Removes all steps that have neither been recorded nor verified
+	 * since this manifest was loaded.
+	 * 
+	 * @return The outputs of the removed steps, which should be deleted
+	 */
+	public Array<String> removeStale() {
+		Array<String> staleOutputs = new Array<String>();
+		for (ObjectMap.Entries<String, Entry> iter = entries.entries(); iter.hasNext();) {
+			ObjectMap.Entry<String, Entry> entry = iter.next();
+			if (!current.contains(entry.key)) {
+				staleOutputs.addAll(entry.value.outputs);
+				iter.remove();
+			}
+		}
+		return staleOutputs;
+	}
+
+	/**
+	 * Computes the fingerprint of a single input file.
+	 */
+	public static String fingerprint(FileHandle file) {
+		return Long.toHexString(file.length()) + ":" + Long.toHexString(file.lastModified());
+	}
+
+	/**
+	 * Computes the fingerprint of a set of input files in the given directory,
+	 * which are identified by their path relative to it; the order of the
+	 * files does not matter.
+	 */
+	public static String fingerprint(FileHandle directory, Array<FileHandle> files) {
+		String directoryPath = directory.path() + "/";
+		String[] fingerprints = new String[files.size];
+		for (int i = 0; i < files.size; ++i) {
+			FileHandle file = files.get(i);
+			String path = file.path().startsWith(directoryPath) ? file.path().substring(directoryPath.length()) : file.path();
+			fingerprints[i] = path + "=" + fingerprint(file) + ";";
+		}
+		Arrays.sort(fingerprints);
+
+		CRC32 crc = new CRC32();
+		for (String fingerprint : fingerprints) {
+			crc.update(fingerprint.getBytes(utf8));
+		}
+		return Long.toHexString(crc.getValue()) + ":" + Integer.toHexString(files.size);
+	}
+
+	@Override
+	public void write(Json json) {
+		json.writeObjectStart("entries");
+		for (ObjectMap.Entry<String, Entry> entry : entries) {
+			json.writeObjectStart(entry.key);
+			json.writeValue("fingerprint", entry.value.fingerprint);
+			json.writeArrayStart("outputs");
+			for (String output : entry.value.outputs) {
+				json.writeValue(output);
+			}
+			json.writeArrayEnd();
+			json.writeObjectEnd();
+		}
+		json.writeObjectEnd();
+	}
+
+	@Override
+	public void read(Json json, JsonValue jsonData) {
+		entries.clear();
+		current.clear();
+
+		for (JsonValue value : jsonData.get("entries")) {
+			Entry entry = new Entry();
+			entry.fingerprint = value.getString("fingerprint");
+			entry.outputs = new Array<String>(value.get("outputs").asStringArray());
+			entries.put(value.name(), entry);
+		}
+	}
+
+	private static class Entry {
+		String fingerprint;
+		Array<String> outputs;
+	}
+}
@@ -29,16 +29,20 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
-import java.util.regex.Pattern;
-
-import org.reflections.Reflections;
-import org.reflections.scanners.ResourcesScanner;
-import org.reflections.util.ClasspathHelper;
-import org.reflections.util.ConfigurationBuilder;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.ObjectMap;
 
 public final class GameRegistry {
@@ -46,6 +50,19 @@ public final class GameRegistry {
 	public static TileType airTile;
 	public static WallType airWall;
 
+	// Types referred to by the game itself, resolved when the registry is linked
+	public static TileType stoneTile;
+	public static TileType dirtTile;
+	public static TileType grassTile;
+	public static TileType treeTile;
+	public static WallType dirtWall;
+	public static ItemType pickaxeItem;
+	public static ItemType hammerItem;
+	public static ItemType dirtItem;
+	public static ItemType stoneItem;
+	public static ItemType dirtWallItem;
+	public static ItemType stoneWallItem;
+
 	private GameRegistry() { /* Don't instantiate */
 	}
 
@@ -54,67 +71,187 @@ public final class GameRegistry {
 	 */
 	private static ObjectMap<Class<? extends Type>, ObjectMap<String, Type>> instances = new ObjectMap<>();
 
+	/*
+	 * All registered types, in registration order
+	 */
+	private static Array<Type> types = new Array<>();
+
 	/*
 	 * Type that is used on id clashes, which quite easy happens for the root interface Type.
 	 * Attempting to access types that have the same id on a certain level in the hierarchy
 	 * is prohibited.
 	 */
-	private static final Type AMBIGOUS = null;
+	private static final Type AMBIGOUS = new BasicType();
 
 	/*
-	 * Reflections instance, used to get metadata
+	 * Index of type definition files, generated by the build
 	 */
-	private static Reflections reflections;
+	private static final String TYPE_INDEX = "types.index";
 
 	/*
-	 * Json instance, used to parse configuration files
+	 * Directories containing type definitions, listed when there is no index
 	 */
-	private static Json json;
+	private static final String[] TYPE_DIRECTORIES = { "items", "tiles", "walls" };
 
 	/*
-	 * Initializes all types
+	 * Initializes all types. Only game data is loaded, so this does not need
+	 * a GL context; see loadVisuals().
 	 */
 	public static void initialize() {
-		// Scan for json configuration files on the classpath
-		ConfigurationBuilder builder = new ConfigurationBuilder();
-		builder.setScanners(new ResourcesScanner());
-		builder.setUrls(ClasspathHelper.forClassLoader(
-				ClasspathHelper.contextClassLoader(),
-				ClasspathHelper.staticClassLoader()));
-
-		reflections = new Reflections(builder);
-		json = new Json();
-		for (String path : reflections.getResources(Pattern.compile(".*\\.json"))) {
-			if (!path.startsWith("items") && !path.startsWith("tiles") && !path.startsWith("walls"))
-				continue;
-
-			FileHandle file = Gdx.files.internal(path);
-			Type type = json.fromJson(null, file);
+		Array<FileHandle> files = findTypeFiles();
+		Array<Type> types = readTypeFiles(files);
+
+		for (Type type : types) {
+			registerType(type);
+		}
+
+		link();
+	}
+
+	/*
+	 * Loads the textures of all types, so that they are not loaded while
+	 * rendering. Has to be called on the GL thread.
+	 */
+	public static void loadVisuals() {
+		for (Type type : types) {
+			type.loadVisuals();
+		}
+	}
+
+	/*
+	 * Initializes the registry with the given types instead of loading them from
+	 * the type definitions; used to run the game logic without any assets.
+	 */
+	public static void initialize(Array<? extends Type> types) {
+		for (Type type : types) {
 			registerType(type);
 		}
 
+		link();
+	}
+
+	/*
+	 * Resolves all references by id, both those of the game and those between
+	 * types, so that no lookups are done in-game. Missing types fail here.
+	 */
+	private static void link() {
 		airItem = getItem("airItem");
 		airTile = getTile("airTile");
 		airWall = getWall("airWall");
+
+		stoneTile = getTile("stone");
+		dirtTile = getTile("dirt");
+		grassTile = getTile("grass");
+		treeTile = getTile("tree");
+		dirtWall = getWall("dirtWall");
+		pickaxeItem = getItem("pickaxe");
+		hammerItem = getItem("hammer");
+		dirtItem = getItem("dirt");
+		stoneItem = getItem("stone");
+		dirtWallItem = getItem("dirtWall");
+		stoneWallItem = getItem("stoneWall");
+
+		for (Type type : types) {
+			type.link();
+		}
+	}
+
+	/*
+	 * Gets the type definition files from the index, or by listing the type
+	 * directories when running from the assets directory without a build.
+	 */
+	private static Array<FileHandle> findTypeFiles() {
+		Array<FileHandle> files = new Array<>();
+		FileHandle index = Gdx.files.internal(TYPE_INDEX);
+		if (index.exists()) {
+			for (String path : index.readString("UTF-8").split("\n")) {
+				path = path.trim();
+				if (!path.isEmpty())
+					files.add(Gdx.files.internal(path));
+			}
+		} else {
+			for (String directory : TYPE_DIRECTORIES) {
+				for (FileHandle file : Gdx.files.internal(directory).list(".json"))
+					files.add(file);
+			}
+		}
+
+		// Directories can't be listed on the classpath, such as inside a jar,
+		// so that only works with the index
+		if (files.size == 0) {
+			throw new RuntimeException("No type definitions found: " + TYPE_INDEX + " is missing, and "
+					+ Arrays.toString(TYPE_DIRECTORIES) + " could not be listed; build the resources to generate the index");
+		}
+		return files;
+	}
+
+	/*
+	 * Reads the types from the given files in parallel; the results are in the same order.
+	 */
+	private static Array<Type> readTypeFiles(Array<FileHandle> files) {
+		int threadCount = Math.max(1, Math.min(files.size, Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private int threadNumber = 0;
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Registry Loader " + ++threadNumber);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			Array<Future<Type>> futures = new Array<>(files.size);
+			for (final FileHandle file : files) {
+				futures.add(executor.submit(new Callable<Type>() {
+					@Override
+					public Type call() {
+						JsonValue definition = new JsonReader().parse(file);
+						return new Json().readValue(Type.class, definition);
+					}
+				}));
+			}
+
+			Array<Type> types = new Array<>(files.size);
+			for (int i = 0; i < files.size; ++i) {
+				try {
+					types.add(futures.get(i).get());
+				} catch (ExecutionException ex) {
+					throw new RuntimeException("Error reading " + files.get(i).path(), ex.getCause());
+				}
+			}
+			return types;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} finally {
+			executor.shutdownNow();
+		}
 	}
 
+	/*
+	 * Registers the given type. Types registered after initialization have to
+	 * be linked by the caller.
+	 */
 	@SuppressWarnings("unchecked")
 	public static void registerType(Type type) {
+		types.add(type);
 		registerType(type, (Class<Type>) type.getClass());
 	}
 
 	@SuppressWarnings("unchecked")
 	public static <T extends Type> ObjectMap<String, T> getTypes(Class<T> typeClass) {
-		if (!instances.containsKey(typeClass))
-			instances.put(typeClass, new ObjectMap<String, Type>());
-		return (ObjectMap<String, T>) instances.get(typeClass);
+		ObjectMap<String, Type> types = instances.get(typeClass);
+		if (types == null)
+			instances.put(typeClass, types = new ObjectMap<String, Type>());
+		return (ObjectMap<String, T>) types;
 	}
 
 	public static <T extends Type> T getType(Class<T> typeClass, String id) {
-		ObjectMap<String, T> types = getTypes(typeClass);
-		if (!types.containsKey(id))
+		T type = getTypes(typeClass).get(id);
+		if (type == null)
 			throw new IllegalArgumentException(typeClass.getSimpleName() + " " + id + " has not been registered");
-		T type = types.get(id);
 		if (type == AMBIGOUS)
 			throw new IllegalArgumentException(typeClass.getSimpleName() + " " + id + " is ambigous");
 		return type;
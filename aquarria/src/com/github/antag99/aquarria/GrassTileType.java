@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Json;
+import com.github.antag99.aquarria.world.World;
+
+/**
+ * Grass turns back into dirt when covered, and spreads
+ * slowly to uncovered dirt next to it.
+ */
+public class GrassTileType extends BasicTileType
+		implements TileType, Json.Serializable {
+
+	public GrassTileType() {
+	}
+
+	@Override
+	public void randomTick(World world, int x, int y) {
+		if (isCovered(world, x, y)) {
+			world.setTileType(x, y, GameRegistry.dirtTile);
+			return;
+		}
+
+		RandomXS128 random = world.getRandom();
+		int targetX = x + random.nextInt(3) - 1;
+		int targetY = y + random.nextInt(3) - 1;
+
+		if (world.inBounds(targetX, targetY) &&
+				world.getTileType(targetX, targetY) == GameRegistry.dirtTile &&
+				!isCovered(world, targetX, targetY)) {
+			world.setTileType(targetX, targetY, this);
+		}
+	}
+
+	private static boolean isCovered(World world, int x, int y) {
+		return y + 1 < world.getHeight() && world.getTileType(x, y + 1).isSolid();
+	}
+}
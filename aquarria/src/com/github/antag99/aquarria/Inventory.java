@@ -29,15 +29,92 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
-/** Fixed-size item container */
+import java.util.BitSet;
+
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Fixed-size item container.
+ * <p>
+ * Empty slots, and the non-full slots of every item type, are indexed; the
+ * index is kept up to date as slots change, also when they are modified
+ * through {@link #getItem(int)}. Items are always moved to the first
+ * matching slot.
+ * </p>
+ */
 public class Inventory {
-	private Item[] items;
+	private Slot[] items;
+
+	/** Indices of the empty slots */
+	private BitSet emptySlots;
+	/** Indices of the non-empty, non-full slots of each item type */
+	private ObjectMap<ItemType, BitSet> partialSlots = new ObjectMap<>();
+	/** Type under which each slot is indexed in partialSlots, or null */
+	private ItemType[] partialTypes;
+
+	private int modificationCount;
 
 	/** Creates a new inventory with the given capacity */
 	public Inventory(int size) {
-		items = new Item[size];
-		for (int i = 0; i < size; ++i)
-			items[i] = new Item();
+		items = new Slot[size];
+		emptySlots = new BitSet(size);
+		partialTypes = new ItemType[size];
+		for (int i = 0; i < size; ++i) {
+			items[i] = new Slot(this, i);
+			emptySlots.set(i);
+		}
+	}
+
+	/**
+	 * Moves as much as possible of the given item onto existing stacks of the
+	 * same type in this inventory. The item is modified in place.
+	 * 
+	 * @return The amount of items that were moved
+	 */
+	public int stack(Item item) {
+		BitSet slots = partialSlots.get(item.getType());
+		if (slots == null)
+			return 0;
+
+		int moved = 0;
+		for (int i = slots.nextSetBit(0); i >= 0 && !item.isEmpty(); i = slots.nextSetBit(i + 1)) {
+			Slot slot = items[i];
+			int amount = Math.min(item.getStack(), item.getType().getMaxStack() - slot.getStack());
+			slot.setStack(slot.getStack() + amount);
+			moved += amount;
+			item.setStack(item.getStack() - amount);
+		}
+		return moved;
+	}
+
+	/**
+	 * Moves the given item into the first empty slot of this inventory.
+	 * The item is modified in place.
+	 * 
+	 * @return The amount of items that were moved
+	 */
+	public int put(Item item) {
+		int index = emptySlots.nextSetBit(0);
+		if (index < 0 || item.isEmpty())
+			return 0;
+
+		int moved = item.getStack();
+		items[index].set(item);
+		item.setStack(0);
+		return moved;
+	}
+
+	/**
+	 * First moves the given item onto existing stacks of the same type,
+	 * then moves the rest into an empty slot. The item is modified in place.
+	 * 
+	 * @return The amount of items that were moved
+	 */
+	public int add(Item item) {
+		int moved = stack(item);
+		if (!item.isEmpty())
+			moved += put(item);
+		return moved;
 	}
 
 	/**
@@ -47,14 +124,7 @@ public class Inventory {
 	 */
 	public Item stackItem(Item item) {
 		item = item.copy();
-		for (int i = 0; i < items.length; ++i) {
-			Item slot = items[i];
-			if (slot.getType() == item.getType() && !slot.isEmpty() && slot.getStack() != slot.getType().getMaxStack()) {
-				item.stackTo(slot);
-				if (item.isEmpty())
-					break;
-			}
-		}
+		stack(item);
 		return item;
 	}
 
@@ -65,13 +135,7 @@ public class Inventory {
 	 */
 	public Item putItem(Item item) {
 		item = item.copy();
-		for (int i = 0; i < items.length; ++i) {
-			Item slot = items[i];
-			if (slot.isEmpty()) {
-				item.stackTo(slot);
-				break;
-			}
-		}
+		put(item);
 		return item;
 	}
 
@@ -82,10 +146,8 @@ public class Inventory {
 	 * @return A new item stack containing the items that could not be added
 	 */
 	public Item addItem(Item item) {
-		item = stackItem(item);
-		if (!item.isEmpty()) {
-			item = putItem(item);
-		}
+		item = item.copy();
+		add(item);
 		return item;
 	}
 
@@ -101,4 +163,76 @@ public class Inventory {
 	public void setItem(int index, Item item) {
 		items[index].set(item);
 	}
+
+	/**
+	 * Sets the contents of this inventory to those of the given inventory,
+	 * which must have the same capacity. Only the slots that differ are
+	 * changed, so the modification count stays the same if none do.
+	 */
+	public void set(Inventory inventory) {
+		if (inventory.items.length != items.length) {
+			throw new IllegalArgumentException("Inventory size " + inventory.items.length + " != " + items.length);
+		}
+
+		for (int i = 0; i < items.length; ++i) {
+			Item item = inventory.items[i];
+			if (items[i].getType() != item.getType() || items[i].getStack() != item.getStack()) {
+				items[i].set(item);
+			}
+		}
+	}
+
+	/** Gets the capacity of this inventory */
+	public int getSize() {
+		return items.length;
+	}
+
+	/**
+	 * Gets a counter that is incremented whenever a slot changes;
+	 * can be used to find out whether views are up to date.
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+
+	private void slotChanged(int index) {
+		modificationCount++;
+
+		Slot slot = items[index];
+		ItemType oldType = partialTypes[index];
+		ItemType newType = null;
+		if (!slot.isEmpty() && slot.getStack() < slot.getType().getMaxStack()) {
+			newType = slot.getType();
+		}
+
+		if (oldType != newType) {
+			if (oldType != null)
+				partialSlots.get(oldType).clear(index);
+			if (newType != null) {
+				BitSet slots = partialSlots.get(newType);
+				if (slots == null)
+					partialSlots.put(newType, slots = new BitSet(items.length));
+				slots.set(index);
+			}
+			partialTypes[index] = newType;
+		}
+
+		emptySlots.set(index, slot.isEmpty());
+	}
+
+	/** Item that reports changes to the index of its inventory */
+	private static class Slot extends Item {
+		private final Inventory inventory;
+		private final int index;
+
+		public Slot(Inventory inventory, int index) {
+			this.inventory = inventory;
+			this.index = index;
+		}
+
+		@Override
+		protected void changed() {
+			inventory.slotChanged(index);
+		}
+	}
 }
@@ -56,6 +56,7 @@ public class Item {
 
 	public void setType(ItemType type) {
 		this.type = type;
+		changed();
 	}
 
 	public int getStack() {
@@ -64,6 +65,7 @@ public class Item {
 
 	public void setStack(int stack) {
 		this.stack = stack;
+		changed();
 	}
 
 	public boolean isEmpty() {
@@ -73,6 +75,13 @@ public class Item {
 	public void set(Item item) {
 		type = item.type;
 		stack = item.stack;
+		changed();
+	}
+
+	public void set(ItemType type, int stack) {
+		this.type = type;
+		this.stack = stack;
+		changed();
 	}
 
 	public void stackTo(Item item) {
@@ -91,6 +100,15 @@ public class Item {
 			type = tmpType;
 			stack = tmpStack;
 		}
+		item.changed();
+		changed();
+	}
+
+	/**
+	 * Called after the type or stack of this item has changed;
+	 * allows containers to keep track of their contents.
+	 */
+	protected void changed() {
 	}
 
 	@Override
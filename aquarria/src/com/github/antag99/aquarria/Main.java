@@ -39,6 +39,13 @@ class Main {
 		cfg.width = 800;
 		cfg.height = 600;
 
-		new LwjglApplication(new Aquarria(), cfg);
+		String replayPath = null;
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("--record") && i + 1 < args.length) {
+				replayPath = args[++i];
+			}
+		}
+
+		new LwjglApplication(new Aquarria(replayPath), cfg);
 	}
 }
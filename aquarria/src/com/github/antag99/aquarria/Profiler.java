@@ -0,0 +1,439 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.StringBuilder;
+
+/**
+ * Per-frame hierarchical profiler. Code is measured by named {@link Scope}s,
+ * which are nested in the order they are entered. The time spent in each
+ * scope is recorded for the last {@link #HISTORY} frames, along with the
+ * number of render calls and sprites of the {@link ProfilingSpriteBatch}.
+ * <p>
+ * Scopes entered on the simulation thread are recorded per tick instead,
+ * between {@link #beginTick()} and {@link #endTick()}, and are reported as
+ * a separate section. A scope belongs to the thread it is first entered on.
+ * </p>
+ * <p>
+ * Scopes are free apart from a field read while the profiler is disabled.
+ * Frames and ticks can also be written to a CSV file, one line each.
+ * </p>
+ */
+public final class Profiler {
+	/** Number of frames and ticks kept for averages and percentiles */
+	public static final int HISTORY = 300;
+
+	private static final int MAX_DEPTH = 32;
+	private static final int NAME_WIDTH = 32;
+
+	private static Array<Scope> scopes = new Array<>();
+	private static ObjectMap<String, Scope> scopesByName = new ObjectMap<>();
+
+	private static boolean enabled;
+	/* Whether frames are being recorded, because of the overlay or tracing */
+	private static volatile boolean active;
+
+	/* Frames of the render thread, and ticks of the simulation thread */
+	private static final Timeline frames = new Timeline("frame");
+	private static final Timeline ticks = new Timeline("tick");
+
+	private static int[] renderCalls = new int[HISTORY];
+	private static int[] sprites = new int[HISTORY];
+
+	private static ProfilingSpriteBatch batch;
+	private static int lastRenderCalls;
+	private static long lastSprites;
+
+	private static Writer trace;
+	private static int traceScopeCount;
+
+	private static float[] sortedTimes = new float[HISTORY];
+
+	private Profiler() {
+	}
+
+	/**
+	 * Gets the scope with the given name, creating it if it doesn't exist yet.
+	 * Scopes should be looked up once and kept in static fields.
+	 */
+	public static synchronized Scope scope(String name) {
+		Scope scope = scopesByName.get(name);
+		if (scope == null) {
+			scope = new Scope(name);
+			scopesByName.put(name, scope);
+			scopes.add(scope);
+		}
+		return scope;
+	}
+
+	/** Sets whether frames are recorded for the overlay */
+	public static synchronized void setEnabled(boolean enabled) {
+		Profiler.enabled = enabled;
+		active = enabled || trace != null;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/** Sets the batch whose render calls and sprites are counted */
+	public static void setBatch(ProfilingSpriteBatch batch) {
+		Profiler.batch = batch;
+	}
+
+	/** Starts a new frame; scopes of the render thread are only measured within frames */
+	public static void beginFrame() {
+		if (!active)
+			return;
+
+		if (batch != null) {
+			lastRenderCalls = batch.totalRenderCalls;
+			lastSprites = batch.getTotalSprites();
+		}
+		frames.begin();
+	}
+
+	/** Ends the current frame, recording the time spent in each scope */
+	public static synchronized void endFrame() {
+		if (!frames.recording)
+			return;
+
+		int slot = frames.end();
+		if (batch != null) {
+			renderCalls[slot] = batch.totalRenderCalls - lastRenderCalls;
+			sprites[slot] = (int) (batch.getTotalSprites() - lastSprites);
+		}
+
+		if (trace != null) {
+			writeTrace(frames, slot);
+		}
+		frames.count++;
+	}
+
+	/**
+	 * Starts a new simulation tick; scopes of the simulation thread
+	 * are only measured within ticks.
+	 */
+	public static void beginTick() {
+		if (!active)
+			return;
+
+		ticks.begin();
+	}
+
+	/** Ends the current simulation tick, recording the time spent in each scope */
+	public static synchronized void endTick() {
+		if (!ticks.recording)
+			return;
+
+		int slot = ticks.end();
+		if (trace != null) {
+			writeTrace(ticks, slot);
+		}
+		ticks.count++;
+	}
+
+	/** Starts writing every frame and tick to the given CSV file */
+	public static synchronized void startTrace(FileHandle file) {
+		stopTrace();
+
+		trace = new BufferedWriter(file.writer(false, "UTF-8"));
+		traceScopeCount = scopes.size;
+		try {
+			trace.write("section,index,total,renderCalls,sprites");
+			for (int i = 0; i < traceScopeCount; ++i) {
+				trace.write(',');
+				trace.write(scopes.get(i).name);
+			}
+			trace.write('\n');
+		} catch (IOException ex) {
+			throw new RuntimeException("Error writing " + file.path(), ex);
+		}
+		active = true;
+	}
+
+	/** Stops writing frames, if a trace was started */
+	public static synchronized void stopTrace() {
+		if (trace == null)
+			return;
+
+		try {
+			trace.close();
+		} catch (IOException ex) {
+			throw new RuntimeException("Error writing profiler trace", ex);
+		} finally {
+			trace = null;
+			active = enabled;
+		}
+	}
+
+	public static synchronized boolean isTracing() {
+		return trace != null;
+	}
+
+	/* Writes a frame or a tick; scopes of the other thread are left empty */
+	private static void writeTrace(Timeline timeline, int slot) {
+		try {
+			trace.write(timeline == frames ? "frame" : "simulation");
+			trace.write(',');
+			trace.write(Integer.toString(timeline.count));
+			trace.write(',');
+			trace.write(Float.toString(timeline.times[slot]));
+			trace.write(',');
+			if (timeline == frames) {
+				trace.write(Integer.toString(renderCalls[slot]));
+				trace.write(',');
+				trace.write(Integer.toString(sprites[slot]));
+			} else {
+				trace.write(',');
+			}
+			for (int i = 0; i < traceScopeCount; ++i) {
+				trace.write(',');
+				Scope scope = scopes.get(i);
+				if (scope.timeline == timeline) {
+					trace.write(Float.toString(scope.times[slot]));
+				}
+			}
+			trace.write('\n');
+		} catch (IOException ex) {
+			trace = null;
+			active = enabled;
+			throw new RuntimeException("Error writing profiler trace", ex);
+		}
+	}
+
+	/**
+	 * Writes the average, median, 95th and 99th percentile and maximum
+	 * of the recorded frames, with scopes indented by depth, followed by
+	 * those of the recorded simulation ticks.
+	 */
+	public static synchronized void report(StringBuilder out) {
+		int count = Math.min(frames.count, HISTORY);
+		if (count == 0)
+			return;
+
+		out.append("ms");
+		for (int i = 2; i < NAME_WIDTH; ++i) {
+			out.append(' ');
+		}
+		out.append("     avg     p50     p95     p99     max\n");
+		appendTimeline(out, frames);
+
+		long totalRenderCalls = 0;
+		long totalSprites = 0;
+		for (int i = 0; i < count; ++i) {
+			totalRenderCalls += renderCalls[i];
+			totalSprites += sprites[i];
+		}
+		out.append("render calls ").append((int) (totalRenderCalls / count));
+		out.append(", sprites ").append((int) (totalSprites / count)).append('\n');
+
+		if (ticks.count > 0) {
+			out.append("simulation\n");
+			appendTimeline(out, ticks);
+		}
+	}
+
+	private static void appendTimeline(StringBuilder out, Timeline timeline) {
+		int count = Math.min(timeline.count, HISTORY);
+		appendStatistics(out, timeline.name, 0, timeline.times, count);
+		for (int i = 0; i < scopes.size; ++i) {
+			Scope scope = scopes.get(i);
+			if (scope.parent == null && scope.timeline == timeline) {
+				appendScope(out, scope, count);
+			}
+		}
+	}
+
+	private static void appendScope(StringBuilder out, Scope scope, int count) {
+		appendStatistics(out, scope.name, scope.depth + 1, scope.times, count);
+		for (int i = 0; i < scopes.size; ++i) {
+			if (scopes.get(i).parent == scope) {
+				appendScope(out, scopes.get(i), count);
+			}
+		}
+	}
+
+	private static void appendStatistics(StringBuilder out, String name, int indent, float[] times, int count) {
+		System.arraycopy(times, 0, sortedTimes, 0, count);
+		Arrays.sort(sortedTimes, 0, count);
+
+		float sum = 0f;
+		for (int i = 0; i < count; ++i) {
+			sum += sortedTimes[i];
+		}
+
+		int length = out.length();
+		for (int i = 0; i < indent; ++i) {
+			out.append("  ");
+		}
+		out.append(name);
+		while (out.length() < length + NAME_WIDTH) {
+			out.append(' ');
+		}
+		appendMillis(out, sum / count);
+		appendMillis(out, sortedTimes[(count - 1) / 2]);
+		appendMillis(out, sortedTimes[(int) ((count - 1) * 0.95f)]);
+		appendMillis(out, sortedTimes[(int) ((count - 1) * 0.99f)]);
+		appendMillis(out, sortedTimes[count - 1]);
+		out.append('\n');
+	}
+
+	private static void appendMillis(StringBuilder out, float millis) {
+		int hundredths = Math.round(millis * 100f);
+		out.append(' ').append(hundredths / 100, 4, ' ').append('.').append(hundredths % 100, 2);
+	}
+
+	/**
+	 * Gets the timeline that scopes entered on the current thread are recorded in,
+	 * or null. A tick that is run within a frame, on the same thread, takes precedence.
+	 */
+	private static Timeline current() {
+		Thread thread = Thread.currentThread();
+		if (ticks.recording && ticks.thread == thread)
+			return ticks;
+		if (frames.recording && frames.thread == thread)
+			return frames;
+		return null;
+	}
+
+	/*
+	 * Places the scope in the hierarchy of the timeline it is first entered in;
+	 * returns whether the scope belongs to the given timeline.
+	 */
+	private static synchronized boolean enter(Scope scope, Timeline timeline) {
+		if (scope.timeline == null) {
+			scope.parent = timeline.depth > 0 ? timeline.stack[timeline.depth - 1] : null;
+			scope.depth = timeline.depth;
+			scope.timeline = timeline;
+		}
+		return scope.timeline == timeline;
+	}
+
+	/**
+	 * Frames or ticks of a single thread. Only that thread enters its scopes;
+	 * the recorded times are read under the lock of the profiler.
+	 */
+	private static final class Timeline {
+		private final String name;
+		private final float[] times = new float[HISTORY];
+		private int count;
+
+		/* Scopes that have been entered, but not yet exited */
+		private final Scope[] stack = new Scope[MAX_DEPTH];
+		private int depth;
+
+		private volatile boolean recording;
+		private volatile Thread thread;
+		private long start;
+
+		public Timeline(String name) {
+			this.name = name;
+		}
+
+		public void begin() {
+			depth = 0;
+			thread = Thread.currentThread();
+			start = System.nanoTime();
+			recording = true;
+		}
+
+		/** Records the times of this frame or tick; returns the slot they are in */
+		public int end() {
+			recording = false;
+
+			int slot = count % HISTORY;
+			times[slot] = (System.nanoTime() - start) / 1000000f;
+			for (int i = 0; i < scopes.size; ++i) {
+				Scope scope = scopes.get(i);
+				if (scope.timeline == this) {
+					scope.times[slot] = scope.nanos / 1000000f;
+					scope.nanos = 0L;
+				}
+			}
+			return slot;
+		}
+	}
+
+	/** Named section of code that is measured by the profiler */
+	public static final class Scope {
+		private final String name;
+		private final float[] times = new float[HISTORY];
+
+		/* The timeline and enclosing scope when this scope was first entered */
+		private Timeline timeline;
+		private Scope parent;
+		private int depth;
+
+		private long start;
+		private long nanos;
+
+		private Scope(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/** Starts measuring this scope; must be followed by {@link #end()} */
+		public void begin() {
+			Timeline timeline = current();
+			if (timeline == null || timeline.depth == MAX_DEPTH)
+				return;
+
+			// Scopes are only measured on the thread they were first entered on
+			if (this.timeline != timeline && !enter(this, timeline))
+				return;
+
+			timeline.stack[timeline.depth++] = this;
+			start = System.nanoTime();
+		}
+
+		/** Stops measuring this scope */
+		public void end() {
+			Timeline timeline = this.timeline;
+			if (timeline == null || !timeline.recording || timeline.thread != Thread.currentThread()
+					|| timeline.depth == 0 || timeline.stack[timeline.depth - 1] != this)
+				return;
+
+			nanos += System.nanoTime() - start;
+			timeline.depth--;
+		}
+	}
+}
@@ -29,6 +29,7 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import com.badlogic.gdx.graphics.Color;
 import com.github.antag99.aquarria.world.World;
 import com.github.antag99.aquarria.world.WorldView;
 
@@ -72,4 +73,30 @@ public interface TileType extends Type {
 	 * @param y The Y position of the tile
 	 */
 	public void destroyed(World world, int x, int y);
+
+	/**
+	 * Called when a tick scheduled for the tile at the given position with
+	 * {@link World#scheduleTick(int, int, int)} is due. Note that the tile
+	 * might have been replaced since the tick was scheduled.
+	 * 
+	 * @param world The world the tile resides in
+	 * @param x The X position of the tile
+	 * @param y The Y position of the tile
+	 */
+	public void tick(World world, int x, int y);
+
+	/**
+	 * Called for tiles picked at random, {@link World#RANDOM_TICKS} times per
+	 * chunk every tick. Used for slow processes, such as grass spreading.
+	 * 
+	 * @param world The world the tile resides in
+	 * @param x The X position of the tile
+	 * @param y The Y position of the tile
+	 */
+	public void randomTick(World world, int x, int y);
+
+	/**
+	 * Gets the color of this tile on the map of the world
+	 */
+	public Color getMapColor();
 }
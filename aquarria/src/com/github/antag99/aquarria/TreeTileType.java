@@ -38,6 +38,8 @@ import com.github.antag99.aquarria.world.WorldView;
 public class TreeTileType extends BasicTileType
 		implements TileType, Json.Serializable {
 
+	private String topSheetPath;
+	private String branchSheetPath;
 	private SpriteSheet topSheet;
 	private SpriteSheet branchSheet;
 
@@ -48,8 +50,19 @@ public class TreeTileType extends BasicTileType
 	public void read(Json json, JsonValue jsonData) {
 		super.read(json, jsonData);
 
-		topSheet = new SpriteSheet(Assets.getTexture(jsonData.getString("topSheet")), Assets.topsGrid);
-		branchSheet = new SpriteSheet(Assets.getTexture(jsonData.getString("branchSheet")), Assets.branchesGrid);
+		topSheetPath = jsonData.getString("topSheet");
+		branchSheetPath = jsonData.getString("branchSheet");
+	}
+
+	@Override
+	protected void createVisuals() {
+		super.createVisuals();
+
+		if (topSheetPath == null || branchSheetPath == null)
+			return;
+
+		topSheet = new SpriteSheet(Assets.getTexture(topSheetPath), Assets.topsGrid);
+		branchSheet = new SpriteSheet(Assets.getTexture(branchSheetPath), Assets.branchesGrid);
 
 		// HACK: Left branch sprites are offset manually
 		for (int y = 0; y < 3; ++y) {
@@ -76,6 +89,7 @@ public class TreeTileType extends BasicTileType
 	@Override
 	public Sprite getTexture(WorldView worldView, int x, int y) {
 		TreeFrame treeFrame = TreeFrame.findFrame(worldView.getWorld(), x, y);
+		loadVisuals();
 
 		if (treeFrame == TreeFrame.TOP) {
 			return topSheet.getSprite(0, 0);
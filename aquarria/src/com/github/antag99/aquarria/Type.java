@@ -43,4 +43,20 @@ public interface Type {
 	 * Examples: "Dirt Block", "Snow Wall" etc.
 	 */
 	public String getName();
+
+	/**
+	 * Resolves references to other types, such as drops. Called by the registry
+	 * once all types have been registered; missing types should fail here
+	 * rather than in-game.
+	 */
+	public void link();
+
+	/**
+	 * Loads the textures used to render this type. Types only hold game data
+	 * until then, so that the registry can be used without a GL context, such
+	 * as on a server. Called by the client ahead of time through
+	 * {@link GameRegistry#loadVisuals()}, or when the visuals are first used;
+	 * must be called on the GL thread.
+	 */
+	public void loadVisuals();
 }
@@ -29,12 +29,14 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 import com.github.antag99.aquarria.entity.PlayerEntity;
 import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldRegion;
 import com.github.antag99.aquarria.world.WorldView;
 
 /**
@@ -42,7 +44,9 @@ import com.github.antag99.aquarria.world.WorldView;
  */
 public class WallItemType extends BasicItemType
 		implements ItemType, WallType, Json.Serializable {
+	private String sheetPath;
 	private SpriteSheet sheet;
+	private Color mapColor = new Color(Color.PINK);
 
 	public WallItemType() {
 	}
@@ -51,19 +55,48 @@ public class WallItemType extends BasicItemType
 	public void read(Json json, JsonValue jsonData) {
 		super.read(json, jsonData);
 
-		sheet = new SpriteSheet(Assets.getTexture(jsonData.getString("sheet")), Assets.wallGrid);
+		sheetPath = jsonData.getString("sheet");
+		mapColor = readMapColor(jsonData);
+	}
+
+	@Override
+	protected void createVisuals() {
+		super.createVisuals();
+
+		if (sheetPath != null)
+			sheet = new SpriteSheet(Assets.getTexture(sheetPath), Assets.wallGrid);
+	}
+
+	public SpriteSheet getSheet() {
+		loadVisuals();
+		return sheet;
+	}
+
+	public void setSheet(SpriteSheet sheet) {
+		this.sheet = sheet;
 	}
 
 	// Wall-specific stuff
+	@Override
+	public Color getMapColor() {
+		return mapColor;
+	}
+
+	public void setMapColor(Color mapColor) {
+		this.mapColor = mapColor;
+	}
+
 	@Override
 	public Sprite getTexture(WorldView worldView, int x, int y) {
-		World world = worldView.getWorld();
+		WorldRegion region = worldView.getRegion();
+		int index = region.index(x, y);
+		int stride = region.getStride();
 		BlockFrame frame = BlockFrame.findFrame(
-				y == 0 || world.getWallType(x, y + 1) != GameRegistry.airWall,
-				x + 1 == world.getWidth() || world.getWallType(x + 1, y) != GameRegistry.airWall,
-				y + 1 == world.getHeight() || world.getWallType(x, y - 1) != GameRegistry.airWall,
-				x == 0 || world.getWallType(x - 1, y) != GameRegistry.airWall);
-		return sheet.getSprite(frame.getX(), frame.getY());
+				y + 1 == region.getHeight() || region.getWallType(index + stride) != GameRegistry.airWall,
+				x + 1 == region.getWidth() || region.getWallType(index + 1) != GameRegistry.airWall,
+				y == 0 || region.getWallType(index - stride) != GameRegistry.airWall,
+				x == 0 || region.getWallType(index - 1) != GameRegistry.airWall);
+		return getSheet().getSprite(frame.getX(), frame.getY());
 	}
 
 	// Item-specific stuff
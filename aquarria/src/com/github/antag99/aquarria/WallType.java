@@ -29,6 +29,7 @@
  ******************************************************************************/
 package com.github.antag99.aquarria;
 
+import com.badlogic.gdx.graphics.Color;
 import com.github.antag99.aquarria.world.World;
 import com.github.antag99.aquarria.world.WorldView;
 
@@ -54,4 +55,9 @@ public interface WallType extends Type {
 	 * @param y The Y position of the wall
 	 */
 	public void destroyed(World world, int x, int y);
+
+	/**
+	 * Gets the color of this wall on the map of the world
+	 */
+	public Color getMapColor();
 }
@@ -32,10 +32,13 @@ package com.github.antag99.aquarria.entity;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldRegion;
 
 public abstract class Entity {
 	private World world;
 	private float x, y;
+	/* Position before the last update, for interpolation */
+	private float previousX, previousY;
 	/*
 	 * TODO: make some distinction between raw velocity and resulting velocity,
 	 * as this would be quite useful for slowing down/speeding up movement.
@@ -89,6 +92,15 @@ public abstract class Entity {
 
 	private Rectangle tmpBounds = new Rectangle();
 	private Rectangle tmpBounds2 = new Rectangle();
+	private WorldRegion region;
+
+	/** Gets the region cursor of this entity, over its world */
+	private WorldRegion getRegion() {
+		if (region == null || region.getWorld() != world) {
+			region = new WorldRegion(world);
+		}
+		return region;
+	}
 
 	public boolean inCollision() {
 		if (x < 0f || y < 0f || x + getWidth() > world.getWidth() ||
@@ -105,12 +117,13 @@ public abstract class Entity {
 		int endX = MathUtils.ceil(x + getWidth());
 		int endY = MathUtils.ceil(y + getHeight());
 
+		WorldRegion region = getRegion().set(startX, startY, endX - startX, endY - startY);
 		for (int i = startX; i < endX; ++i) {
 			tmpBounds2.x = i;
-			for (int j = startY; j < endY; ++j) {
+			for (int j = startY, index = region.index(i, j); j < endY; ++j, index += region.getStride()) {
 				tmpBounds2.y = j;
 
-				if (world.getTileType(i, j).isSolid() && tmpBounds.overlaps(tmpBounds2)) {
+				if (region.getTileType(index).isSolid() && tmpBounds.overlaps(tmpBounds2)) {
 					return true;
 				}
 			}
@@ -126,9 +139,11 @@ public abstract class Entity {
 		int endX = MathUtils.ceil(x + getWidth());
 		int endY = MathUtils.ceil(y + getHeight());
 
-		for (int i = startX; i < endX; ++i) {
-			for (int j = startY; j < endY; ++j) {
-				if (world.getLiquid(i, j) >= 64) {
+		WorldRegion region = getRegion().setClamped(startX, startY, endX - startX, endY - startY);
+		for (int i = region.getX(); i < region.getX() + region.getWidth(); ++i) {
+			int index = region.index(i, region.getY());
+			for (int j = 0; j < region.getHeight(); ++j, index += region.getStride()) {
+				if (region.getLiquid(index) >= 64) {
 					return true;
 				}
 			}
@@ -137,6 +152,39 @@ public abstract class Entity {
 		return false;
 	}
 
+	/**
+	 * Stores the current position as the position before the next update;
+	 * rendering interpolates between the two.
+	 */
+	public void updatePreviousPosition() {
+		previousX = x;
+		previousY = y;
+	}
+
+	public float getPreviousX() {
+		return previousX;
+	}
+
+	public float getPreviousY() {
+		return previousY;
+	}
+
+	/**
+	 * Gets the X position to render this entity at, interpolated between
+	 * the last two updates by the {@link World#getInterpolation() interpolation} of its world.
+	 */
+	public float getInterpolatedX() {
+		return previousX + (x - previousX) * world.getInterpolation();
+	}
+
+	/**
+	 * Gets the Y position to render this entity at, interpolated between
+	 * the last two updates by the {@link World#getInterpolation() interpolation} of its world.
+	 */
+	public float getInterpolatedY() {
+		return previousY + (y - previousY) * world.getInterpolation();
+	}
+
 	public float getX() {
 		return x;
 	}
@@ -209,6 +257,30 @@ public abstract class Entity {
 
 	protected abstract EntityView createView();
 
+	/**
+	 * Creates an entity of the same kind, that is given the state of this
+	 * entity by {@link #copyState(Entity)}. Mirrors are used to render
+	 * entities while they're simulated on another thread.
+	 */
+	public abstract Entity createMirror();
+
+	/**
+	 * Copies the state of the given entity, of the same kind, into this
+	 * entity. Subclasses with more state should override this and call super.
+	 */
+	public void copyState(Entity entity) {
+		x = entity.x;
+		y = entity.y;
+		previousX = entity.previousX;
+		previousY = entity.previousY;
+		velocityX = entity.velocityX;
+		velocityY = entity.velocityY;
+		directionX = entity.directionX;
+		directionY = entity.directionY;
+		active = entity.active;
+		health = entity.health;
+	}
+
 	public World getWorld() {
 		return world;
 	}
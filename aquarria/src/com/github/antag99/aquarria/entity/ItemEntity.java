@@ -60,6 +60,18 @@ public class ItemEntity extends Entity {
 		return item.getType().getHeight() / World.PIXELS_PER_METER;
 	}
 
+	@Override
+	public Entity createMirror() {
+		return new ItemEntity(new Item());
+	}
+
+	@Override
+	public void copyState(Entity entity) {
+		super.copyState(entity);
+		Item item = ((ItemEntity) entity).item;
+		this.item.set(item.getType(), item.getStack());
+	}
+
 	@Override
 	protected EntityView createView() {
 		return new ItemView();
@@ -74,7 +86,7 @@ public class ItemEntity extends Entity {
 		public void render(Batch batch) {
 			batch.setColor(Color.WHITE);
 			Sprite sprite = getItem().getType().getIcon();
-			sprite.draw(batch, getX(), getY(), getWidth(), getHeight());
+			sprite.draw(batch, getInterpolatedX(), getInterpolatedY(), getWidth(), getHeight());
 		}
 	}
 }
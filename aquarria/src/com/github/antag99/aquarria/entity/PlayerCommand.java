@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.entity;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The input of a player for a single tick. All input goes through a command,
+ * so that a session can be recorded and replayed against a seeded world.
+ */
+public class PlayerCommand {
+	private static final int MOVE_LEFT = 1 << 0;
+	private static final int MOVE_RIGHT = 1 << 1;
+	private static final int JUMP = 1 << 2;
+	private static final int WORLD_FOCUS = 1 << 3;
+	private static final int TOUCHED = 1 << 4;
+	private static final int JUST_TOUCHED = 1 << 5;
+	private static final int DROP_HELD_ITEM = 1 << 6;
+
+	/** Time passed since the last tick */
+	public float delta;
+
+	public boolean moveLeft;
+	public boolean moveRight;
+	public boolean jump;
+
+	/** Whether the cursor is in the world, at the focus coordinates */
+	public boolean hasWorldFocus;
+	public float worldFocusX;
+	public float worldFocusY;
+
+	/** Whether the world is touched, and whether it was touched this tick */
+	public boolean touched;
+	public boolean justTouched;
+
+	/** Index of the hotbar slot that is used, or -1 for the held item */
+	public int usedSlot = -1;
+
+	/**
+	 * Slot that the held item is swapped with, or -1. Slots of the
+	 * inventory follow those of the hotbar.
+	 */
+	public int swappedSlot = -1;
+	/** Whether the held item is dropped into the world */
+	public boolean dropHeldItem;
+
+	public PlayerCommand() {
+	}
+
+	/**
+	 * Sets this command to the value of the given command
+	 */
+	public void set(PlayerCommand command) {
+		delta = command.delta;
+		moveLeft = command.moveLeft;
+		moveRight = command.moveRight;
+		jump = command.jump;
+		hasWorldFocus = command.hasWorldFocus;
+		worldFocusX = command.worldFocusX;
+		worldFocusY = command.worldFocusY;
+		touched = command.touched;
+		justTouched = command.justTouched;
+		usedSlot = command.usedSlot;
+		swappedSlot = command.swappedSlot;
+		dropHeldItem = command.dropHeldItem;
+	}
+
+	/**
+	 * Adds the input of a later frame to this command, so that no
+	 * action is lost when several frames pass in a single tick.
+	 */
+	public void add(PlayerCommand command) {
+		moveLeft = command.moveLeft;
+		moveRight = command.moveRight;
+		jump |= command.jump;
+		hasWorldFocus = command.hasWorldFocus;
+		worldFocusX = command.worldFocusX;
+		worldFocusY = command.worldFocusY;
+		touched = command.touched;
+		justTouched |= command.justTouched;
+		usedSlot = command.usedSlot;
+		if (command.swappedSlot != -1)
+			swappedSlot = command.swappedSlot;
+		dropHeldItem |= command.dropHeldItem;
+	}
+
+	/**
+	 * Resets the actions that only apply to a single tick
+	 */
+	public void consume() {
+		jump = false;
+		justTouched = false;
+		swappedSlot = -1;
+		dropHeldItem = false;
+	}
+
+	public void write(DataOutput output) throws IOException {
+		int flags = 0;
+		if (moveLeft)
+			flags |= MOVE_LEFT;
+		if (moveRight)
+			flags |= MOVE_RIGHT;
+		if (jump)
+			flags |= JUMP;
+		if (hasWorldFocus)
+			flags |= WORLD_FOCUS;
+		if (touched)
+			flags |= TOUCHED;
+		if (justTouched)
+			flags |= JUST_TOUCHED;
+		if (dropHeldItem)
+			flags |= DROP_HELD_ITEM;
+
+		output.writeFloat(delta);
+		output.writeByte(flags);
+		if (hasWorldFocus) {
+			output.writeFloat(worldFocusX);
+			output.writeFloat(worldFocusY);
+		}
+		output.writeByte(usedSlot);
+		output.writeByte(swappedSlot);
+	}
+
+	public void read(DataInput input) throws IOException {
+		delta = input.readFloat();
+		int flags = input.readUnsignedByte();
+		moveLeft = (flags & MOVE_LEFT) != 0;
+		moveRight = (flags & MOVE_RIGHT) != 0;
+		jump = (flags & JUMP) != 0;
+		hasWorldFocus = (flags & WORLD_FOCUS) != 0;
+		touched = (flags & TOUCHED) != 0;
+		justTouched = (flags & JUST_TOUCHED) != 0;
+		dropHeldItem = (flags & DROP_HELD_ITEM) != 0;
+		if (hasWorldFocus) {
+			worldFocusX = input.readFloat();
+			worldFocusY = input.readFloat();
+		}
+		usedSlot = input.readByte();
+		swappedSlot = input.readByte();
+	}
+}
@@ -29,14 +29,10 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.entity;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.Input;
 import com.badlogic.gdx.math.Vector2;
-import com.github.antag99.aquarria.Direction;
 import com.github.antag99.aquarria.GameRegistry;
 import com.github.antag99.aquarria.Inventory;
 import com.github.antag99.aquarria.Item;
-import com.github.antag99.aquarria.world.World;
 
 public class PlayerEntity extends Entity {
 	/**
@@ -53,6 +49,9 @@ public class PlayerEntity extends Entity {
 
 	private Inventory hotbar;
 	private Inventory inventory;
+	/** The item held by the cursor */
+	private Item heldItem = new Item();
+	private PlayerCommand command = new PlayerCommand();
 	private Vector2 worldFocus = new Vector2();
 	private boolean hasWorldFocus = false;
 	private boolean grounded;
@@ -67,19 +66,21 @@ public class PlayerEntity extends Entity {
 		hotbar = new Inventory(10);
 		inventory = new Inventory(40);
 
-		hotbar.addItem(Item.createMaxStack(GameRegistry.getItem("pickaxe")));
-		hotbar.addItem(Item.createMaxStack(GameRegistry.getItem("hammer")));
-		hotbar.addItem(Item.createMaxStack(GameRegistry.getItem("dirt")));
-		hotbar.addItem(Item.createMaxStack(GameRegistry.getItem("stone")));
-		hotbar.addItem(Item.createMaxStack(GameRegistry.getItem("dirtWall")));
-		hotbar.addItem(Item.createMaxStack(GameRegistry.getItem("stoneWall")));
+		hotbar.addItem(Item.createMaxStack(GameRegistry.pickaxeItem));
+		hotbar.addItem(Item.createMaxStack(GameRegistry.hammerItem));
+		hotbar.addItem(Item.createMaxStack(GameRegistry.dirtItem));
+		hotbar.addItem(Item.createMaxStack(GameRegistry.stoneItem));
+		hotbar.addItem(Item.createMaxStack(GameRegistry.dirtWallItem));
+		hotbar.addItem(Item.createMaxStack(GameRegistry.stoneWallItem));
 	}
 
 	@Override
 	public void update(float delta) {
-		boolean moveLeft = Gdx.input.isKeyPressed(Input.Keys.A);
-		boolean moveRight = Gdx.input.isKeyPressed(Input.Keys.D);
-		boolean jump = Gdx.input.isKeyJustPressed(Input.Keys.SPACE);
+		applyCommand();
+
+		boolean moveLeft = command.moveLeft;
+		boolean moveRight = command.moveRight;
+		boolean jump = command.jump;
 
 		if (moveLeft && !moveRight) {
 			setVelocityX(Math.min(getVelocityX(), -4f));
@@ -99,6 +100,9 @@ public class PlayerEntity extends Entity {
 			setVelocityY(20f);
 		}
 
+		// Actions are only applied once, even if the command is used for several updates
+		command.consume();
+
 		super.update(delta);
 
 		if (!isGrounded()) {
@@ -115,17 +119,18 @@ public class PlayerEntity extends Entity {
 			if (otherEntity instanceof ItemEntity) {
 				if (getBounds().overlaps(otherEntity.getBounds())) {
 					ItemEntity itemEntity = (ItemEntity) otherEntity;
-					Item item = hotbar.stackItem(itemEntity.getItem());
+					// Moves the items out of the entity without creating any copies
+					Item item = itemEntity.getItem();
+					hotbar.stack(item);
+					if (!item.isEmpty()) {
+						inventory.stack(item);
+					}
+					if (!item.isEmpty()) {
+						hotbar.put(item);
+					}
 					if (!item.isEmpty()) {
-						item = inventory.stackItem(item);
-						if (!item.isEmpty()) {
-							item = hotbar.putItem(item);
-							if (!item.isEmpty()) {
-								item = inventory.putItem(item);
-							}
-						}
+						inventory.put(item);
 					}
-					itemEntity.setItem(item);
 					if (item.isEmpty()) {
 						itemEntity.setActive(false);
 					}
@@ -170,6 +175,44 @@ public class PlayerEntity extends Entity {
 		}
 	}
 
+	/**
+	 * Applies the item and focus actions of the current command
+	 */
+	private void applyCommand() {
+		if (command.swappedSlot != -1) {
+			int slot = command.swappedSlot;
+			if (slot < hotbar.getSize()) {
+				heldItem.stackTo(hotbar.getItem(slot));
+			} else {
+				heldItem.stackTo(inventory.getItem(slot - hotbar.getSize()));
+			}
+		}
+
+		if (command.dropHeldItem && !heldItem.isEmpty()) {
+			getWorld().dropItem(heldItem.copy(), getX(), getY());
+			heldItem.setStack(0);
+		}
+
+		if (command.hasWorldFocus) {
+			setWorldFocus(command.worldFocusX, command.worldFocusY);
+
+			if (command.justTouched) {
+				repeatUsingItem = true;
+				usedItem = command.usedSlot != -1 ? hotbar.getItem(command.usedSlot) : heldItem;
+			}
+
+			if (!command.touched) {
+				repeatUsingItem = false;
+			}
+		} else {
+			setWorldFocus(null);
+			repeatUsingItem = false;
+			usingItem = false;
+			useTime = 0f;
+			usedItem = null;
+		}
+	}
+
 	public PlayerState getState() {
 		return state;
 	}
@@ -182,6 +225,20 @@ public class PlayerEntity extends Entity {
 		return inventory;
 	}
 
+	/**
+	 * Gets the item held by the cursor, that is swapped with inventory slots
+	 */
+	public Item getHeldItem() {
+		return heldItem;
+	}
+
+	/**
+	 * Gets the command that is applied on the next update
+	 */
+	public PlayerCommand getCommand() {
+		return command;
+	}
+
 	public Vector2 getWorldFocus() {
 		return hasWorldFocus ? worldFocus : null;
 	}
@@ -241,25 +298,7 @@ public class PlayerEntity extends Entity {
 	}
 
 	public boolean destroyTile(int x, int y) {
-		World world = getWorld();
-		if (world.getTileType(x, y) == GameRegistry.airTile || world.isTileBlocked(x, y)) {
-			return false;
-		}
-		world.getTileType(x, y).destroyed(getWorld(), x, y);
-		world.setTileType(x, y, GameRegistry.airTile);
-		// Destroy attached tiles
-		for (Direction direction : Direction.values()) {
-			int adjacentX = x - direction.getHorizontal();
-			int adjacentY = y - direction.getVertical();
-			if (world.isTileAttached(adjacentX, adjacentY, direction)) {
-				destroyTile(adjacentX, adjacentY);
-				// Clear attachment *after* calling destruction code, as some
-				// types may wish to use attachment to implicitly store which
-				// part of a multiblock tile the current tile is.
-				world.setTileAttached(adjacentX, adjacentY, direction, false);
-			}
-		}
-		return true;
+		return getWorld().destroyTile(x, y);
 	}
 
 	public boolean destroyWall(int x, int y) {
@@ -286,6 +325,35 @@ public class PlayerEntity extends Entity {
 		return 400;
 	}
 
+	@Override
+	public Entity createMirror() {
+		return new PlayerEntity();
+	}
+
+	@Override
+	public void copyState(Entity entity) {
+		super.copyState(entity);
+		PlayerEntity player = (PlayerEntity) entity;
+		state = player.state;
+		grounded = player.grounded;
+		worldFocus.set(player.worldFocus);
+		hasWorldFocus = player.hasWorldFocus;
+		useTime = player.useTime;
+		usingItem = player.usingItem;
+		repeatUsingItem = player.repeatUsingItem;
+		hotbar.set(player.hotbar);
+		inventory.set(player.inventory);
+		heldItem.set(player.heldItem);
+		if (player.usedItem != null) {
+			// Copied, as the item is owned by the simulated player
+			if (usedItem == null)
+				usedItem = new Item();
+			usedItem.set(player.usedItem.getType(), player.usedItem.getStack());
+		} else {
+			usedItem = null;
+		}
+	}
+
 	@Override
 	protected EntityView createView() {
 		return new PlayerView(this);
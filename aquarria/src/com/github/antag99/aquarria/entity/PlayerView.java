@@ -77,8 +77,8 @@ public class PlayerView implements EntityView {
 
 	@Override
 	public void render(Batch batch) {
-		float x = player.getX();
-		float y = player.getY();
+		float x = player.getInterpolatedX();
+		float y = player.getInterpolatedY();
 		float width = player.getWidth();
 		float height = player.getHeight();
 		float originX = width / 2f;
@@ -143,7 +143,7 @@ public class PlayerView implements EntityView {
 			float useRotation = animation.getHeldItemRotation(player);
 
 			batch.setColor(Color.WHITE);
-			itemTexture.draw(batch, player.getX() + useOffsetX, player.getY() + useOffsetY, 0f, 0f,
+			itemTexture.draw(batch, x + useOffsetX, y + useOffsetY, 0f, 0f,
 					item.getType().getWidth() / World.PIXELS_PER_METER,
 					item.getType().getHeight() / World.PIXELS_PER_METER,
 					1f, 1f, useRotation);
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.github.antag99.aquarria.entity.PlayerCommand;
+
+/**
+ * A recorded session; the seed and size of the world, and the command
+ * of the player for every tick.
+ */
+public class Replay {
+	static final int MAGIC = 0x41515250; // AQRP
+	static final int VERSION = 1;
+
+	private long seed;
+	private int width;
+	private int height;
+	private Array<PlayerCommand> commands = new Array<>();
+
+	public Replay(long seed, int width, int height) {
+		this.seed = seed;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Reads a replay written by a {@link ReplayRecorder}. A truncated last
+	 * command is ignored, as the game might not have exited cleanly.
+	 */
+	public static Replay read(FileHandle file) {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(file.read()));
+		try {
+			if (input.readInt() != MAGIC) {
+				throw new RuntimeException("Not a replay: " + file.path());
+			}
+
+			int version = input.readInt();
+			if (version != VERSION) {
+				throw new RuntimeException("Unsupported replay version: " + version);
+			}
+
+			Replay replay = new Replay(input.readLong(), input.readInt(), input.readInt());
+			while (true) {
+				PlayerCommand command = new PlayerCommand();
+				try {
+					command.read(input);
+				} catch (EOFException ex) {
+					break;
+				}
+				replay.commands.add(command);
+			}
+			return replay;
+		} catch (IOException ex) {
+			throw new RuntimeException("Error reading replay " + file.path(), ex);
+		} finally {
+			try {
+				input.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public Array<PlayerCommand> getCommands() {
+		return commands;
+	}
+}
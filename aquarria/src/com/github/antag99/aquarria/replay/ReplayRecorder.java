@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.github.antag99.aquarria.entity.PlayerCommand;
+
+/**
+ * Streams the commands of a session to a file, which can be read as a {@link Replay}.
+ */
+public class ReplayRecorder {
+	private FileHandle file;
+	private DataOutputStream output;
+
+	public ReplayRecorder(FileHandle file, long seed, int width, int height) {
+		this.file = file;
+		output = new DataOutputStream(new BufferedOutputStream(file.write(false)));
+		try {
+			output.writeInt(Replay.MAGIC);
+			output.writeInt(Replay.VERSION);
+			output.writeLong(seed);
+			output.writeInt(width);
+			output.writeInt(height);
+		} catch (IOException ex) {
+			throw new RuntimeException("Error writing replay " + file.path(), ex);
+		}
+	}
+
+	/**
+	 * Records the command of the next tick
+	 */
+	public void record(PlayerCommand command) {
+		try {
+			command.write(output);
+		} catch (IOException ex) {
+			throw new RuntimeException("Error writing replay " + file.path(), ex);
+		}
+	}
+
+	public void close() {
+		try {
+			output.close();
+		} catch (IOException ex) {
+			throw new RuntimeException("Error writing replay " + file.path(), ex);
+		}
+	}
+}
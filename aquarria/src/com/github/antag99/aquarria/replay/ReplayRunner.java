@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.replay;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.utils.Array;
+import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.entity.Entity;
+import com.github.antag99.aquarria.entity.PlayerCommand;
+import com.github.antag99.aquarria.entity.PlayerEntity;
+import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldGenerator;
+
+/**
+ * Replays a recorded session headless, without graphics, and reports
+ * how long the ticks took. The checksum of the resulting world can be
+ * compared between runs to check that the simulation is deterministic.
+ */
+public class ReplayRunner {
+	private Replay replay;
+	private World world;
+	private PlayerEntity player;
+	private long[] tickTimes;
+
+	public ReplayRunner(Replay replay) {
+		this.replay = replay;
+	}
+
+	/**
+	 * Generates the world of the replay and runs all of its commands
+	 */
+	public void run() {
+		world = new World(replay.getWidth(), replay.getHeight(), replay.getSeed());
+		new WorldGenerator(world, replay.getSeed()).generate();
+
+		player = new PlayerEntity();
+		player.setX(world.getSpawnX());
+		player.setY(world.getSpawnY());
+		world.addEntity(player);
+
+		Array<PlayerCommand> commands = replay.getCommands();
+		tickTimes = new long[commands.size];
+		for (int i = 0; i < commands.size; ++i) {
+			PlayerCommand command = commands.get(i);
+			player.getCommand().set(command);
+
+			long startTime = System.nanoTime();
+			world.update(command.delta);
+			tickTimes[i] = System.nanoTime() - startTime;
+		}
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public PlayerEntity getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Gets the time each tick took, in nanoseconds
+	 */
+	public long[] getTickTimes() {
+		return tickTimes;
+	}
+
+	/**
+	 * Computes a checksum of the tiles, walls, liquids and entities of the world
+	 */
+	public static long checksum(World world) {
+		long hash = world.getSeed();
+		for (int y = 0; y < world.getHeight(); ++y) {
+			for (int x = 0; x < world.getWidth(); ++x) {
+				hash = hash * 31 + world.getTileType(x, y).getId().hashCode();
+				hash = hash * 31 + world.getWallType(x, y).getId().hashCode();
+				hash = hash * 31 + world.getLiquid(x, y);
+			}
+		}
+		for (Entity entity : world.getEntities()) {
+			hash = hash * 31 + Float.floatToIntBits(entity.getX());
+			hash = hash * 31 + Float.floatToIntBits(entity.getY());
+			hash = hash * 31 + entity.getHealth();
+		}
+		return hash;
+	}
+
+	/**
+	 * Prints the tick count, mean, percentiles and maximum of the given tick times
+	 */
+	public static void printStatistics(long[] tickTimes) {
+		if (tickTimes.length == 0) {
+			System.out.println("No ticks");
+			return;
+		}
+
+		long[] sorted = tickTimes.clone();
+		Arrays.sort(sorted);
+		long total = 0;
+		for (long time : sorted) {
+			total += time;
+		}
+
+		System.out.println("Ticks: " + sorted.length);
+		System.out.printf("Mean: %.3f ms%n", total / (double) sorted.length / 1e6);
+		System.out.printf("p50:  %.3f ms%n", percentile(sorted, 0.50) / 1e6);
+		System.out.printf("p95:  %.3f ms%n", percentile(sorted, 0.95) / 1e6);
+		System.out.printf("p99:  %.3f ms%n", percentile(sorted, 0.99) / 1e6);
+		System.out.printf("Max:  %.3f ms%n", sorted[sorted.length - 1] / 1e6);
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: ReplayRunner <replay file>");
+			System.exit(1);
+		}
+
+		Gdx.files = new LwjglFiles();
+		GameRegistry.initialize();
+
+		Replay replay = Replay.read(Gdx.files.absolute(args[0]));
+		ReplayRunner runner = new ReplayRunner(replay);
+		runner.run();
+
+		printStatistics(runner.getTickTimes());
+		System.out.println("Checksum: " + Long.toHexString(checksum(runner.getWorld())));
+	}
+}
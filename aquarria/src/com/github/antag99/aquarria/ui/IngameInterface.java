@@ -42,6 +42,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.utils.IntIntMap;
 import com.github.antag99.aquarria.Item;
 import com.github.antag99.aquarria.Sprite;
+import com.github.antag99.aquarria.entity.PlayerCommand;
 import com.github.antag99.aquarria.entity.PlayerEntity;
 
 public class IngameInterface extends Table {
@@ -60,6 +61,7 @@ public class IngameInterface extends Table {
 
 	private Item swapItem;
 	private PlayerEntity player;
+	private PlayerCommand command;
 
 	private boolean inventoryOpen;
 	private Vector2 tmpVector2 = new Vector2();
@@ -80,7 +82,6 @@ public class IngameInterface extends Table {
 	}
 
 	public IngameInterface(Skin skin) {
-		swapItem = new Item();
 		setTouchable(Touchable.childrenOnly);
 
 		left();
@@ -97,12 +98,21 @@ public class IngameInterface extends Table {
 
 		hotbarText = new Label("Items", skin, "hotbarText");
 
+		// Swaps go through the commands of the player, so that they can be replayed
+		InventoryDisplay.SwapListener swapListener = new InventoryDisplay.SwapListener() {
+			@Override
+			public void swap(InventoryDisplay display, int index) {
+				int offset = display == inventoryDisplay ? hotbarDisplay.getSlotCount() : 0;
+				command.swappedSlot = offset + index;
+			}
+		};
+
 		hotbarDisplay = new InventoryDisplay(10, 1, skin, "hotbar");
-		hotbarDisplay.setSwapItem(swapItem);
+		hotbarDisplay.setSwapListener(swapListener);
 		hotbarDisplay.setSelectedIndex(0);
 
 		inventoryDisplay = new InventoryDisplay(10, 4, skin, "inventory");
-		inventoryDisplay.setSwapItem(swapItem);
+		inventoryDisplay.setSwapListener(swapListener);
 
 		leftTable.add(hotbarText).left().expandX();
 		leftTable.row();
@@ -187,7 +197,7 @@ public class IngameInterface extends Table {
 
 		super.draw(batch, parentAlpha);
 
-		if (!swapItem.isEmpty()) {
+		if (swapItem != null && !swapItem.isEmpty()) {
 			Sprite itemTexture = swapItem.getType().getIcon();
 			if (itemTexture != null) {
 				Vector2 mousePosition = tmpVector2.set(Gdx.input.getX(), Gdx.input.getY());
@@ -206,9 +216,8 @@ public class IngameInterface extends Table {
 				hotbarDisplay.setSwapItem(swapItem);
 				inventoryDisplay.setVisible(true);
 			} else {
-				if (!swapItem.isEmpty()) {
-					player.getWorld().dropItem(swapItem.copy(), player.getX(), player.getY());
-					swapItem.setStack(0);
+				if (command != null) {
+					command.dropHeldItem = true;
 				}
 				hotbarDisplay.setSelectedIndex(hotbarSelectedIndex);
 				hotbarDisplay.setSwapItem(null);
@@ -221,18 +230,40 @@ public class IngameInterface extends Table {
 		this.player = player;
 
 		if (player != null) {
+			swapItem = player.getHeldItem();
 			hotbarDisplay.setInventory(player.getHotbar());
 			inventoryDisplay.setInventory(player.getInventory());
 		} else {
+			swapItem = null;
 			hotbarDisplay.setInventory(null);
 			inventoryDisplay.setInventory(null);
 		}
+		hotbarDisplay.setSwapItem(inventoryOpen ? swapItem : null);
+		inventoryDisplay.setSwapItem(swapItem);
+	}
+
+	public PlayerEntity getPlayer() {
+		return player;
 	}
 
 	public Item getHeldItem() {
 		return swapItem;
 	}
 
+	/**
+	 * Sets the command that actions of the interface are added to
+	 */
+	public void setCommand(PlayerCommand command) {
+		this.command = command;
+	}
+
+	/**
+	 * Gets the index of the selected hotbar slot, or -1 if the inventory is open
+	 */
+	public int getSelectedIndex() {
+		return hotbarDisplay.getSelectedIndex();
+	}
+
 	public Item getSelectedItem() {
 		int index = hotbarDisplay.getSelectedIndex();
 
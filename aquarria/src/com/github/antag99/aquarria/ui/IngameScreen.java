@@ -29,6 +29,8 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.ui;
 
+import java.util.concurrent.ForkJoinPool;
+
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.OrthographicCamera;
@@ -37,24 +39,46 @@ import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.github.antag99.aquarria.Aquarria;
 import com.github.antag99.aquarria.Assets;
+import com.github.antag99.aquarria.Profiler;
+import com.github.antag99.aquarria.entity.PlayerCommand;
 import com.github.antag99.aquarria.entity.PlayerEntity;
+import com.github.antag99.aquarria.replay.ReplayRecorder;
+import com.github.antag99.aquarria.world.LightCache;
+import com.github.antag99.aquarria.world.LightSolver;
+import com.github.antag99.aquarria.world.Minimap;
 import com.github.antag99.aquarria.world.World;
 import com.github.antag99.aquarria.world.WorldGenerator;
 import com.github.antag99.aquarria.world.WorldRenderer;
+import com.github.antag99.aquarria.world.WorldSimulation;
 import com.github.antag99.aquarria.world.WorldView;
 
 public class IngameScreen extends AquarriaScreen {
+	private static final float MAX_ZOOM = 8f;
+
 	private World world;
 	private WorldGenerator worldGenerator;
+	private WorldSimulation simulation;
 	private WorldView worldView;
 	private WorldRenderer worldRenderer;
+	private Minimap minimap;
+	private LightCache lightCache;
+	private WorldMapDisplay worldMap;
+	/** Zoom of the camera, limited so that the view fits in the world */
+	private float zoom = 1f;
 
 	private PlayerEntity player;
+	/** Input of the current frame, and input not yet taken by the simulation */
+	private PlayerCommand input = new PlayerCommand();
+	private final PlayerCommand pendingInput = new PlayerCommand();
 	private Skin skin;
 	private IngameInterface ingameInterface;
+	private ProfilerDisplay profilerDisplay;
+	private ReplayRecorder replayRecorder;
 
 	private Vector2 tmpVector2 = new Vector2();
 	private Vector3 tmpVector3 = new Vector3();
@@ -69,22 +93,66 @@ public class IngameScreen extends AquarriaScreen {
 
 		worldRenderer = new WorldRenderer();
 
-		world = new World(1024, 512);
-		worldGenerator = new WorldGenerator(world, MathUtils.random.nextLong());
+		long seed = MathUtils.random.nextLong();
+		world = new World(1024, 512, seed);
+		worldGenerator = new WorldGenerator(world, seed);
 		worldGenerator.generate();
+		worldGenerator.writeDebugImage(Gdx.files.local("debug/world.png"));
+
+		if (aquarria.getReplayPath() != null) {
+			replayRecorder = new ReplayRecorder(Gdx.files.local(aquarria.getReplayPath()),
+					seed, world.getWidth(), world.getHeight());
+		}
 
 		player = new PlayerEntity();
 		player.setX(world.getSpawnX());
 		player.setY(world.getSpawnY());
 		world.addEntity(player);
 
-		worldView = new WorldView(world);
+		simulation = new WorldSimulation(world);
+		simulation.setTickListener(new WorldSimulation.TickListener() {
+			@Override
+			public void beforeTick(World world, float delta) {
+				PlayerCommand command = player.getCommand();
+				synchronized (pendingInput) {
+					command.set(pendingInput);
+					pendingInput.consume();
+				}
+				command.delta = delta;
+
+				if (replayRecorder != null) {
+					replayRecorder.record(command);
+				}
+			}
+		});
+
+		// Kept current with the changes of the rendered snapshots
+		minimap = new Minimap(world.getWidth(), world.getHeight());
+		minimap.update(world, 0, 0, world.getWidth(), world.getHeight());
+		simulation.addRenderListener(minimap);
+		lightCache = new LightCache(new LightSolver(new ForkJoinPool()));
+		simulation.addRenderListener(lightCache);
+
+		worldView = new WorldView(simulation.acquire().getWorld());
 		worldRenderer.setView(worldView);
+		worldRenderer.setMinimap(minimap);
+		worldRenderer.setLightCache(lightCache);
 
+		// The interface shows the rendered player; the simulated one only takes commands
 		ingameInterface = new IngameInterface(skin);
-		ingameInterface.setPlayer(player);
+		ingameInterface.setPlayer((PlayerEntity) simulation.getMirror(player));
+		ingameInterface.setCommand(input);
 
-		root.stack(worldRenderer, ingameInterface).expand().fill();
+		profilerDisplay = new ProfilerDisplay(skin, "profilerText");
+		profilerDisplay.setVisible(false);
+		Table profilerTable = new Table();
+		profilerTable.setTouchable(Touchable.disabled);
+		profilerTable.add(profilerDisplay).expand().left().bottom().pad(4f);
+
+		worldMap = new WorldMapDisplay(minimap);
+		worldMap.setVisible(false);
+
+		root.stack(worldRenderer, ingameInterface, worldMap, profilerTable).expand().fill();
 	}
 
 	@Override
@@ -102,18 +170,67 @@ public class IngameScreen extends AquarriaScreen {
 			root.getStage().setDebugAll(debugStage);
 		}
 
-		delta = Gdx.graphics.getDeltaTime();
+		if (Gdx.input.isKeyJustPressed(Input.Keys.F4)) {
+			profilerDisplay.setVisible(!profilerDisplay.isVisible());
+			Profiler.setEnabled(profilerDisplay.isVisible());
+		}
 
-		world.update(delta);
+		if (Gdx.input.isKeyJustPressed(Input.Keys.F5)) {
+			if (Profiler.isTracing()) {
+				Profiler.stopTrace();
+			} else {
+				Profiler.startTrace(Gdx.files.local("profile-" + System.currentTimeMillis() + ".csv"));
+			}
+		}
+
+		if (Gdx.input.isKeyJustPressed(Input.Keys.M)) {
+			worldMap.setVisible(!worldMap.isVisible());
+		}
+
+		if (Gdx.input.isKeyJustPressed(Input.Keys.MINUS)) {
+			zoom = Math.min(zoom * 2f, MAX_ZOOM);
+		}
+
+		if (Gdx.input.isKeyJustPressed(Input.Keys.EQUALS)) {
+			zoom = Math.max(zoom / 2f, 1f);
+		}
 
 		OrthographicCamera cam = worldView.getCamera();
 
-		cam.position.x = MathUtils.clamp(player.getX() + player.getWidth() * 0.5f, cam.viewportWidth / 2f, world.getWidth() - cam.viewportWidth / 2f);
-		cam.position.y = MathUtils.clamp(player.getY() + player.getHeight() * 0.5f, cam.viewportHeight / 2f, world.getHeight() - cam.viewportHeight / 2f);
-		cam.zoom = 1f;
+		// Input of this frame is added to what the simulation hasn't taken yet
+		updateCommand(input, cam);
+		synchronized (pendingInput) {
+			pendingInput.add(input);
+		}
+		input.consume();
+
+		worldView.setWorld(simulation.acquire().getWorld());
+		PlayerEntity renderedPlayer = (PlayerEntity) simulation.getMirror(player);
+		if (ingameInterface.getPlayer() != renderedPlayer) {
+			ingameInterface.setPlayer(renderedPlayer);
+		}
+		worldMap.setMarker(renderedPlayer.getInterpolatedX() + renderedPlayer.getWidth() * 0.5f,
+				renderedPlayer.getInterpolatedY() + renderedPlayer.getHeight() * 0.5f);
+
+		cam.zoom = Math.min(zoom, Math.min(world.getWidth() / cam.viewportWidth, world.getHeight() / cam.viewportHeight));
+		float halfWidth = cam.viewportWidth * cam.zoom / 2f;
+		float halfHeight = cam.viewportHeight * cam.zoom / 2f;
+		cam.position.x = MathUtils.clamp(renderedPlayer.getInterpolatedX() + renderedPlayer.getWidth() * 0.5f, halfWidth, world.getWidth() - halfWidth);
+		cam.position.y = MathUtils.clamp(renderedPlayer.getInterpolatedY() + renderedPlayer.getHeight() * 0.5f, halfHeight, world.getHeight() - halfHeight);
 
 		cam.update();
+	}
 
+	/**
+	 * Fills the given command from the input; actions of the interface,
+	 * such as swapping items, are added to it as they happen.
+	 */
+	private void updateCommand(PlayerCommand command, OrthographicCamera cam) {
+		command.moveLeft = Gdx.input.isKeyPressed(Input.Keys.A);
+		command.moveRight = Gdx.input.isKeyPressed(Input.Keys.D);
+		command.jump = Gdx.input.isKeyJustPressed(Input.Keys.SPACE);
+
+		command.hasWorldFocus = false;
 		Vector2 mousePosition = tmpVector2.set(Gdx.input.getX(), Gdx.input.getY());
 		mousePosition = aquarria.getStage().screenToStageCoordinates(mousePosition);
 		if (aquarria.getStage().hit(mousePosition.x, mousePosition.y, true) == null) {
@@ -123,31 +240,15 @@ public class IngameScreen extends AquarriaScreen {
 			if (worldFocus.x >= 0f && worldFocus.y >= 0f &&
 					worldFocus.x < world.getWidth() &&
 					worldFocus.y < world.getHeight()) {
-				player.setWorldFocus(worldFocus.x, worldFocus.y);
+				command.hasWorldFocus = true;
+				command.worldFocusX = worldFocus.x;
+				command.worldFocusY = worldFocus.y;
 			}
-		} else {
-			player.setWorldFocus(null);
 		}
 
-		if (player.getWorldFocus() != null) {
-			if (Gdx.input.justTouched()) {
-				if (!player.getRepeatUsingItem()) {
-					player.setRepeatUsingItem(true);
-				}
-				player.setUsedItem(ingameInterface.getFocusItem());
-			}
-
-			if (!Gdx.input.isTouched()) {
-				if (player.getRepeatUsingItem()) {
-					player.setRepeatUsingItem(false);
-				}
-			}
-		} else {
-			player.setRepeatUsingItem(false);
-			player.setUsingItem(false);
-			player.setUseTime(0f);
-			player.setUsedItem(null);
-		}
+		command.touched = Gdx.input.isTouched();
+		command.justTouched = Gdx.input.justTouched();
+		command.usedSlot = ingameInterface.getSelectedIndex();
 	}
 
 	@Override
@@ -165,10 +266,24 @@ public class IngameScreen extends AquarriaScreen {
 		Stage stage = aquarria.getStage();
 		stage.setKeyboardFocus(ingameInterface);
 		stage.setScrollFocus(ingameInterface);
+		simulation.start();
+	}
+
+	@Override
+	public void hide() {
+		simulation.stop();
+		super.hide();
 	}
 
 	@Override
 	public void dispose() {
+		simulation.stop();
+		if (replayRecorder != null) {
+			replayRecorder.close();
+		}
+		worldRenderer.dispose();
+		minimap.dispose();
+		lightCache.getSolver().getPool().shutdown();
 		skin.dispose();
 	}
 }
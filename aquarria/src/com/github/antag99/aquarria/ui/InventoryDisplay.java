@@ -31,13 +31,17 @@ package com.github.antag99.aquarria.ui;
 
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.InputListener;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Cell;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.ui.Widget;
 import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.StringBuilder;
 import com.github.antag99.aquarria.Inventory;
 import com.github.antag99.aquarria.Item;
 import com.github.antag99.aquarria.ItemType;
@@ -52,9 +56,20 @@ public class InventoryDisplay extends Table {
 
 	private int selectedIndex = -1;
 	private Item swapItem = null;
+	private SwapListener swapListener;
 
 	private InventoryDisplayStyle style;
 
+	private Array<ItemSlot> slots = new Array<>();
+
+	/** Stack sizes of all slots, relative to this display */
+	private BitmapFontCache stackText;
+	private StringBuilder stackTextBuilder = new StringBuilder();
+	/* State of the inventory when the stack text was last built */
+	private Inventory cachedInventory;
+	private int cachedModificationCount;
+	private boolean stackTextDirty = true;
+
 	public InventoryDisplay(int slotColumns, int slotRows, Skin skin) {
 		this(slotColumns, slotRows, skin.get(InventoryDisplayStyle.class));
 	}
@@ -67,7 +82,9 @@ public class InventoryDisplay extends Table {
 		this.slotColumns = slotColumns;
 		this.slotRows = slotRows;
 		this.style = style;
+		stackText = new BitmapFontCache(style.stackFont);
 		setTouchable(Touchable.enabled);
+		createSlots();
 	}
 
 	public Inventory getInventory() {
@@ -84,6 +101,7 @@ public class InventoryDisplay extends Table {
 
 	public void setSlotSpacing(float slotSpacing) {
 		this.slotSpacing = slotSpacing;
+		invalidate();
 	}
 
 	public int getSlotColumns() {
@@ -96,12 +114,12 @@ public class InventoryDisplay extends Table {
 
 	public void setSlotColumns(int slotColumns) {
 		this.slotColumns = slotColumns;
-		invalidate();
+		createSlots();
 	}
 
 	public void setSlotRows(int slotRows) {
 		this.slotRows = slotRows;
-		invalidate();
+		createSlots();
 	}
 
 	public int getSelectedIndex() {
@@ -128,38 +146,100 @@ public class InventoryDisplay extends Table {
 		return swapItem;
 	}
 
+	/**
+	 * Sets the listener that swaps the items when a slot is clicked, instead
+	 * of swapping them directly. null swaps them directly.
+	 */
+	public void setSwapListener(SwapListener swapListener) {
+		this.swapListener = swapListener;
+	}
+
+	public SwapListener getSwapListener() {
+		return swapListener;
+	}
+
 	public int getSlotCount() {
 		return slotColumns * slotRows;
 	}
 
-	// Hack to prevent layout every frame; invalidate() is called when the table is modified,
-	// causing a new layout. Keeping a flag to skip layout after the table is modified prevents this.
-	// There is probably a better solution to this, but none that i know of.
-	private boolean skipLayout = false;
+	private void createSlots() {
+		clearChildren();
+		slots.clear();
+
+		int index = 0;
+		for (int y = 0; y < slotRows; ++y) {
+			for (int x = 0; x < slotColumns; ++x) {
+				ItemSlot slot = new ItemSlot(index);
+				add(slot);
+				slots.add(slot);
+
+				++index;
+			}
+
+			row();
+		}
+	}
 
 	@Override
 	public void layout() {
-		if (!skipLayout) {
-			clearChildren();
+		// Slots are sized to fill the display; the table size has to be recomputed
+		// when that changes, which invalidate() does without recreating the slots.
+		float slotWidth = getWidth() / slotColumns - slotSpacing;
+		float slotHeight = getHeight() / slotRows - slotSpacing;
+		for (Cell<?> cell : getCells()) {
+			if (cell.getMinWidth() != slotWidth || cell.getMinHeight() != slotHeight ||
+					cell.getSpaceTop() != slotSpacing) {
+				cell.size(slotWidth, slotHeight).space(slotSpacing);
+				invalidate();
+			}
+		}
 
-			int index = 0;
-			for (int y = 0; y < slotRows; ++y) {
-				for (int x = 0; x < slotColumns; ++x) {
-					add(new ItemSlot(index)).width(getWidth() / slotColumns - slotSpacing)
-							.height(getHeight() / slotRows - slotSpacing).space(slotSpacing);
+		super.layout();
 
-					++index;
-				}
+		stackTextDirty = true;
+	}
 
-				row();
-			}
+	@Override
+	public void draw(Batch batch, float parentAlpha) {
+		super.draw(batch, parentAlpha);
+
+		if (inventory != null) {
+			updateStackText();
+			stackText.setPosition(getX(), getY());
+			stackText.draw(batch, parentAlpha * getColor().a);
+		}
+	}
 
-			skipLayout = true;
+	/** Rebuilds the stack text if the inventory or the layout has changed */
+	private void updateStackText() {
+		if (!stackTextDirty && cachedInventory == inventory &&
+				cachedModificationCount == inventory.getModificationCount()) {
+			return;
+		}
 
-			super.layout();
-		} else {
-			skipLayout = false;
+		stackText.clear();
+		for (ItemSlot slot : slots) {
+			Item item = slot.getItem();
+			if (!item.isEmpty() && item.getType().getIcon() != null) {
+				int stack = item.getStack();
+				if (item.getType().getMaxStack() != 1 || stack != 1) {
+					stackTextBuilder.setLength(0);
+					stackTextBuilder.append(stack);
+					stackText.addText(stackTextBuilder, slot.getX() + 2f, slot.getY() + slot.getHeight() - 2f);
+				}
+			}
 		}
+
+		cachedInventory = inventory;
+		cachedModificationCount = inventory.getModificationCount();
+		stackTextDirty = false;
+	}
+
+	/**
+	 * Swaps the swap item with a slot of the display
+	 */
+	public interface SwapListener {
+		public void swap(InventoryDisplay display, int index);
 	}
 
 	public static class InventoryDisplayStyle {
@@ -185,7 +265,11 @@ public class InventoryDisplay extends Table {
 					}
 
 					if (swapItem != null) {
-						swapItem.stackTo(inventory.getItem(index));
+						if (swapListener != null) {
+							swapListener.swap(InventoryDisplay.this, index);
+						} else {
+							swapItem.stackTo(inventory.getItem(index));
+						}
 					}
 
 					return true;
@@ -224,14 +308,6 @@ public class InventoryDisplay extends Table {
 					float centerY = getY() + getHeight() / 2f;
 
 					itemTexture.draw(batch, centerX - type.getWidth() / 2f, centerY - type.getHeight() / 2f, type.getWidth(), type.getHeight());
-
-					int stack = item.getStack();
-					if (type.getMaxStack() != 1 || stack != 1) {
-						String stackText = Integer.toString(stack);
-
-						style.stackFont.setColor(1f, 1f, 1f, parentAlpha);
-						style.stackFont.draw(batch, stackText, getX() + 2f, getY() + getHeight() - 2f);
-					}
 				}
 			}
 		}
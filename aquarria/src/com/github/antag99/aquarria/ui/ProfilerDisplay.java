@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.ui;
+
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.StringBuilder;
+import com.github.antag99.aquarria.Profiler;
+
+/**
+ * Shows the statistics of the {@link Profiler}, refreshed a few times per second.
+ */
+public class ProfilerDisplay extends Label {
+	private float refreshInterval = 0.5f;
+	private float refreshTimer;
+	private StringBuilder report = new StringBuilder();
+
+	public ProfilerDisplay(Skin skin, String styleName) {
+		super("", skin, styleName);
+		setTouchable(Touchable.disabled);
+	}
+
+	@Override
+	public void act(float delta) {
+		super.act(delta);
+
+		if (!isVisible())
+			return;
+
+		refreshTimer -= delta;
+		if (refreshTimer <= 0f) {
+			refreshTimer = refreshInterval;
+			report.setLength(0);
+			Profiler.report(report);
+			if (Profiler.isTracing()) {
+				report.append("tracing\n");
+			}
+			setText(report);
+		}
+	}
+
+	public float getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	public void setRefreshInterval(float refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+}
@@ -29,12 +29,16 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.ui;
 
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Widget;
 
 public class StatusDisplay extends Widget {
+	/** Number of floats per item, in the vertex layout of SpriteBatch */
+	private static final int SPRITE_SIZE = 20;
+
 	private float value = 1f;
 
 	private int countX;
@@ -43,6 +47,17 @@ public class StatusDisplay extends Widget {
 
 	private StatusDisplayStyle style;
 
+	/** Vertices of the visible items, rebuilt when the value or bounds change */
+	private float[] vertices;
+	private int vertexCount;
+	/* State the vertices were built for; NaN values force a rebuild */
+	private float cachedValue = Float.NaN;
+	private float cachedAlpha;
+	private float cachedX;
+	private float cachedY;
+	private float cachedWidth;
+	private float cachedHeight;
+
 	public StatusDisplay() {
 	}
 
@@ -62,33 +77,104 @@ public class StatusDisplay extends Widget {
 	public void draw(Batch batch, float parentAlpha) {
 		super.draw(batch, parentAlpha);
 
+		if (!cacheValid(parentAlpha)) {
+			updateCache(parentAlpha);
+		}
+
+		if (vertexCount > 0) {
+			batch.draw(style.itemTexture.getTexture(), vertices, 0, vertexCount);
+		}
+	}
+
+	private boolean cacheValid(float parentAlpha) {
+		return cachedValue == value && cachedAlpha == parentAlpha &&
+				cachedX == getX() && cachedY == getY() &&
+				cachedWidth == getWidth() && cachedHeight == getHeight();
+	}
+
+	/** Builds the vertices of all visible items */
+	private void updateCache(float parentAlpha) {
 		float itemWidth = (getWidth() + spacing) / countX - spacing;
 		float itemHeight = (getHeight() + spacing) / countY - spacing;
 
 		int count = countX * countY;
+		if (vertices == null || vertices.length < count * SPRITE_SIZE) {
+			vertices = new float[count * SPRITE_SIZE];
+		}
+		vertexCount = 0;
+
+		TextureRegion region = style.itemTexture;
 
 		for (int y = countY - 1; y >= 0; --y) {
 			for (int x = 0; x < countX; ++x) {
-				float itemX = x * (itemWidth + spacing);
-				float itemY = y * (itemHeight + spacing);
-
 				int index = (countY - y - 1) * countX + x;
 				float currentValue = index * (1f / count);
 
-				if (currentValue < value) {
-					float percent = 1f;
-					if (value - currentValue < 1f / count) {
-						percent -= value - 1f / count;
-					}
-					float color = (percent * 0.9f + 0.1f);
-					batch.setColor(color, color, color, color * parentAlpha);
-				} else {
-					batch.setColor(1f, 1f, 1f, 0f);
+				// Empty items are fully transparent
+				if (currentValue >= value) {
+					continue;
 				}
 
-				batch.draw(style.itemTexture, getX() + itemX, getY() + itemY, itemWidth, itemHeight);
+				float percent = 1f;
+				if (value - currentValue < 1f / count) {
+					percent -= value - 1f / count;
+				}
+				float color = (percent * 0.9f + 0.1f);
+				float packedColor = Color.toFloatBits(color, color, color, color * parentAlpha);
+
+				float itemX = getX() + x * (itemWidth + spacing);
+				float itemY = getY() + y * (itemHeight + spacing);
+
+				vertexCount = putVertices(vertices, vertexCount, region, packedColor,
+						itemX, itemY, itemX + itemWidth, itemY + itemHeight);
 			}
 		}
+
+		cachedValue = value;
+		cachedAlpha = parentAlpha;
+		cachedX = getX();
+		cachedY = getY();
+		cachedWidth = getWidth();
+		cachedHeight = getHeight();
+	}
+
+	/** Puts the vertices of a quad in the same layout as SpriteBatch */
+	private static int putVertices(float[] vertices, int offset, TextureRegion region, float color,
+			float x, float y, float x2, float y2) {
+		float u = region.getU();
+		float v = region.getV2();
+		float u2 = region.getU2();
+		float v2 = region.getV();
+
+		vertices[offset++] = x;
+		vertices[offset++] = y;
+		vertices[offset++] = color;
+		vertices[offset++] = u;
+		vertices[offset++] = v;
+
+		vertices[offset++] = x;
+		vertices[offset++] = y2;
+		vertices[offset++] = color;
+		vertices[offset++] = u;
+		vertices[offset++] = v2;
+
+		vertices[offset++] = x2;
+		vertices[offset++] = y2;
+		vertices[offset++] = color;
+		vertices[offset++] = u2;
+		vertices[offset++] = v2;
+
+		vertices[offset++] = x2;
+		vertices[offset++] = y;
+		vertices[offset++] = color;
+		vertices[offset++] = u2;
+		vertices[offset++] = v;
+
+		return offset;
+	}
+
+	private void invalidateCache() {
+		cachedValue = Float.NaN;
 	}
 
 	public StatusDisplayStyle getStyle() {
@@ -97,6 +183,7 @@ public class StatusDisplay extends Widget {
 
 	public void setStyle(StatusDisplayStyle style) {
 		this.style = style;
+		invalidateCache();
 	}
 
 	public float getValue() {
@@ -113,6 +200,7 @@ public class StatusDisplay extends Widget {
 
 	public void setCountX(int heartCountX) {
 		this.countX = heartCountX;
+		invalidateCache();
 	}
 
 	public int getCountY() {
@@ -121,6 +209,7 @@ public class StatusDisplay extends Widget {
 
 	public void setCountY(int heartCountY) {
 		this.countY = heartCountY;
+		invalidateCache();
 	}
 
 	public float getSpacing() {
@@ -129,6 +218,7 @@ public class StatusDisplay extends Widget {
 
 	public void setSpacing(float heartSpacing) {
 		this.spacing = heartSpacing;
+		invalidateCache();
 	}
 
 	public static class StatusDisplayStyle {
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.ui;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Widget;
+import com.github.antag99.aquarria.Assets;
+import com.github.antag99.aquarria.world.Minimap;
+
+/**
+ * Shows the whole world, scaled to fit, using the smallest
+ * level of the {@link Minimap} that keeps it sharp.
+ */
+public class WorldMapDisplay extends Widget {
+	private Minimap minimap;
+	private TextureRegion blankTexture;
+	private float markerX, markerY;
+	private Color backgroundColor = new Color(0f, 0f, 0f, 0.75f);
+	private Color markerColor = new Color(Color.RED);
+
+	public WorldMapDisplay(Minimap minimap) {
+		this.minimap = minimap;
+		blankTexture = Assets.getTexture("blank.png");
+		setTouchable(Touchable.disabled);
+	}
+
+	/**
+	 * Sets the position of the marker, in world coordinates
+	 */
+	public void setMarker(float x, float y) {
+		markerX = x;
+		markerY = y;
+	}
+
+	@Override
+	public void draw(Batch batch, float parentAlpha) {
+		super.draw(batch, parentAlpha);
+
+		batch.setColor(backgroundColor.r, backgroundColor.g, backgroundColor.b, backgroundColor.a * parentAlpha);
+		batch.draw(blankTexture, getX(), getY(), getWidth(), getHeight());
+
+		float scale = Math.min(getWidth() / minimap.getWidth(), getHeight() / minimap.getHeight());
+		float width = minimap.getWidth() * scale;
+		float height = minimap.getHeight() * scale;
+		float x = getX() + (getWidth() - width) / 2f;
+		float y = getY() + (getHeight() - height) / 2f;
+
+		Texture texture = minimap.getTexture(minimap.getLevel(scale));
+		batch.setColor(1f, 1f, 1f, parentAlpha);
+		batch.draw(texture, x, y, width, height);
+
+		batch.setColor(markerColor.r, markerColor.g, markerColor.b, markerColor.a * parentAlpha);
+		batch.draw(blankTexture, x + markerX * scale - 2f, y + markerY * scale - 2f, 4f, 4f);
+		batch.setColor(Color.WHITE);
+	}
+
+	public Minimap getMinimap() {
+		return minimap;
+	}
+}
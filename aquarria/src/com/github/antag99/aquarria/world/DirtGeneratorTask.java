@@ -104,10 +104,11 @@ public class DirtGeneratorTask implements WorldGeneratorTask {
 		select.setLowSource(0.0);
 		select.setHighSource(1.0);
 
+		WorldRegion region = generator.getRegion().set(0, 0, generator.getWidth(), generator.getHeight());
 		for (int i = 0; i < generator.getWidth(); ++i) {
-			for (int j = 0; j < generator.getHeight(); ++j) {
-				if (generator.getTileType(i, j) == target && select.get(i, j) == 1.0) {
-					generator.setTileType(i, j, replacement);
+			for (int j = 0, index = region.index(i, 0); j < generator.getHeight(); ++j, index += region.getStride()) {
+				if (region.getTileType(index) == target && select.get(i, j) == 1.0) {
+					region.setTileType(index, replacement);
 				}
 			}
 		}
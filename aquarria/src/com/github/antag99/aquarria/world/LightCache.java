@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import java.util.BitSet;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Keeps the light of worlds, computing it by chunks of {@link WorldChanges#CHUNK_SIZE}
+ * cells when they're needed, and again only after it changed.
+ * </p>
+ * The light of a cell only depends on the surface levels of the columns around
+ * it, so the changes to worlds are taken as a {@link WorldListener}, and the
+ * chunks within {@link LightSolver#RADIUS} of a surface level that moved become
+ * stale. The light of each world is tracked separately, so one cache can be
+ * used with all snapshots of a simulation.
+ */
+public class LightCache implements WorldListener {
+	private LightSolver solver;
+	private ObjectMap<World, CachedLight> worlds = new ObjectMap<>();
+
+	public LightCache(LightSolver solver) {
+		if (solver == null) {
+			throw new NullPointerException("solver == null");
+		}
+
+		this.solver = solver;
+	}
+
+	public LightSolver getSolver() {
+		return solver;
+	}
+
+	/**
+	 * Computes the light of the stale chunks of the given region of the given
+	 * world, so that the light of the region is the same as that computed for
+	 * the whole world. The changes of the world must be given to this cache
+	 * from then on.
+	 */
+	public void update(World world, int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0)
+			return;
+
+		CachedLight cached = worlds.get(world);
+		if (cached == null) {
+			worlds.put(world, cached = new CachedLight(world));
+		}
+
+		int chunksX = cached.chunksX;
+		int startX = x >> WorldChanges.CHUNK_SHIFT;
+		int startY = y >> WorldChanges.CHUNK_SHIFT;
+		int endX = ((x + width - 1) >> WorldChanges.CHUNK_SHIFT) + 1;
+		int endY = ((y + height - 1) >> WorldChanges.CHUNK_SHIFT) + 1;
+		BitSet stale = cached.staleChunks;
+		for (int j = startY; j < endY; ++j) {
+			// Stale chunks next to each other are computed together
+			int chunk = stale.nextSetBit(j * chunksX + startX);
+			while (chunk != -1 && chunk < j * chunksX + endX) {
+				int end = Math.min(stale.nextClearBit(chunk), j * chunksX + endX);
+				int chunkX = (chunk - j * chunksX) << WorldChanges.CHUNK_SHIFT;
+				int chunkY = j << WorldChanges.CHUNK_SHIFT;
+				solver.computeWorldLight(world, chunkX, chunkY,
+						Math.min((end - chunk) << WorldChanges.CHUNK_SHIFT, world.getWidth() - chunkX),
+						Math.min(WorldChanges.CHUNK_SIZE, world.getHeight() - chunkY));
+				stale.clear(chunk, end);
+				chunk = stale.nextSetBit(end);
+			}
+		}
+	}
+
+	/**
+	 * Stops keeping the light of the given world
+	 */
+	public void remove(World world) {
+		worlds.remove(world);
+	}
+
+	@Override
+	public void worldChanged(World world, WorldChanges changes) {
+		CachedLight cached = worlds.get(world);
+		if (cached == null) {
+			return;
+		}
+
+		if (changes.isAllChanged()) {
+			for (int i = 0; i < world.getWidth(); ++i) {
+				cached.updateSurfaceLevel(world, i);
+			}
+			return;
+		}
+
+		// Only changes to tiles and walls can move the surface
+		IntArray changedChunks = changes.getChangedChunks();
+		for (int k = 0; k < changedChunks.size; ++k) {
+			int chunk = changedChunks.get(k);
+			if ((changes.getChunkKinds(chunk) & (WorldChanges.TILE | WorldChanges.WALL)) != 0) {
+				int chunkX = changes.getChunkX(chunk);
+				for (int i = chunkX; i < chunkX + changes.getChunkWidth(chunk); ++i) {
+					cached.updateSurfaceLevel(world, i);
+				}
+			}
+		}
+	}
+
+	private static class CachedLight {
+		/* The surface levels the light was computed for */
+		private short[] surfaceLevel;
+		/* Chunks whose light has to be computed */
+		private BitSet staleChunks = new BitSet();
+		private int chunksX;
+		private int chunksY;
+
+		public CachedLight(World world) {
+			surfaceLevel = world.surfaceLevel.clone();
+			chunksX = (world.getWidth() + WorldChanges.CHUNK_SIZE - 1) >> WorldChanges.CHUNK_SHIFT;
+			chunksY = (world.getHeight() + WorldChanges.CHUNK_SIZE - 1) >> WorldChanges.CHUNK_SHIFT;
+			staleChunks.set(0, chunksX * chunksY);
+		}
+
+		/*
+		 * Marks the chunks whose light depends on the surface level of the given
+		 * column as stale, if it moved. The cells between the old and new level
+		 * either became or stopped being lit by the sky, which changes the
+		 * light within the radius around them; except above them, as the cells
+		 * of the column there are lit by the sky either way, and are nearer.
+		 */
+		public void updateSurfaceLevel(World world, int x) {
+			int oldLevel = surfaceLevel[x];
+			int newLevel = world.surfaceLevel[x];
+			if (oldLevel == newLevel) {
+				return;
+			}
+			surfaceLevel[x] = (short) newLevel;
+
+			int minX = Math.max(x - LightSolver.RADIUS, 0) >> WorldChanges.CHUNK_SHIFT;
+			int maxX = Math.min(x + LightSolver.RADIUS, world.getWidth() - 1) >> WorldChanges.CHUNK_SHIFT;
+			int minY = Math.max(Math.min(oldLevel, newLevel) - LightSolver.RADIUS, 0) >> WorldChanges.CHUNK_SHIFT;
+			int maxY = (Math.max(oldLevel, newLevel) - 1) >> WorldChanges.CHUNK_SHIFT;
+			for (int j = minY; j <= maxY; ++j) {
+				staleChunks.set(j * chunksX + minX, j * chunksX + maxX + 1);
+			}
+		}
+	}
+}
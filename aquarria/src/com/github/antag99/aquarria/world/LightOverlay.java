@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.ImmediateModeRenderer20;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Darkens a region of the world by its light, smoothed between cells. The
+ * light of each corner is the average of the cells around it, and is drawn
+ * as a grid mesh that's built once and only has its colors updated.
+ * </p>
+ * When zoomed out, the grid can have a corner every few cells, so that its
+ * cost stays the same however many cells are visible.
+ */
+public class LightOverlay implements Disposable {
+	/* Packed color of each light level */
+	private static final float[] SHADES = new float[256];
+
+	static {
+		for (int i = 0; i < SHADES.length; ++i)
+			SHADES[i] = Color.toFloatBits(0f, 0f, 0f, 1f - i / 255f);
+	}
+
+	/* Indices are unsigned shorts, so large regions are drawn in bands */
+	private static final int MAX_VERTICES = 1 << 16;
+	private static final int VERTEX_SIZE = 3;
+
+	private int x, y, step;
+	/* Columns and rows of the grid, each step cells wide */
+	private int columns, rows;
+	/* Light of the corners of the grid, (columns + 1) * (rows + 1) */
+	private byte[] corners = new byte[0];
+
+	private Mesh mesh;
+	private ShaderProgram shader;
+	private float[] vertices;
+	/* Columns and rows of cells in the mesh */
+	private int meshColumns, meshRows;
+	private Matrix4 transform = new Matrix4();
+
+	public LightOverlay() {
+	}
+
+	/**
+	 * Computes the light of the corners of the given region,
+	 * whose light must have been computed.
+	 */
+	public void update(World world, int x, int y, int width, int height) {
+		update(world, x, y, width, height, 1);
+	}
+
+	/**
+	 * Computes the light of the corners of the given region, with a corner
+	 * every step cells; only the light of the cells around the corners is
+	 * read, and must have been computed. The last column and row of the grid
+	 * reach past the region when its size isn't a multiple of the step, and take
+	 * the light of the cells at its edge.
+	 */
+	public void update(World world, int x, int y, int width, int height, int step) {
+		if (step < 1) {
+			throw new IllegalArgumentException("step < 1: " + step);
+		}
+
+		this.x = x;
+		this.y = y;
+		this.step = step;
+		columns = (width + step - 1) / step;
+		rows = (height + step - 1) / step;
+
+		int stride = columns + 1;
+		if (corners.length < stride * (rows + 1)) {
+			corners = new byte[stride * (rows + 1)];
+		}
+
+		byte[] light = world.light;
+		int worldWidth = world.getWidth();
+		for (int j = 0; j <= rows; ++j) {
+			// The cells above and below the corners of this row; the last
+			// row may reach past the region, and then only has cells below
+			int cellY = j * step;
+			int above = (y + cellY) * worldWidth + x;
+			int below = (y + Math.min(cellY, height) - 1) * worldWidth + x;
+			boolean hasAbove = cellY < height;
+			boolean hasBelow = j > 0;
+			for (int i = 0, corner = j * stride; i <= columns; ++i, ++corner) {
+				int cellX = i * step;
+				int left = Math.min(cellX, width) - 1;
+				int sum = 0, count = 0;
+				if (i > 0) {
+					if (hasAbove) {
+						sum += light[above + left] & 0xff;
+						++count;
+					}
+					if (hasBelow) {
+						sum += light[below + left] & 0xff;
+						++count;
+					}
+				}
+				if (cellX < width) {
+					if (hasAbove) {
+						sum += light[above + cellX] & 0xff;
+						++count;
+					}
+					if (hasBelow) {
+						sum += light[below + cellX] & 0xff;
+						++count;
+					}
+				}
+				corners[corner] = (byte) (count != 0 ? sum / count : 0);
+			}
+		}
+	}
+
+	/**
+	 * Gets the light of the given corner of the grid, relative to its
+	 * bottom left corner.
+	 */
+	public float getCornerLight(int i, int j) {
+		return (corners[j * (columns + 1) + i] & 0xff) / 255f;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Draws the overlay with the given projection. Must be called outside
+	 * of batches, on the rendering thread.
+	 */
+	public void render(Matrix4 projection) {
+		if (columns <= 0 || rows <= 0)
+			return;
+
+		int stride = columns + 1;
+		int bandRows = Math.min(rows, MAX_VERTICES / stride - 1);
+		if (mesh == null || meshColumns != columns || meshRows < bandRows) {
+			createMesh(columns, bandRows);
+		}
+
+		if (shader == null) {
+			shader = ImmediateModeRenderer20.createDefaultShader(false, true, 0);
+		}
+
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+		shader.begin();
+		for (int start = 0; start < rows; start += bandRows) {
+			int bandRowCount = Math.min(bandRows, rows - start);
+
+			// Only the colors change; positions are in grid cells, relative to the band
+			int vertexCount = (bandRowCount + 1) * stride;
+			for (int i = 0, corner = start * stride; i < vertexCount; ++i, ++corner) {
+				vertices[i * VERTEX_SIZE + 2] = SHADES[corners[corner] & 0xff];
+			}
+			mesh.setVertices(vertices, 0, vertexCount * VERTEX_SIZE);
+
+			transform.set(projection).translate(x, y + start * step, 0f).scale(step, step, 1f);
+			shader.setUniformMatrix("u_projModelView", transform);
+			mesh.render(shader, GL20.GL_TRIANGLES, 0, bandRowCount * columns * 6);
+		}
+		shader.end();
+	}
+
+	private void createMesh(int columns, int rows) {
+		if (mesh != null)
+			mesh.dispose();
+
+		int vertexColumns = columns + 1;
+		int vertexCount = vertexColumns * (rows + 1);
+		vertices = new float[vertexCount * VERTEX_SIZE];
+		for (int j = 0, index = 0; j <= rows; ++j) {
+			for (int i = 0; i <= columns; ++i, index += VERTEX_SIZE) {
+				vertices[index] = i;
+				vertices[index + 1] = j;
+			}
+		}
+
+		// Two triangles per cell, sharing the corners of adjacent cells
+		short[] indices = new short[columns * rows * 6];
+		for (int j = 0, index = 0; j < rows; ++j) {
+			for (int i = 0; i < columns; ++i) {
+				int bottomLeft = j * vertexColumns + i;
+				int topLeft = bottomLeft + vertexColumns;
+				indices[index++] = (short) bottomLeft;
+				indices[index++] = (short) (bottomLeft + 1);
+				indices[index++] = (short) (topLeft + 1);
+				indices[index++] = (short) (topLeft + 1);
+				indices[index++] = (short) topLeft;
+				indices[index++] = (short) bottomLeft;
+			}
+		}
+
+		mesh = new Mesh(false, vertexCount, indices.length,
+				new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+				VertexAttribute.ColorPacked());
+		mesh.setIndices(indices);
+		meshColumns = columns;
+		meshRows = rows;
+	}
+
+	@Override
+	public void dispose() {
+		if (mesh != null) {
+			mesh.dispose();
+			mesh = null;
+		}
+		if (shader != null) {
+			shader.dispose();
+			shader = null;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the light of large regions in parallel, giving exactly the same
+ * values as {@link World#computeLight(int, int, int, int)}.
+ * </p>
+ * Light falls off by the same amount for every step from a cell open to the
+ * sky, so the light of a cell only depends on its distance to the nearest
+ * such cell, and it's gone after {@link #RADIUS} steps. The region is split
+ * into tiles, whose distances are found independently on a fork-join pool;
+ * each tile also looks at the cells within the radius around it, so that
+ * light crosses the borders between tiles.
+ */
+public class LightSolver {
+	/** The number of steps light travels before it's gone */
+	public static final int RADIUS;
+	/* The light at each distance, as stored by the serial flood */
+	private static final byte[] LIGHT;
+
+	static {
+		// Repeat the float arithmetic of the serial flood, so that the values match
+		int radius = 0;
+		for (float light = 1f; light - 0.15f > 0f; light -= 0.15f)
+			++radius;
+		RADIUS = radius;
+
+		LIGHT = new byte[RADIUS + 2];
+		float light = 1f;
+		for (int i = 0; i <= RADIUS; ++i, light -= 0.15f)
+			LIGHT[i] = (byte) (light * 255);
+	}
+
+	/** Size of the tiles the region is split into */
+	public static final int TILE_SIZE = 64;
+
+	private ForkJoinPool pool;
+
+	/* Distances of the tile being solved, including the cells around it */
+	private ThreadLocal<byte[]> distances = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[(TILE_SIZE + RADIUS * 2) * (TILE_SIZE + RADIUS * 2)];
+		}
+	};
+
+	/**
+	 * Creates a solver that runs on the given pool
+	 */
+	public LightSolver(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new NullPointerException("pool == null");
+		}
+
+		this.pool = pool;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Computes the light of the given region of the given world, like
+	 * {@link World#computeLight(int, int, int, int)}.
+	 */
+	public void computeLight(World world, int x, int y, int width, int height) {
+		computeLight(world, x, y, width, height, x, y, width, height);
+	}
+
+	/**
+	 * Computes the light of the given region of the given world as it's lit
+	 * by the whole world, which is the same as computing the light of the
+	 * whole world; only the cells of the region are written.
+	 */
+	public void computeWorldLight(World world, int x, int y, int width, int height) {
+		computeLight(world, 0, 0, world.getWidth(), world.getHeight(), x, y, width, height);
+	}
+
+	/*
+	 * Computes the light of the given cells, as lit by the cells of the given region
+	 */
+	private void computeLight(World world, int regionX, int regionY, int regionWidth, int regionHeight,
+			int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0)
+			return;
+
+		world.checkBounds(x, y);
+		world.checkBounds(x + width - 1, y + height - 1);
+
+		final List<TileTask> tasks = new ArrayList<>();
+		for (int tileY = y; tileY < y + height; tileY += TILE_SIZE) {
+			for (int tileX = x; tileX < x + width; tileX += TILE_SIZE) {
+				tasks.add(new TileTask(world, regionX, regionY, regionWidth, regionHeight, tileX, tileY,
+						Math.min(TILE_SIZE, x + width - tileX),
+						Math.min(TILE_SIZE, y + height - tileY)));
+			}
+		}
+
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+	}
+
+	private void solveTile(World world, int regionX, int regionY, int regionWidth, int regionHeight,
+			int tileX, int tileY, int tileWidth, int tileHeight) {
+		// The tile and the cells around it that can light it, within the region
+		int minX = Math.max(tileX - RADIUS, regionX);
+		int minY = Math.max(tileY - RADIUS, regionY);
+		int maxX = Math.min(tileX + tileWidth + RADIUS, regionX + regionWidth);
+		int maxY = Math.min(tileY + tileHeight + RADIUS, regionY + regionHeight);
+		int stride = maxX - minX;
+		byte[] distance = distances.get();
+		short[] surfaceLevel = world.surfaceLevel;
+		byte max = (byte) (RADIUS + 1);
+
+		// Cells open to the sky are the sources of light
+		for (int j = minY, index = 0; j < maxY; ++j) {
+			for (int i = minX; i < maxX; ++i, ++index) {
+				distance[index] = j >= surfaceLevel[i] ? 0 : max;
+			}
+		}
+
+		// Two passes give the distance to the nearest source, as light
+		// travels through every cell at the same rate.
+		for (int j = minY, index = 0; j < maxY; ++j) {
+			for (int i = minX; i < maxX; ++i, ++index) {
+				int d = distance[index];
+				if (i > minX)
+					d = Math.min(d, distance[index - 1] + 1);
+				if (j > minY)
+					d = Math.min(d, distance[index - stride] + 1);
+				distance[index] = (byte) Math.min(d, max);
+			}
+		}
+		for (int j = maxY - 1, index = stride * (maxY - minY) - 1; j >= minY; --j) {
+			for (int i = maxX - 1; i >= minX; --i, --index) {
+				int d = distance[index];
+				if (i + 1 < maxX)
+					d = Math.min(d, distance[index + 1] + 1);
+				if (j + 1 < maxY)
+					d = Math.min(d, distance[index + stride] + 1);
+				distance[index] = (byte) Math.min(d, max);
+			}
+		}
+
+		byte[] light = world.light;
+		int worldWidth = world.getWidth();
+		for (int j = tileY; j < tileY + tileHeight; ++j) {
+			int from = (j - minY) * stride + (tileX - minX);
+			int to = j * worldWidth + tileX;
+			for (int i = 0; i < tileWidth; ++i) {
+				light[to + i] = LIGHT[distance[from + i]];
+			}
+		}
+	}
+
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private World world;
+		private int regionX, regionY, regionWidth, regionHeight;
+		private int tileX, tileY, tileWidth, tileHeight;
+
+		public TileTask(World world, int regionX, int regionY, int regionWidth, int regionHeight,
+				int tileX, int tileY, int tileWidth, int tileHeight) {
+			this.world = world;
+			this.regionX = regionX;
+			this.regionY = regionY;
+			this.regionWidth = regionWidth;
+			this.regionHeight = regionHeight;
+			this.tileX = tileX;
+			this.tileY = tileY;
+			this.tileWidth = tileWidth;
+			this.tileHeight = tileHeight;
+		}
+
+		@Override
+		protected void compute() {
+			solveTile(world, regionX, regionY, regionWidth, regionHeight, tileX, tileY, tileWidth, tileHeight);
+		}
+	}
+}
@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntMap;
+import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.TileType;
+
+/**
+ * Keeps a map of a world, with one pixel per cell colored by its contents,
+ * and smaller mip levels, each half the size of the one before. It is kept
+ * current as a {@link WorldListener}, only recoloring the cells that changed,
+ * and only the dirty parts of the levels are uploaded to their textures.
+ * </p>
+ * Pixels are stored as RGBA8888, top row first.
+ */
+public class Minimap implements WorldListener, Disposable {
+	/** Size of the parts of the levels that are uploaded separately */
+	public static final int UPLOAD_TILE_SIZE = 64;
+	private static final int WATER_COLOR = Color.rgba8888(0.2f, 0.4f, 1f, 0.8f);
+
+	private final int width;
+	private final int height;
+	private final int levelCount;
+	private int[][] levels;
+	private int[] levelWidths;
+	private int[] levelHeights;
+
+	/* Textures of the levels, created when first used */
+	private Texture[] textures;
+	/* Parts of the levels that changed since they were uploaded */
+	private BitSet[] dirtyTiles;
+	/* Pixmaps the dirty parts are copied into, by size */
+	private IntMap<Pixmap> uploadPixmaps = new IntMap<>();
+
+	public Minimap(int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		int count = 1;
+		for (int w = width, h = height; w > 1 || h > 1; w = (w + 1) >> 1, h = (h + 1) >> 1)
+			++count;
+		levelCount = count;
+
+		levels = new int[levelCount][];
+		levelWidths = new int[levelCount];
+		levelHeights = new int[levelCount];
+		textures = new Texture[levelCount];
+		dirtyTiles = new BitSet[levelCount];
+		for (int level = 0, w = width, h = height; level < levelCount; ++level, w = (w + 1) >> 1, h = (h + 1) >> 1) {
+			levelWidths[level] = w;
+			levelHeights[level] = h;
+			levels[level] = new int[w * h];
+			dirtyTiles[level] = new BitSet();
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getLevelCount() {
+		return levelCount;
+	}
+
+	public int getLevelWidth(int level) {
+		return levelWidths[level];
+	}
+
+	public int getLevelHeight(int level) {
+		return levelHeights[level];
+	}
+
+	/**
+	 * Gets the pixels of the given level, top row first
+	 */
+	public int[] getPixels(int level) {
+		return levels[level];
+	}
+
+	@Override
+	public void worldChanged(World world, WorldChanges changes) {
+		if (changes.isAllChanged()) {
+			update(world, 0, 0, width, height);
+			return;
+		}
+
+		for (int i = 0; i < changes.getChangedChunks().size; ++i) {
+			int chunk = changes.getChangedChunks().get(i);
+			int x = changes.getChunkX(chunk);
+			int y = changes.getChunkY(chunk);
+			int chunkWidth = changes.getChunkWidth(chunk);
+			int chunkHeight = changes.getChunkHeight(chunk);
+
+			int[] pixels = levels[0];
+			for (int j = y; j < y + chunkHeight; ++j) {
+				int pixel = (height - 1 - j) * width + x;
+				int index = j * width + x;
+				for (int k = x; k < x + chunkWidth; ++k, ++pixel, ++index) {
+					if (changes.isChanged(k, j)) {
+						pixels[pixel] = getColor(world, index);
+					}
+				}
+			}
+
+			downsample(x, height - y - chunkHeight, chunkWidth, chunkHeight);
+		}
+	}
+
+	/**
+	 * Recolors all cells of the given region of the world
+	 */
+	public void update(World world, int x, int y, int width, int height) {
+		int[] pixels = levels[0];
+		for (int j = y; j < y + height; ++j) {
+			int pixel = (this.height - 1 - j) * this.width + x;
+			int index = j * this.width + x;
+			for (int i = 0; i < width; ++i) {
+				pixels[pixel + i] = getColor(world, index + i);
+			}
+		}
+
+		downsample(x, this.height - y - height, width, height);
+	}
+
+	private static int getColor(World world, int index) {
+		TileType tile = world.tiles[index];
+		if (tile != GameRegistry.airTile) {
+			return Color.rgba8888(tile.getMapColor());
+		}
+
+		if (world.liquidLevel[index] != 0) {
+			return WATER_COLOR;
+		}
+
+		return Color.rgba8888(world.walls[index].getMapColor());
+	}
+
+	/**
+	 * Rebuilds the mip levels from the given rectangle of pixels of the
+	 * first level, and marks their parts as dirty.
+	 */
+	private void downsample(int x, int y, int width, int height) {
+		markDirty(0, x, y, width, height);
+
+		int minX = x, minY = y, maxX = x + width, maxY = y + height;
+		for (int level = 1; level < levelCount; ++level) {
+			minX >>= 1;
+			minY >>= 1;
+			maxX = (maxX + 1) >> 1;
+			maxY = (maxY + 1) >> 1;
+
+			int[] source = levels[level - 1];
+			int sourceWidth = levelWidths[level - 1];
+			int sourceHeight = levelHeights[level - 1];
+			int[] pixels = levels[level];
+			int levelWidth = levelWidths[level];
+			for (int j = minY; j < maxY; ++j) {
+				for (int i = minX; i < maxX; ++i) {
+					pixels[j * levelWidth + i] = average(source, sourceWidth, sourceHeight, i * 2, j * 2);
+				}
+			}
+
+			markDirty(level, minX, minY, maxX - minX, maxY - minY);
+		}
+	}
+
+	/**
+	 * Averages the (up to) 2x2 pixels at the given position, weighting
+	 * the colors by alpha so that transparent pixels don't darken them.
+	 */
+	private static int average(int[] pixels, int width, int height, int x, int y) {
+		int r = 0, g = 0, b = 0, a = 0, count = 0;
+		for (int j = y; j < y + 2 && j < height; ++j) {
+			for (int i = x; i < x + 2 && i < width; ++i) {
+				int pixel = pixels[j * width + i];
+				int alpha = pixel & 0xff;
+				r += (pixel >>> 24) * alpha;
+				g += ((pixel >>> 16) & 0xff) * alpha;
+				b += ((pixel >>> 8) & 0xff) * alpha;
+				a += alpha;
+				++count;
+			}
+		}
+		if (a == 0) {
+			return 0;
+		}
+		return (r / a) << 24 | (g / a) << 16 | (b / a) << 8 | (a / count);
+	}
+
+	private void markDirty(int level, int x, int y, int width, int height) {
+		int tilesX = (levelWidths[level] + UPLOAD_TILE_SIZE - 1) / UPLOAD_TILE_SIZE;
+		for (int j = y / UPLOAD_TILE_SIZE; j <= (y + height - 1) / UPLOAD_TILE_SIZE; ++j) {
+			for (int i = x / UPLOAD_TILE_SIZE; i <= (x + width - 1) / UPLOAD_TILE_SIZE; ++i) {
+				dirtyTiles[level].set(j * tilesX + i);
+			}
+		}
+	}
+
+	/**
+	 * Chooses the smallest level that still has at least one pixel
+	 * for every screen pixel, when drawn at the given scale.
+	 * 
+	 * @param scale The screen pixels per cell
+	 */
+	public int getLevel(float scale) {
+		int level = 0;
+		while (level + 1 < levelCount && scale * (1 << (level + 1)) <= 1f)
+			++level;
+		return level;
+	}
+
+	/**
+	 * Gets the texture of the given level, uploading its dirty parts.
+	 * Must be called on the rendering thread.
+	 */
+	public Texture getTexture(int level) {
+		Texture texture = textures[level];
+		if (texture == null) {
+			texture = new Texture(levelWidths[level], levelHeights[level], Format.RGBA8888);
+			texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+			textures[level] = texture;
+			dirtyTiles[level].set(0, ((levelWidths[level] + UPLOAD_TILE_SIZE - 1) / UPLOAD_TILE_SIZE)
+					* ((levelHeights[level] + UPLOAD_TILE_SIZE - 1) / UPLOAD_TILE_SIZE));
+		}
+
+		BitSet dirty = dirtyTiles[level];
+		int levelWidth = levelWidths[level];
+		int levelHeight = levelHeights[level];
+		int tilesX = (levelWidth + UPLOAD_TILE_SIZE - 1) / UPLOAD_TILE_SIZE;
+		int[] pixels = levels[level];
+		// Blending is global to all pixmaps; it's restored to the default afterwards
+		Pixmap.setBlending(Pixmap.Blending.None);
+		try {
+			for (int tile = dirty.nextSetBit(0); tile != -1; tile = dirty.nextSetBit(tile + 1)) {
+				int x = (tile % tilesX) * UPLOAD_TILE_SIZE;
+				int y = (tile / tilesX) * UPLOAD_TILE_SIZE;
+				int tileWidth = Math.min(UPLOAD_TILE_SIZE, levelWidth - x);
+				int tileHeight = Math.min(UPLOAD_TILE_SIZE, levelHeight - y);
+
+				Pixmap pixmap = getUploadPixmap(tileWidth, tileHeight);
+				ByteBuffer buffer = pixmap.getPixels();
+				buffer.clear();
+				IntBuffer data = buffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+				for (int j = 0; j < tileHeight; ++j) {
+					data.put(pixels, (y + j) * levelWidth + x, tileWidth);
+				}
+				texture.draw(pixmap, x, y);
+			}
+		} finally {
+			Pixmap.setBlending(Pixmap.Blending.SourceOver);
+		}
+		dirty.clear();
+
+		return texture;
+	}
+
+	private Pixmap getUploadPixmap(int width, int height) {
+		int key = width << 16 | height;
+		Pixmap pixmap = uploadPixmaps.get(key);
+		if (pixmap == null) {
+			pixmap = new Pixmap(width, height, Format.RGBA8888);
+			uploadPixmaps.put(key, pixmap);
+		}
+		return pixmap;
+	}
+
+	/**
+	 * Copies the given level into a new pixmap
+	 */
+	public Pixmap toPixmap(int level) {
+		Pixmap pixmap = new Pixmap(levelWidths[level], levelHeights[level], Format.RGBA8888);
+		ByteBuffer buffer = pixmap.getPixels();
+		buffer.clear();
+		buffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer().put(levels[level]);
+		return pixmap;
+	}
+
+	@Override
+	public void dispose() {
+		for (int i = 0; i < textures.length; ++i) {
+			if (textures[i] != null) {
+				textures[i].dispose();
+				textures[i] = null;
+			}
+		}
+		for (Pixmap pixmap : uploadPixmaps.values()) {
+			pixmap.dispose();
+		}
+		uploadPixmaps.clear();
+	}
+}
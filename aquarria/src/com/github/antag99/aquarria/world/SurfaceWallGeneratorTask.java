@@ -43,9 +43,7 @@ public class SurfaceWallGeneratorTask implements WorldGeneratorTask {
 		for (int i = 0; i < generator.getWidth(); ++i) {
 			int surfaceLevel = generator.getSurfaceLevel(i);
 			// Offset by -2; don't place walls behind grass blocks
-			for (int j = surfaceLevel - 20; j < surfaceLevel - 2; ++j) {
-				generator.setWallType(i, j, wall);
-			}
+			generator.fillWalls(i, surfaceLevel - 20, 1, 18, wall);
 		}
 	}
 }
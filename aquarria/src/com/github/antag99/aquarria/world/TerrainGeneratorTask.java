@@ -67,11 +67,7 @@ public class TerrainGeneratorTask implements WorldGeneratorTask {
 			int surfaceOffset = (int) (noise * 32.0);
 			int surfaceLevel = baseSurfaceLevel + surfaceOffset;
 
-			generator.setSurfaceLevel(i, surfaceLevel);
-
-			for (int j = 0; j < surfaceLevel; ++j) {
-				generator.setTileType(i, j, terrain);
-			}
+			generator.fillTiles(i, 0, 1, surfaceLevel, terrain);
 		}
 	}
 }
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.LongArray;
+
+/**
+ * Schedules ticks of cells, in a hierarchical timing wheel. Each level has
+ * {@link #SLOTS} slots, each covering {@code SLOTS^level} ticks; a tick is put
+ * in the lowest level that spans its delay, and moved down a level when the
+ * time of its slot comes. Scheduling and running a tick are O(1), and
+ * advancing costs nothing when there's nothing due.
+ * </p>
+ * A cell has at most one pending tick; scheduling it again keeps the earlier one.
+ */
+public class TileTickScheduler {
+	private static final int SLOT_BITS = 6;
+	public static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	/** The longest delay a tick can be scheduled with */
+	public static final int MAX_DELAY = (1 << (SLOT_BITS * LEVELS)) - 1;
+
+	/* Cells and due ticks of each slot, indexed by level * SLOTS + slot */
+	private IntArray[] cells = new IntArray[LEVELS * SLOTS];
+	private LongArray[] dues = new LongArray[LEVELS * SLOTS];
+	/* Due tick of every pending cell, truncated to an int */
+	private IntIntMap pending = new IntIntMap();
+	private long currentTick;
+
+	/* The due cells being run, swapped with the slot */
+	private IntArray dueCells = new IntArray();
+	private LongArray dueTicks = new LongArray();
+
+	public TileTickScheduler() {
+		for (int i = 0; i < cells.length; ++i) {
+			cells[i] = new IntArray(false, 4);
+			dues[i] = new LongArray(false, 4);
+		}
+	}
+
+	/**
+	 * Schedules the given cell to be ticked after the given number of ticks
+	 */
+	public void schedule(int cell, int delay) {
+		if (delay < 1 || delay > MAX_DELAY) {
+			throw new IllegalArgumentException("delay out of range: " + delay);
+		}
+
+		long due = currentTick + delay;
+		if (pending.containsKey(cell)) {
+			// Due ticks are kept truncated; their difference is exact, as delays are bounded
+			if (pending.get(cell, 0) - (int) due <= 0) {
+				return;
+			}
+		}
+
+		// A replaced tick is skipped when it comes due, as it no longer matches
+		pending.put(cell, (int) due);
+		insert(cell, due);
+	}
+
+	private void insert(int cell, long due) {
+		long delay = due - currentTick;
+		int level = 0;
+		while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+			++level;
+		}
+
+		int slot = level * SLOTS + (int) ((due >> (SLOT_BITS * level)) & SLOT_MASK);
+		cells[slot].add(cell);
+		dues[slot].add(due);
+	}
+
+	/** Whether a tick is pending for the given cell */
+	public boolean isScheduled(int cell) {
+		return pending.containsKey(cell);
+	}
+
+	/** Gets the number of pending ticks */
+	public int getPendingCount() {
+		return pending.size;
+	}
+
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	/**
+	 * Advances to the next tick, and collects the cells that are due into
+	 * the given array.
+	 */
+	public void advance(IntArray due) {
+		++currentTick;
+
+		// Move ticks of higher levels down, highest first
+		for (int level = LEVELS - 1; level > 0; --level) {
+			long span = 1L << (SLOT_BITS * level);
+			if ((currentTick & (span - 1)) == 0) {
+				cascade(level * SLOTS + (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK));
+			}
+		}
+
+		int slot = (int) (currentTick & SLOT_MASK);
+		if (cells[slot].size == 0) {
+			return;
+		}
+
+		swap(slot);
+		for (int i = 0; i < dueCells.size; ++i) {
+			int cell = dueCells.items[i];
+			// Skip ticks that were replaced by earlier ones
+			if (pending.get(cell, -1) == (int) dueTicks.items[i]) {
+				pending.remove(cell, -1);
+				due.add(cell);
+			}
+		}
+		dueCells.clear();
+		dueTicks.clear();
+	}
+
+	private void cascade(int slot) {
+		if (cells[slot].size == 0) {
+			return;
+		}
+
+		swap(slot);
+		for (int i = 0; i < dueCells.size; ++i) {
+			insert(dueCells.items[i], dueTicks.items[i]);
+		}
+		dueCells.clear();
+		dueTicks.clear();
+	}
+
+	private void swap(int slot) {
+		IntArray tmpCells = cells[slot];
+		cells[slot] = dueCells;
+		dueCells = tmpCells;
+
+		LongArray tmpDues = dues[slot];
+		dues[slot] = dueTicks;
+		dueTicks = tmpDues;
+	}
+
+	/**
+	 * Removes all pending ticks
+	 */
+	public void clear() {
+		for (int i = 0; i < cells.length; ++i) {
+			cells[i].clear();
+			dues[i].clear();
+		}
+		pending.clear();
+	}
+}
@@ -32,12 +32,16 @@ package com.github.antag99.aquarria.world;
 import java.util.Arrays;
 import java.util.BitSet;
 
-import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
 import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntSet;
 import com.github.antag99.aquarria.Direction;
 import com.github.antag99.aquarria.GameRegistry;
 import com.github.antag99.aquarria.Item;
+import com.github.antag99.aquarria.ItemType;
+import com.github.antag99.aquarria.Profiler;
 import com.github.antag99.aquarria.TileType;
 import com.github.antag99.aquarria.WallType;
 import com.github.antag99.aquarria.entity.Entity;
@@ -48,23 +52,32 @@ public class World {
 
 	private final int width;
 	private final int height;
+	private final long seed;
+	private RandomXS128 random;
 
 	private float spawnX, spawnY;
 
-	private TileType[] tiles;
-	private WallType[] walls;
+	// Cell arrays are accessed directly by WorldRegion and WorldSnapshot
+	TileType[] tiles;
+	WallType[] walls;
 
-	private byte[] tileAttachment;
+	byte[] tileAttachment;
 	private BitSet tileBlocked;
 
-	private short[] surfaceLevel;
-	private byte[] light;
+	/* One above the highest cell blocking sky light, in each column; read by LightSolver */
+	short[] surfaceLevel;
+	byte[] light;
 
 	private Array<Entity> entities;
 
-	private byte[] liquidLevel;
+	byte[] liquidLevel;
 	private float tickCounter;
 	private IntArray activeLiquids;
+	private WorldRegion lightRegion;
+
+	private WorldChanges changes;
+	private boolean trackingChanges = true;
+	private Array<WorldListener> listeners = new Array<>();
 
 	// Liquid simulation uses a fixed time step,
 	// as it is quite hard to interpolate liquid movement
@@ -72,12 +85,50 @@ public class World {
 	private static final float TICK = (1f / 255);
 	private static final int MAX_LIQUID = 255;
 
-	public World(int width, int height) {
+	/**
+	 * Entities and tiles are updated with a fixed time step, so that their physics
+	 * don't depend on the frame rate.
+	 */
+	public static final float ENTITY_TICK = 1f / 60;
+	/** Entity updates that are skipped rather than caught up with, after a stall */
+	private static final int MAX_ENTITY_TICKS = 8;
+	private float entityTickCounter;
+	private float interpolation = 1f;
+
+	/** Number of tiles picked for random ticks in each chunk, every tick */
+	public static final int RANDOM_TICKS = 3;
+	private TileTickScheduler tileTicks = new TileTickScheduler();
+	/* The cells whose ticks are due */
+	private IntArray dueTicks = new IntArray();
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+	/* The tiles being destroyed, and the worklist used to find them */
+	private IntArray destroyedTiles = new IntArray();
+	private IntArray destroyWorklist = new IntArray();
+	private IntSet destroyVisited = new IntSet();
+	/* Drops collected while destroying tiles, stacked per type */
+	private boolean collectingDrops;
+	private Array<Item> collectedDrops = new Array<>();
+	/* Sum of the positions of each collected drop, and the number of drops */
+	private FloatArray collectedDropPositions = new FloatArray();
+
+	private static final Profiler.Scope UPDATE_SCOPE = Profiler.scope("World.update");
+	private static final Profiler.Scope LIQUID_SCOPE = Profiler.scope("World.liquid");
+	private static final Profiler.Scope ENTITY_SCOPE = Profiler.scope("World.entities");
+	private static final Profiler.Scope TILE_TICK_SCOPE = Profiler.scope("World.tileTicks");
+
+	/**
+	 * Creates a new world. All randomness in the simulation comes from the
+	 * given seed, so that the same input always gives the same world.
+	 */
+	public World(int width, int height, long seed) {
 		this.width = width;
 		this.height = height;
+		this.seed = seed;
 
 		tiles = new TileType[width * height];
 		walls = new WallType[width * height];
+		changes = new WorldChanges(width, height);
 
 		clear();
 	}
@@ -97,6 +148,23 @@ public class World {
 		light = new byte[width * height];
 		liquidLevel = new byte[width * height];
 		activeLiquids = new IntArray();
+		random = new RandomXS128(seed);
+		lightRegion = new WorldRegion(this);
+		tileTicks.clear();
+		changes.markAll();
+	}
+
+	/** Gets the seed of this world */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the random number generator of the simulation;
+	 * it is reset when the world is cleared.
+	 */
+	public RandomXS128 getRandom() {
+		return random;
 	}
 
 	public float getSpawnX() {
@@ -140,6 +208,59 @@ public class World {
 		}
 
 		tiles[y * width + x] = type;
+		updateSurfaceLevel(x, y, 1);
+		if (trackingChanges)
+			changes.mark(x, y, WorldChanges.TILE);
+	}
+
+	/**
+	 * Schedules the tile at the given position to be ticked after the given
+	 * number of ticks, which are as long as {@link #ENTITY_TICK}. A tile has at
+	 * most one pending tick; scheduling it again keeps the earliest one.
+	 * 
+	 * @see TileType#tick(World, int, int)
+	 */
+	public void scheduleTick(int x, int y, int delay) {
+		checkBounds(x, y);
+
+		tileTicks.schedule(y * width + x, delay);
+	}
+
+	/**
+	 * Gets whether a tick is scheduled for the tile at the given position
+	 */
+	public boolean isTickScheduled(int x, int y) {
+		checkBounds(x, y);
+
+		return tileTicks.isScheduled(y * width + x);
+	}
+
+	/**
+	 * Runs the scheduled tile ticks that are due, and the random ticks
+	 */
+	private void tickTiles() {
+		tileTicks.advance(dueTicks);
+		for (int i = 0; i < dueTicks.size; ++i) {
+			int index = dueTicks.items[i];
+			int x = index % width;
+			int y = index / width;
+			tiles[index].tick(this, x, y);
+		}
+		dueTicks.clear();
+
+		// Every chunk is loaded, so tiles are picked from all of them
+		int chunkSize = WorldChanges.CHUNK_SIZE;
+		for (int chunkY = 0; chunkY < height; chunkY += chunkSize) {
+			int chunkHeight = Math.min(chunkSize, height - chunkY);
+			for (int chunkX = 0; chunkX < width; chunkX += chunkSize) {
+				int chunkWidth = Math.min(chunkSize, width - chunkX);
+				for (int i = 0; i < RANDOM_TICKS; ++i) {
+					int x = chunkX + random.nextInt(chunkWidth);
+					int y = chunkY + random.nextInt(chunkHeight);
+					tiles[y * width + x].randomTick(this, x, y);
+				}
+			}
+		}
 	}
 
 	/**
@@ -189,6 +310,8 @@ public class World {
 			tileAttachment[x + y * width] |= direction.mask();
 		else
 			tileAttachment[x + y * width] &= ~direction.mask();
+		if (trackingChanges)
+			changes.mark(x, y, WorldChanges.ATTACHMENT);
 	}
 
 	/**
@@ -237,6 +360,9 @@ public class World {
 		}
 
 		walls[y * width + x] = type;
+		updateSurfaceLevel(x, y, 1);
+		if (trackingChanges)
+			changes.mark(x, y, WorldChanges.WALL);
 	}
 
 	public int getWidth() {
@@ -247,16 +373,37 @@ public class World {
 		return height;
 	}
 
+	/**
+	 * Gets the surface level of the given column; the cells at and above it
+	 * are open to the sky. It's one above the highest cell that is solid or
+	 * has a wall, or 0 if there is none, and is kept up to date as tiles
+	 * and walls change.
+	 */
 	public int getSurfaceLevel(int x) {
 		checkBounds(x, 0);
 
 		return surfaceLevel[x];
 	}
 
-	public void setSurfaceLevel(int x, int level) {
-		checkBounds(x, 0);
+	/**
+	 * Updates the surface level of the given column, after the given rows of
+	 * it have changed. Only changes at the surface can move it; placing a cell
+	 * raises it right away, while removing the highest cell searches down
+	 * for the next one.
+	 */
+	private void updateSurfaceLevel(int x, int y, int height) {
+		int level = surfaceLevel[x];
+		if (y + height < level) {
+			return;
+		}
 
-		surfaceLevel[x] = (short) level;
+		int top = Math.max(level, y + height) - 1;
+		int index = top * width + x;
+		while (top >= 0 && !tiles[index].isSolid() && walls[index] == GameRegistry.airWall) {
+			--top;
+			index -= width;
+		}
+		surfaceLevel[x] = (short) (top + 1);
 	}
 
 	public void addEntity(Entity entity) {
@@ -266,6 +413,7 @@ public class World {
 
 		entities.add(entity);
 		entity.setWorld(this);
+		entity.updatePreviousPosition();
 	}
 
 	public void removeEntity(Entity entity) {
@@ -278,12 +426,137 @@ public class World {
 	}
 
 	public void dropItem(Item item, float x, float y) {
+		if (collectingDrops) {
+			collectDrop(item, x, y);
+			return;
+		}
+
 		ItemEntity itemEntity = new ItemEntity(item);
 		itemEntity.setX(x);
 		itemEntity.setY(y);
 		addEntity(itemEntity);
 	}
 
+	/**
+	 * Destroys the tile at the given position, along with the tiles attached
+	 * to it, directly or through other tiles. The items dropped by the tiles
+	 * are stacked per type, and the whole component is reported as one change.
+	 * 
+	 * @return Whether the tile was destroyed; air and blocked tiles can't be.
+	 */
+	public boolean destroyTile(int x, int y) {
+		checkBounds(x, y);
+
+		int origin = y * width + x;
+		if (tiles[origin] == GameRegistry.airTile || tileBlocked.get(origin)) {
+			return false;
+		}
+
+		// Collect the component first, so that the destruction code
+		// of each tile sees the tiles around it as they were.
+		int minX = x, minY = y, maxX = x, maxY = y;
+		destroyWorklist.add(origin);
+		destroyVisited.add(origin);
+		while (destroyWorklist.size > 0) {
+			int index = destroyWorklist.pop();
+			int cellX = index % width;
+			int cellY = index / width;
+			destroyedTiles.add(index);
+
+			minX = Math.min(minX, cellX);
+			minY = Math.min(minY, cellY);
+			maxX = Math.max(maxX, cellX);
+			maxY = Math.max(maxY, cellY);
+
+			for (Direction direction : DIRECTIONS) {
+				int adjacentX = cellX - direction.getHorizontal();
+				int adjacentY = cellY - direction.getVertical();
+				if (!inBounds(adjacentX, adjacentY)) {
+					continue;
+				}
+
+				int adjacent = adjacentY * width + adjacentX;
+				if ((tileAttachment[adjacent] & direction.mask()) != 0 &&
+						tiles[adjacent] != GameRegistry.airTile &&
+						!tileBlocked.get(adjacent) &&
+						destroyVisited.add(adjacent)) {
+					destroyWorklist.add(adjacent);
+				}
+			}
+		}
+		destroyVisited.clear();
+
+		collectingDrops = true;
+		for (int i = 0; i < destroyedTiles.size; ++i) {
+			int index = destroyedTiles.items[i];
+			tiles[index].destroyed(this, index % width, index / width);
+		}
+		collectingDrops = false;
+
+		for (int i = 0; i < destroyedTiles.size; ++i) {
+			int index = destroyedTiles.items[i];
+			int cellX = index % width;
+			int cellY = index / width;
+			tiles[index] = GameRegistry.airTile;
+			// Clear attachment *after* calling destruction code, as some
+			// types may wish to use attachment to implicitly store which
+			// part of a multiblock tile the current tile is.
+			tileAttachment[index] = 0;
+			for (Direction direction : DIRECTIONS) {
+				int adjacentX = cellX - direction.getHorizontal();
+				int adjacentY = cellY - direction.getVertical();
+				if (inBounds(adjacentX, adjacentY)) {
+					tileAttachment[adjacentY * width + adjacentX] &= ~direction.mask();
+				}
+			}
+		}
+		destroyedTiles.clear();
+
+		// Attachment of the tiles around the component was cleared too
+		minX = Math.max(minX - 1, 0);
+		minY = Math.max(minY - 1, 0);
+		maxX = Math.min(maxX + 1, width - 1);
+		maxY = Math.min(maxY + 1, height - 1);
+		changed(minX, minY, maxX - minX + 1, maxY - minY + 1, WorldChanges.TILE | WorldChanges.ATTACHMENT);
+
+		for (int i = 0; i < collectedDrops.size; ++i) {
+			float count = collectedDropPositions.get(i * 3 + 2);
+			dropItem(collectedDrops.get(i),
+					collectedDropPositions.get(i * 3) / count,
+					collectedDropPositions.get(i * 3 + 1) / count);
+		}
+		collectedDrops.clear();
+		collectedDropPositions.clear();
+
+		return true;
+	}
+
+	/**
+	 * Stacks the given drop onto the collected drops of the same type; drops
+	 * are placed at the average position of the items in them.
+	 */
+	private void collectDrop(Item item, float x, float y) {
+		ItemType type = item.getType();
+		for (int i = 0; i < collectedDrops.size && !item.isEmpty(); ++i) {
+			Item drop = collectedDrops.get(i);
+			if (drop.getType() == type && drop.getStack() < type.getMaxStack()) {
+				int add = Math.min(item.getStack(), type.getMaxStack() - drop.getStack());
+				drop.setStack(drop.getStack() + add);
+				item.setStack(item.getStack() - add);
+				collectedDropPositions.incr(i * 3, x);
+				collectedDropPositions.incr(i * 3 + 1, y);
+				collectedDropPositions.incr(i * 3 + 2, 1f);
+			}
+		}
+
+		if (!item.isEmpty()) {
+			collectedDrops.add(item);
+			collectedDropPositions.add(x);
+			collectedDropPositions.add(y);
+			collectedDropPositions.add(1f);
+		}
+	}
+
 	public Array<Entity> getEntities() {
 		return entities;
 	}
@@ -305,7 +578,7 @@ public class World {
 		if (!flow(x, y, x, y - 1, 16, false) || getLiquid(x, y - 1) == MAX_LIQUID) {
 			// Randomizing the order prevents issues related to
 			// water not flowing in some fixed direction when just one unit is left.
-			int dir = MathUtils.random(0, 1) * 2 - 1;
+			int dir = random.nextBoolean() ? 1 : -1;
 			flow(x, y, x + dir, y, 16, true);
 			flow(x, y, x - dir, y, 16, true);
 		}
@@ -350,14 +623,12 @@ public class World {
 	}
 
 	public void computeLight(int x, int y, int width, int height) {
-		for (int i = 0; i < width; ++i) {
-			for (int j = 0; j < height; ++j) {
-				if (!getTileType(x + i, y + j).isSolid() &&
-						getWallType(x + i, y + j) == GameRegistry.airWall) {
-					setLight(x + i, y + j, 1f);
-				} else {
-					setLight(x + i, y + j, 0f);
-				}
+		WorldRegion region = lightRegion.set(x, y, width, height);
+		for (int j = 0; j < height; ++j) {
+			int index = region.index(x, y + j);
+			for (int i = 0; i < width; ++i, ++index) {
+				// Only cells open to the sky are lit by it
+				light[index] = y + j >= surfaceLevel[x + i] ? (byte) 255 : 0;
 			}
 		}
 
@@ -395,8 +666,14 @@ public class World {
 	public void setLiquid(int x, int y, int liquid) {
 		checkBounds(x, y);
 
-		int position = x + y * width;
+		setLiquidAt(x + y * width, liquid);
+	}
+
+	/** Sets the liquid at the given index, which is not checked */
+	void setLiquidAt(int position, int liquid) {
 		liquidLevel[position] = (byte) liquid;
+		if (trackingChanges)
+			changes.mark(position % width, position / width, WorldChanges.LIQUID);
 
 		boolean liquidActive = activeLiquids.contains(position);
 		if (liquid != 0 && !liquidActive)
@@ -405,21 +682,126 @@ public class World {
 			activeLiquids.removeValue(position);
 	}
 
+	/**
+	 * Gets how far the time of this world is between the last two entity
+	 * updates, in the range [0, 1]. Used to interpolate rendered entities.
+	 */
+	public float getInterpolation() {
+		return interpolation;
+	}
+
+	/**
+	 * Sets the interpolation of this world; used when rendering a world
+	 * that is simulated elsewhere.
+	 */
+	public void setInterpolation(float interpolation) {
+		this.interpolation = interpolation;
+	}
+
+	/**
+	 * Marks the cell at the given index as changed, unless changes aren't tracked.
+	 * Tile and wall changes update the surface level, either way.
+	 */
+	void changed(int index, int kind) {
+		if ((kind & (WorldChanges.TILE | WorldChanges.WALL)) != 0)
+			updateSurfaceLevel(index % width, index / width, 1);
+		if (trackingChanges)
+			changes.mark(index % width, index / width, kind);
+	}
+
+	/**
+	 * Marks the cells of the given rectangle as changed, unless changes aren't tracked.
+	 * Tile and wall changes update the surface level, either way.
+	 */
+	void changed(int x, int y, int width, int height, int kind) {
+		if ((kind & (WorldChanges.TILE | WorldChanges.WALL)) != 0) {
+			for (int i = x; i < x + width; ++i)
+				updateSurfaceLevel(i, y, height);
+		}
+		if (trackingChanges)
+			changes.mark(x, y, width, height, kind);
+	}
+
+	/**
+	 * Sets whether changes to cells are tracked. Disabling it avoids the
+	 * cost of tracking bulk changes, such as generation; the whole world
+	 * should then be marked as changed afterwards.
+	 */
+	public void setTrackingChanges(boolean trackingChanges) {
+		this.trackingChanges = trackingChanges;
+	}
+
+	public boolean isTrackingChanges() {
+		return trackingChanges;
+	}
+
+	/**
+	 * Gets the changes made since they were last sent to the listeners
+	 */
+	public WorldChanges getChanges() {
+		return changes;
+	}
+
+	public void addListener(WorldListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener == null");
+		}
+
+		listeners.add(listener);
+	}
+
+	public void removeListener(WorldListener listener) {
+		listeners.removeValue(listener, true);
+	}
+
+	/**
+	 * Sends the pending changes to the listeners as one batch, and clears them.
+	 * Called at the end of every update.
+	 */
+	public void flushChanges() {
+		if (!changes.isEmpty()) {
+			for (int i = 0; i < listeners.size; ++i) {
+				listeners.get(i).worldChanged(this, changes);
+			}
+			changes.clear();
+		}
+	}
+
 	public void update(float delta) {
+		UPDATE_SCOPE.begin();
+
 		tickCounter += delta;
 
+		LIQUID_SCOPE.begin();
 		while (tickCounter > TICK) {
 			tick();
 
 			tickCounter -= TICK;
 		}
+		LIQUID_SCOPE.end();
 
-		for (int i = 0; i < entities.size; ++i) {
-			Entity entity = entities.get(i);
-			if (entity.isActive()) {
-				entity.update(delta);
+		entityTickCounter += delta;
+		if (entityTickCounter > MAX_ENTITY_TICKS * ENTITY_TICK) {
+			entityTickCounter = MAX_ENTITY_TICKS * ENTITY_TICK;
+		}
+		while (entityTickCounter >= ENTITY_TICK) {
+			TILE_TICK_SCOPE.begin();
+			tickTiles();
+			TILE_TICK_SCOPE.end();
+
+			ENTITY_SCOPE.begin();
+			for (int i = 0; i < entities.size; ++i) {
+				Entity entity = entities.get(i);
+				if (entity.isActive()) {
+					entity.updatePreviousPosition();
+					entity.update(ENTITY_TICK);
+				}
 			}
+			ENTITY_SCOPE.end();
+
+			entityTickCounter -= ENTITY_TICK;
 		}
+		interpolation = entityTickCounter / ENTITY_TICK;
 
 		for (int i = 0; i < entities.size; ++i) {
 			Entity entity = entities.get(i);
@@ -427,5 +809,9 @@ public class World {
 				entities.removeIndex(i);
 			}
 		}
+
+		flushChanges();
+
+		UPDATE_SCOPE.end();
 	}
 }
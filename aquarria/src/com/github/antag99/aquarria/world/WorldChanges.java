@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * The cells of a world that changed during a tick. Changes are tracked in
+ * chunks of {@link #CHUNK_SIZE}x{@link #CHUNK_SIZE} cells; each changed chunk
+ * has a bit per cell and a mask of the kinds of changes made to it.
+ */
+public class WorldChanges {
+	public static final int CHUNK_SHIFT = 5;
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	/** Number of longs used for the cells of a chunk */
+	private static final int CHUNK_WORDS = CHUNK_SIZE * CHUNK_SIZE / 64;
+
+	/** Kinds of changes */
+	public static final int TILE = 1 << 0;
+	public static final int WALL = 1 << 1;
+	public static final int LIQUID = 1 << 2;
+	public static final int ATTACHMENT = 1 << 3;
+	public static final int ALL = TILE | WALL | LIQUID | ATTACHMENT;
+
+	private final int width;
+	private final int height;
+	private final int chunksX;
+	private final int chunksY;
+
+	private long[] cells;
+	private byte[] chunkKinds;
+	private IntArray changedChunks = new IntArray();
+	private boolean allChanged;
+
+	public WorldChanges(int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+		chunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+		cells = new long[chunksX * chunksY * CHUNK_WORDS];
+		chunkKinds = new byte[chunksX * chunksY];
+	}
+
+	/**
+	 * Marks the cell at the given position as changed; it's not checked.
+	 */
+	public void mark(int x, int y, int kind) {
+		int chunk = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+		if (chunkKinds[chunk] == 0) {
+			changedChunks.add(chunk);
+		}
+		chunkKinds[chunk] |= kind;
+
+		int bit = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+		cells[chunk * CHUNK_WORDS + (bit >> 6)] |= 1L << bit;
+	}
+
+	/**
+	 * Marks all cells of the given rectangle as changed; it's not checked.
+	 */
+	public void mark(int x, int y, int width, int height, int kind) {
+		for (int j = y; j < y + height; ++j) {
+			for (int i = x; i < x + width; ++i) {
+				mark(i, j, kind);
+			}
+		}
+	}
+
+	/**
+	 * Marks the whole world as changed, which is cheaper than marking every cell.
+	 * Listeners should then rebuild anything derived from the world.
+	 */
+	public void markAll() {
+		allChanged = true;
+	}
+
+	/** Whether nothing changed */
+	public boolean isEmpty() {
+		return !allChanged && changedChunks.size == 0;
+	}
+
+	/**
+	 * Whether the whole world changed; the changed chunks and
+	 * cells are then not tracked individually.
+	 */
+	public boolean isAllChanged() {
+		return allChanged;
+	}
+
+	/**
+	 * Gets the indices of the chunks that changed, in the order they first changed
+	 */
+	public IntArray getChangedChunks() {
+		return changedChunks;
+	}
+
+	/** Gets the kinds of changes made to the given chunk, 0 if it didn't change */
+	public int getChunkKinds(int chunk) {
+		return allChanged ? ALL : chunkKinds[chunk];
+	}
+
+	public int getChunkX(int chunk) {
+		return (chunk % chunksX) << CHUNK_SHIFT;
+	}
+
+	public int getChunkY(int chunk) {
+		return (chunk / chunksX) << CHUNK_SHIFT;
+	}
+
+	public int getChunkWidth(int chunk) {
+		return Math.min(CHUNK_SIZE, width - getChunkX(chunk));
+	}
+
+	public int getChunkHeight(int chunk) {
+		return Math.min(CHUNK_SIZE, height - getChunkY(chunk));
+	}
+
+	public int getChunksX() {
+		return chunksX;
+	}
+
+	public int getChunksY() {
+		return chunksY;
+	}
+
+	/** Gets whether the cell at the given position changed */
+	public boolean isChanged(int x, int y) {
+		if (allChanged) {
+			return true;
+		}
+
+		int chunk = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+		if (chunkKinds[chunk] == 0) {
+			return false;
+		}
+
+		int bit = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+		return (cells[chunk * CHUNK_WORDS + (bit >> 6)] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Clears all changes, in time proportional to the number of changed chunks
+	 */
+	public void clear() {
+		for (int i = 0; i < changedChunks.size; ++i) {
+			int chunk = changedChunks.items[i];
+			chunkKinds[chunk] = 0;
+			Arrays.fill(cells, chunk * CHUNK_WORDS, (chunk + 1) * CHUNK_WORDS, 0L);
+		}
+		changedChunks.clear();
+		allChanged = false;
+	}
+}
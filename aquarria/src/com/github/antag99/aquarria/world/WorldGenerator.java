@@ -29,13 +29,11 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.world;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.PixmapIO;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.ObjectMap;
 import com.github.antag99.aquarria.GameRegistry;
 import com.github.antag99.aquarria.TileType;
 import com.github.antag99.aquarria.WallType;
@@ -45,10 +43,12 @@ public class WorldGenerator {
 	private World world;
 	private long seed;
 	private Array<WorldGeneratorTask> tasks = new Array<>();
+	private WorldRegion region;
 
 	public WorldGenerator(World world, long seed) {
 		this.world = world;
 		this.seed = seed;
+		this.region = new WorldRegion(world);
 
 		addTasks();
 	}
@@ -58,19 +58,19 @@ public class WorldGenerator {
 		tasks.add(new ClearWorldTask());
 
 		// Generate base terrain
-		tasks.add(new TerrainGeneratorTask(GameRegistry.getTile("stone")));
+		tasks.add(new TerrainGeneratorTask(GameRegistry.stoneTile));
 
 		// Put dirt in the rocks... (This also leaves some rocks that appear to have been put in the dirt)
-		tasks.add(new DirtGeneratorTask(GameRegistry.getTile("stone"), GameRegistry.getTile("dirt")));
+		tasks.add(new DirtGeneratorTask(GameRegistry.stoneTile, GameRegistry.dirtTile));
 
 		// Place dirt walls close to the surface
-		tasks.add(new SurfaceWallGeneratorTask(GameRegistry.getWall("dirtWall")));
+		tasks.add(new SurfaceWallGeneratorTask(GameRegistry.dirtWall));
 
 		// Grassify the surface
-		tasks.add(new SurfaceTileGeneratorTask(GameRegistry.getTile("dirt"), GameRegistry.getTile("grass")));
+		tasks.add(new SurfaceTileGeneratorTask(GameRegistry.dirtTile, GameRegistry.grassTile));
 
 		// Place some trees...
-		tasks.add(new TreeGeneratorTask(GameRegistry.getTile("tree")));
+		tasks.add(new TreeGeneratorTask(GameRegistry.treeTile));
 
 		// Set the spawnpoint
 		tasks.add(new SpawnPointTask());
@@ -84,13 +84,35 @@ public class WorldGenerator {
 		return seed;
 	}
 
+	/**
+	 * Gets the tasks of this generator, in the order they are run
+	 */
+	public Array<WorldGeneratorTask> getTasks() {
+		return tasks;
+	}
+
 	public void generate() {
-		for (WorldGeneratorTask task : tasks) {
-			task.generate(this, getSeed());
+		// Tracking every cell would be wasteful; everything changes anyway
+		boolean trackingChanges = world.isTrackingChanges();
+		world.setTrackingChanges(false);
+		try {
+			for (WorldGeneratorTask task : tasks) {
+				task.generate(this, getSeed());
+			}
+		} finally {
+			world.setTrackingChanges(trackingChanges);
 		}
+		world.getChanges().markAll();
+	}
 
-		Pixmap worldPixmap = worldToPixmap(world);
-		PixmapIO.writePNG(Gdx.files.local("debug/world.png"), worldPixmap);
+	/**
+	 * Writes an image of the tiles of the world, for debugging
+	 */
+	public void writeDebugImage(FileHandle file) {
+		Minimap minimap = new Minimap(world.getWidth(), world.getHeight());
+		minimap.update(world, 0, 0, world.getWidth(), world.getHeight());
+		Pixmap worldPixmap = minimap.toPixmap(0);
+		PixmapIO.writePNG(file, worldPixmap);
 		worldPixmap.dispose();
 	}
 
@@ -106,30 +128,6 @@ public class WorldGenerator {
 		return result;
 	}
 
-	private static ObjectMap<String, Color> tileColors = new ObjectMap<String, Color>();
-	static {
-		tileColors.put("air", Color.CLEAR);
-		tileColors.put("dirt", Color.MAROON);
-		tileColors.put("grass", Color.GREEN);
-		tileColors.put("stone", Color.GRAY);
-	}
-	private static final Color defaultColor = Color.PINK;
-
-	private static Pixmap worldToPixmap(World world) {
-		Pixmap result = new Pixmap(world.getWidth(), world.getHeight(), Format.RGBA8888);
-
-		for (int i = 0; i < world.getWidth(); ++i) {
-			for (int j = 0; j < world.getHeight(); ++j) {
-				TileType type = world.getTileType(i, j);
-				Color color = tileColors.get(type.getId(), defaultColor);
-
-				result.drawPixel(i, world.getHeight() - j + 1, Color.rgba8888(color));
-			}
-		}
-
-		return result;
-	}
-
 	public float getSpawnX() {
 		return world.getSpawnX();
 	}
@@ -182,10 +180,6 @@ public class WorldGenerator {
 		return world.getSurfaceLevel(x);
 	}
 
-	public void setSurfaceLevel(int x, int level) {
-		world.setSurfaceLevel(x, level);
-	}
-
 	public int getLiquid(int x, int y) {
 		return world.getLiquid(x, y);
 	}
@@ -193,4 +187,19 @@ public class WorldGenerator {
 	public void setLiquid(int x, int y, int liquid) {
 		world.setLiquid(x, y, liquid);
 	}
+
+	/**
+	 * Gets the region cursor of this generator, for bulk access by tasks
+	 */
+	public WorldRegion getRegion() {
+		return region;
+	}
+
+	public void fillTiles(int x, int y, int width, int height, TileType type) {
+		region.set(x, y, width, height).fillTiles(type);
+	}
+
+	public void fillWalls(int x, int y, int width, int height, WallType type) {
+		region.set(x, y, width, height).fillWalls(type);
+	}
 }
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import java.util.Arrays;
+
+import com.github.antag99.aquarria.TileType;
+import com.github.antag99.aquarria.WallType;
+
+/**
+ * A cursor over a rectangle of a {@link World}, for bulk access. The rectangle
+ * is validated once when it's set; tiles, walls, liquid and light are then
+ * accessed by index without any checks.
+ * </p>
+ * Indices are those of the world: {@link #index(int, int)} gives the index of
+ * a position, which is incremented by one along a row and by
+ * {@link #getStride()} along a column. Indices outside of the rectangle are
+ * not detected, and might refer to other parts of the world.
+ */
+public class WorldRegion {
+	private final World world;
+	private final int stride;
+
+	private int x, y;
+	private int width, height;
+
+	/**
+	 * Creates a region covering the whole world
+	 */
+	public WorldRegion(World world) {
+		this.world = world;
+		this.stride = world.getWidth();
+
+		set(0, 0, world.getWidth(), world.getHeight());
+	}
+
+	/**
+	 * Moves this region to the given rectangle, which must be inside of the world.
+	 * 
+	 * @return This region, for chaining
+	 */
+	public WorldRegion set(int x, int y, int width, int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("negative size: " + width + "x" + height);
+		}
+
+		if (width != 0 && height != 0) {
+			world.checkBounds(x, y);
+			world.checkBounds(x + width - 1, y + height - 1);
+		}
+
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		return this;
+	}
+
+	/**
+	 * Moves this region to the part of the given rectangle that is inside
+	 * of the world, which might be empty.
+	 * 
+	 * @return This region, for chaining
+	 */
+	public WorldRegion setClamped(int x, int y, int width, int height) {
+		int startX = Math.max(x, 0);
+		int startY = Math.max(y, 0);
+		int endX = Math.min(x + width, world.getWidth());
+		int endY = Math.min(y + height, world.getHeight());
+
+		return set(startX, startY, Math.max(endX - startX, 0), Math.max(endY - startY, 0));
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** Gets the difference between the indices of vertically adjacent positions */
+	public int getStride() {
+		return stride;
+	}
+
+	/** Gets the index of the given position; it's not checked. */
+	public int index(int x, int y) {
+		return y * stride + x;
+	}
+
+	public TileType getTileType(int index) {
+		return world.tiles[index];
+	}
+
+	public void setTileType(int index, TileType type) {
+		world.tiles[index] = type;
+		world.changed(index, WorldChanges.TILE);
+	}
+
+	public WallType getWallType(int index) {
+		return world.walls[index];
+	}
+
+	public void setWallType(int index, WallType type) {
+		world.walls[index] = type;
+		world.changed(index, WorldChanges.WALL);
+	}
+
+	public int getLiquid(int index) {
+		return world.liquidLevel[index] & 0xff;
+	}
+
+	public void setLiquid(int index, int liquid) {
+		world.setLiquidAt(index, liquid);
+	}
+
+	public float getLight(int index) {
+		return (world.light[index] & 0xff) / 255f;
+	}
+
+	public void setLight(int index, float light) {
+		world.light[index] = (byte) (light * 255);
+	}
+
+	/**
+	 * Sets all tiles of this region to the given type
+	 */
+	public void fillTiles(TileType type) {
+		if (type == null) {
+			throw new NullPointerException("type == null");
+		}
+
+		fill(world.tiles, type);
+		world.changed(x, y, width, height, WorldChanges.TILE);
+	}
+
+	/**
+	 * Sets all walls of this region to the given type
+	 */
+	public void fillWalls(WallType type) {
+		if (type == null) {
+			throw new NullPointerException("type == null");
+		}
+
+		fill(world.walls, type);
+		world.changed(x, y, width, height, WorldChanges.WALL);
+	}
+
+	private void fill(Object[] array, Object value) {
+		if (width == 1) {
+			// Columns are strided, don't bother with ranges
+			for (int j = 0, index = index(x, y); j < height; ++j, index += stride) {
+				array[index] = value;
+			}
+		} else {
+			for (int j = 0; j < height; ++j) {
+				int start = index(x, y + j);
+				Arrays.fill(array, start, start + width, value);
+			}
+		}
+	}
+
+	/**
+	 * Sets the light of this region to the given value
+	 */
+	public void fillLight(float light) {
+		for (int j = 0; j < height; ++j) {
+			int start = index(x, y + j);
+			Arrays.fill(world.light, start, start + width, (byte) (light * 255));
+		}
+	}
+
+	/**
+	 * Copies the tiles and walls of the given region, which must be of
+	 * the same size, into this region. The regions may overlap.
+	 */
+	public void copyFrom(WorldRegion source) {
+		if (source.width != width || source.height != height) {
+			throw new IllegalArgumentException("size mismatch: " + source.width + "x" + source.height
+					+ " != " + width + "x" + height);
+		}
+
+		// Copy rows in the order that doesn't overwrite rows that are yet to be copied
+		boolean reverse = source.world == world && source.y < y;
+		for (int k = 0; k < height; ++k) {
+			int j = reverse ? height - 1 - k : k;
+			int from = source.index(source.x, source.y + j);
+			int to = index(x, y + j);
+			System.arraycopy(source.world.tiles, from, world.tiles, to, width);
+			System.arraycopy(source.world.walls, from, world.walls, to, width);
+		}
+		world.changed(x, y, width, height, WorldChanges.TILE | WorldChanges.WALL);
+	}
+}
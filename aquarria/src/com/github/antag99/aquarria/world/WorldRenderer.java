@@ -35,6 +35,7 @@ import static com.badlogic.gdx.math.MathUtils.floor;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
@@ -44,6 +45,7 @@ import com.badlogic.gdx.scenes.scene2d.Touchable;
 import com.badlogic.gdx.scenes.scene2d.ui.Widget;
 import com.github.antag99.aquarria.Assets;
 import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.Profiler;
 import com.github.antag99.aquarria.Sprite;
 import com.github.antag99.aquarria.TileType;
 import com.github.antag99.aquarria.WallType;
@@ -51,18 +53,33 @@ import com.github.antag99.aquarria.entity.Entity;
 import com.github.antag99.aquarria.entity.EntityView;
 
 public class WorldRenderer extends Widget {
+	private static final Profiler.Scope DRAW_SCOPE = Profiler.scope("WorldRenderer.draw");
+	private static final Profiler.Scope WALL_SCOPE = Profiler.scope("WorldRenderer.walls");
+	private static final Profiler.Scope TILE_SCOPE = Profiler.scope("WorldRenderer.tiles");
+	private static final Profiler.Scope LIQUID_SCOPE = Profiler.scope("WorldRenderer.liquid");
+	private static final Profiler.Scope ENTITY_SCOPE = Profiler.scope("WorldRenderer.entities");
+	private static final Profiler.Scope COMPUTE_LIGHT_SCOPE = Profiler.scope("WorldRenderer.computeLight");
+	private static final Profiler.Scope LIGHT_SCOPE = Profiler.scope("WorldRenderer.light");
+	private static final Profiler.Scope LOD_SCOPE = Profiler.scope("WorldRenderer.lod");
+
+	/** Cells whose sprites can reach this far outside of them are drawn when out of view */
+	private static final int SPRITE_MARGIN = 5;
+
 	private WorldView view;
+	private WorldRegion region;
 	private boolean drawTileGrid = false;
 	private boolean drawEntityBoxes = false;
 	private ShapeRenderer shapeRenderer = null;
 	private TextureRegion waterTopTexture;
 	private TextureRegion waterFullTexture;
-	private TextureRegion lightTexture;
+	private LightOverlay lightOverlay = new LightOverlay();
+	private Minimap minimap;
+	private float lodZoom = 2f;
+	private LightCache lightCache;
 
 	public WorldRenderer() {
 		setTouchable(Touchable.disabled);
 
-		lightTexture = Assets.getTexture("blank.png");
 		TextureRegion waterTexture = Assets.getTexture("images/tiles/water.png");
 		waterTopTexture = new TextureRegion(waterTexture, 0, 0, waterTexture.getRegionWidth(), 4);
 		waterFullTexture = new TextureRegion(waterTexture, 0, 4, waterTexture.getRegionWidth(), waterTexture.getRegionHeight() - 4);
@@ -76,6 +93,42 @@ public class WorldRenderer extends Widget {
 		this.drawTileGrid = drawTileGrid;
 	}
 
+	/**
+	 * Sets the map that is drawn instead of individual cells when
+	 * zoomed out; it should be kept current with the rendered world.
+	 */
+	public void setMinimap(Minimap minimap) {
+		this.minimap = minimap;
+	}
+
+	public Minimap getMinimap() {
+		return minimap;
+	}
+
+	/**
+	 * Sets the cache that the light of the rendered worlds is kept in; it should
+	 * be given their changes. Without one, the light of the visible cells is
+	 * computed every frame.
+	 */
+	public void setLightCache(LightCache lightCache) {
+		this.lightCache = lightCache;
+	}
+
+	public LightCache getLightCache() {
+		return lightCache;
+	}
+
+	/**
+	 * Sets the camera zoom from which the map is drawn instead of individual cells
+	 */
+	public void setLodZoom(float lodZoom) {
+		this.lodZoom = lodZoom;
+	}
+
+	public float getLodZoom() {
+		return lodZoom;
+	}
+
 	public boolean getDrawEntityBoxes() {
 		return drawEntityBoxes;
 	}
@@ -102,69 +155,41 @@ public class WorldRenderer extends Widget {
 	public void draw(Batch batch, float parentAlpha) {
 		super.draw(batch, parentAlpha);
 
+		DRAW_SCOPE.begin();
+
 		OrthographicCamera cam = view.getCamera();
 		Matrix4 stageProjection = batch.getProjectionMatrix().cpy();
 		batch.setProjectionMatrix(cam.combined);
 		World world = view.getWorld();
 
-		float width = cam.viewportWidth * cam.zoom;
-		float height = cam.viewportHeight * cam.zoom;
-
-		float margin = Math.max(width, height);
-
-		int startX = clamp(floor(cam.position.x - margin), 0, world.getWidth() - 1);
-		int startY = clamp(floor(cam.position.y - margin), 0, world.getHeight() - 1);
-
-		int endX = clamp(ceil(cam.position.x + margin), 0, world.getWidth());
-		int endY = clamp(ceil(cam.position.y + margin), 0, world.getHeight());
-
-		batch.setColor(Color.WHITE);
-
-		for (int i = startX; i < endX; ++i) {
-			for (int j = startY; j < endY; ++j) {
-				WallType type = world.getWallType(i, j);
-
-				if (type != GameRegistry.airWall) {
-					Sprite sprite = type.getTexture(view, i, j);
-					sprite.draw(batch, i, j, sprite.getDrawWidth() / World.PIXELS_PER_METER, sprite.getDrawHeight() / World.PIXELS_PER_METER);
-				}
-			}
-		}
-
-		batch.setColor(Color.WHITE);
-
-		for (int i = startX; i < endX; ++i) {
-			for (int j = startY; j < endY; ++j) {
-				TileType type = world.getTileType(i, j);
-
-				if (type != GameRegistry.airTile) {
-					Sprite sprite = type.getTexture(view, i, j);
-					sprite.draw(batch, i, j, sprite.getDrawWidth() / World.PIXELS_PER_METER, sprite.getDrawHeight() / World.PIXELS_PER_METER);
-				}
-			}
-		}
-
-		batch.setColor(1f, 1f, 1f, 0.8f);
-
-		for (int i = startX; i < endX; ++i) {
-			for (int j = startY; j < endY; ++j) {
-				int liquid = world.getLiquid(i, j);
-				if (liquid != 0) {
-					float liquidPercentage = liquid / 255f;
-
-					boolean hasTopLiquid = j < world.getHeight() && (world.getLiquid(i, j + 1) != 0 ||
-							(liquid == 255 && world.getTileType(i, j + 1).isSolid()));
-
-					if (hasTopLiquid) {
-						batch.draw(waterFullTexture, i, j, 1f, liquidPercentage);
-					} else {
-						batch.draw(waterFullTexture, i, j, 1f, liquidPercentage - 0.25f);
-						batch.draw(waterTopTexture, i, j + liquidPercentage - 0.25f, 1f, 0.25f);
-					}
-				}
-			}
+		float halfWidth = cam.viewportWidth * cam.zoom / 2f;
+		float halfHeight = cam.viewportHeight * cam.zoom / 2f;
+
+		int visibleStartX = clamp(floor(cam.position.x - halfWidth), 0, world.getWidth() - 1);
+		int visibleStartY = clamp(floor(cam.position.y - halfHeight), 0, world.getHeight() - 1);
+		int visibleEndX = clamp(ceil(cam.position.x + halfWidth), 0, world.getWidth());
+		int visibleEndY = clamp(ceil(cam.position.y + halfHeight), 0, world.getHeight());
+
+		// Sprites of some cells, such as tree tops, reach into view from outside
+		int startX = Math.max(visibleStartX - SPRITE_MARGIN, 0);
+		int startY = Math.max(visibleStartY - SPRITE_MARGIN, 0);
+		int endX = Math.min(visibleEndX + SPRITE_MARGIN, world.getWidth());
+		int endY = Math.min(visibleEndY + SPRITE_MARGIN, world.getHeight());
+
+		// When zoomed out, light is shaded on a coarser grid, with about the
+		// same number of corners on screen at any zoom
+		int lightStep = 1;
+		if (minimap != null && cam.zoom >= lodZoom) {
+			lightStep = Integer.highestOneBit(Math.max((int) cam.zoom, 1));
+
+			LOD_SCOPE.begin();
+			drawLod(batch, visibleStartX, visibleStartY, visibleEndX, visibleEndY);
+			LOD_SCOPE.end();
+		} else {
+			drawCells(batch, world, startX, startY, endX, endY);
 		}
 
+		ENTITY_SCOPE.begin();
 		for (Entity entity : world.getEntities()) {
 			if (entity.isActive()) {
 				batch.setColor(Color.WHITE);
@@ -174,24 +199,33 @@ public class WorldRenderer extends Widget {
 			}
 		}
 
-		world.computeLight(startX, startY, endX - startX, endY - startY);
-
-		for (int i = startX; i < endX; ++i) {
-			for (int j = startY; j < endY; ++j) {
-				float light = world.getLight(i, j);
-
-				float topLeftLight = i > 0 && j + 1 < world.getHeight() ? world.getLight(i - 1, j + 1) : light;
-				float bottomLeftLight = i > 0 && j > 0 ? world.getLight(i - 1, j - 1) : light;
-				float bottomRightLight = j > 0 && i + 1 < world.getWidth() ? world.getLight(i + 1, j - 1) : light;
-				float topRightLight = i + 1 < world.getWidth() && j + 1 < world.getHeight() ? world.getLight(i + 1, j + 1) : light;
-
-				drawGradient(batch, i, j, 1f, 1f,
-						Color.toFloatBits(0f, 0f, 0f, 1f - combineLight(light, topLeftLight)),
-						Color.toFloatBits(0f, 0f, 0f, 1f - combineLight(light, topRightLight)),
-						Color.toFloatBits(0f, 0f, 0f, 1f - combineLight(light, bottomLeftLight)),
-						Color.toFloatBits(0f, 0f, 0f, 1f - combineLight(light, bottomRightLight)));
-			}
+		ENTITY_SCOPE.end();
+
+		// The grid is aligned to the step, so that it doesn't shift while scrolling
+		int overlayX = visibleStartX / lightStep * lightStep;
+		int overlayY = visibleStartY / lightStep * lightStep;
+		int overlayWidth = visibleEndX - overlayX;
+		int overlayHeight = visibleEndY - overlayY;
+
+		COMPUTE_LIGHT_SCOPE.begin();
+		if (lightCache != null) {
+			lightCache.update(world, overlayX, overlayY, overlayWidth, overlayHeight);
+		} else {
+			// Light reaches the visible cells from as far as it travels
+			int lightStartX = Math.max(overlayX - LightSolver.RADIUS, 0);
+			int lightStartY = Math.max(overlayY - LightSolver.RADIUS, 0);
+			int lightEndX = Math.min(visibleEndX + LightSolver.RADIUS, world.getWidth());
+			int lightEndY = Math.min(visibleEndY + LightSolver.RADIUS, world.getHeight());
+			world.computeLight(lightStartX, lightStartY, lightEndX - lightStartX, lightEndY - lightStartY);
 		}
+		COMPUTE_LIGHT_SCOPE.end();
+
+		LIGHT_SCOPE.begin();
+		lightOverlay.update(world, overlayX, overlayY, overlayWidth, overlayHeight, lightStep);
+		batch.end();
+		lightOverlay.render(cam.combined);
+		batch.begin();
+		LIGHT_SCOPE.end();
 
 		boolean useShapeRenderer = drawEntityBoxes || drawTileGrid;
 		if (useShapeRenderer) {
@@ -206,7 +240,7 @@ public class WorldRenderer extends Widget {
 		if (drawEntityBoxes) {
 			shapeRenderer.setColor(Color.GREEN);
 			for (Entity entity : world.getEntities()) {
-				shapeRenderer.rect(entity.getX(), entity.getY(),
+				shapeRenderer.rect(entity.getInterpolatedX(), entity.getInterpolatedY(),
 						entity.getWidth(), entity.getHeight());
 			}
 		}
@@ -227,6 +261,87 @@ public class WorldRenderer extends Widget {
 		}
 
 		batch.setProjectionMatrix(stageProjection);
+
+		DRAW_SCOPE.end();
+	}
+
+	/**
+	 * Draws the walls, tiles and liquids of the given cells, one sprite each
+	 */
+	private void drawCells(Batch batch, World world, int startX, int startY, int endX, int endY) {
+		if (region == null || region.getWorld() != world) {
+			region = new WorldRegion(world);
+		}
+		region.set(startX, startY, endX - startX, endY - startY);
+		int stride = region.getStride();
+
+		batch.setColor(Color.WHITE);
+
+		WALL_SCOPE.begin();
+		for (int i = startX; i < endX; ++i) {
+			for (int j = startY, index = region.index(i, j); j < endY; ++j, index += stride) {
+				WallType type = region.getWallType(index);
+
+				if (type != GameRegistry.airWall) {
+					Sprite sprite = type.getTexture(view, i, j);
+					sprite.draw(batch, i, j, sprite.getDrawWidth() / World.PIXELS_PER_METER, sprite.getDrawHeight() / World.PIXELS_PER_METER);
+				}
+			}
+		}
+
+		WALL_SCOPE.end();
+
+		batch.setColor(Color.WHITE);
+
+		TILE_SCOPE.begin();
+		for (int i = startX; i < endX; ++i) {
+			for (int j = startY, index = region.index(i, j); j < endY; ++j, index += stride) {
+				TileType type = region.getTileType(index);
+
+				if (type != GameRegistry.airTile) {
+					Sprite sprite = type.getTexture(view, i, j);
+					sprite.draw(batch, i, j, sprite.getDrawWidth() / World.PIXELS_PER_METER, sprite.getDrawHeight() / World.PIXELS_PER_METER);
+				}
+			}
+		}
+
+		TILE_SCOPE.end();
+
+		batch.setColor(1f, 1f, 1f, 0.8f);
+
+		LIQUID_SCOPE.begin();
+		for (int i = startX; i < endX; ++i) {
+			for (int j = startY, index = region.index(i, j); j < endY; ++j, index += stride) {
+				int liquid = region.getLiquid(index);
+				if (liquid != 0) {
+					float liquidPercentage = liquid / 255f;
+
+					boolean hasTopLiquid = j + 1 < world.getHeight() && (region.getLiquid(index + stride) != 0 ||
+							(liquid == 255 && region.getTileType(index + stride).isSolid()));
+
+					if (hasTopLiquid) {
+						batch.draw(waterFullTexture, i, j, 1f, liquidPercentage);
+					} else {
+						batch.draw(waterFullTexture, i, j, 1f, liquidPercentage - 0.25f);
+						batch.draw(waterTopTexture, i, j + liquidPercentage - 0.25f, 1f, 0.25f);
+					}
+				}
+			}
+		}
+
+		LIQUID_SCOPE.end();
+	}
+
+	/**
+	 * Draws the given cells from the map, one texel each, which costs
+	 * the same however many cells are visible.
+	 */
+	private void drawLod(Batch batch, int startX, int startY, int endX, int endY) {
+		Texture texture = minimap.getTexture(0);
+		batch.setColor(Color.WHITE);
+		// Rows of the map are stored top first
+		batch.draw(texture, startX, startY, endX - startX, endY - startY,
+				startX, minimap.getHeight() - endY, endX - startX, endY - startY, false, false);
 	}
 
 	public WorldView getView() {
@@ -237,55 +352,14 @@ public class WorldRenderer extends Widget {
 		this.view = view;
 	}
 
-	private float combineLight(float light, float adjacentLight) {
-		/*
-		 * TODO: Figure out some nice way to blend light,
-		 * possibly by tinting the four corners of a tile.
-		 */
-		return light;
-	}
-
-	private final float[] vertices = new float[20];
-
-	// http://www.badlogicgames.com/forum/viewtopic.php?f=11&t=9361#p42550
-	private void drawGradient(Batch batch,
-			float x, float y, float width, float height,
-			float topLeftColor, float topRightColor,
-			float bottomLeftColor, float bottomRightColor) {
-		int idx = 0;
-		float u = lightTexture.getU();
-		float v = lightTexture.getV2();
-		float u2 = lightTexture.getU2();
-		float v2 = lightTexture.getV();
-
-		// bottom left
-		vertices[idx++] = x;
-		vertices[idx++] = y;
-		vertices[idx++] = bottomLeftColor;
-		vertices[idx++] = u;
-		vertices[idx++] = v;
-
-		// top left
-		vertices[idx++] = x;
-		vertices[idx++] = y + height;
-		vertices[idx++] = topLeftColor;
-		vertices[idx++] = u;
-		vertices[idx++] = v2;
-
-		// top right
-		vertices[idx++] = x + width;
-		vertices[idx++] = y + height;
-		vertices[idx++] = topRightColor;
-		vertices[idx++] = u2;
-		vertices[idx++] = v2;
-
-		// bottom right
-		vertices[idx++] = x + width;
-		vertices[idx++] = y;
-		vertices[idx++] = bottomRightColor;
-		vertices[idx++] = u2;
-		vertices[idx++] = v;
-
-		batch.draw(lightTexture.getTexture(), vertices, 0, vertices.length);
+	/**
+	 * Releases the graphics resources of this renderer
+	 */
+	public void dispose() {
+		lightOverlay.dispose();
+		if (shapeRenderer != null) {
+			shapeRenderer.dispose();
+			shapeRenderer = null;
+		}
 	}
 }
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.github.antag99.aquarria.Profiler;
+import com.github.antag99.aquarria.entity.Entity;
+
+/**
+ * Updates a world at a fixed rate on its own thread, publishing a
+ * {@link WorldSnapshot} after every tick for the renderer.
+ * </p>
+ * Snapshots are triple buffered: the simulation captures into a back snapshot
+ * and exchanges it with the ready one, and the renderer exchanges its front
+ * snapshot with the ready one when that is newer. Neither ever waits for
+ * the other.
+ */
+public class WorldSimulation implements Runnable {
+	/** Ticks match the entity updates of the world, so each tick updates entities once */
+	public static final int TICKS_PER_SECOND = 60;
+	public static final float TICK = World.ENTITY_TICK;
+	private static final long TICK_NANOS = 1000000000L / TICKS_PER_SECOND;
+	/** Ticks that are skipped rather than caught up with, after a stall */
+	private static final int MAX_LAG_TICKS = 5;
+
+	private static final Profiler.Scope CAPTURE_SCOPE = Profiler.scope("WorldSimulation.capture");
+
+	/**
+	 * Called on the simulation thread before every tick, to apply input
+	 */
+	public interface TickListener {
+		public void beforeTick(World world, float delta);
+	}
+
+	private final World world;
+	private TickListener tickListener;
+	private Thread thread;
+	private volatile boolean running;
+	private volatile Throwable error;
+	private int tick;
+
+	private WorldSnapshot back;
+	private final AtomicReference<WorldSnapshot> ready = new AtomicReference<>();
+	private WorldSnapshot front;
+
+	/* Render thread; mirrors of the simulated entities, kept between snapshots */
+	private ObjectMap<Entity, Entity> mirrors = new ObjectMap<>();
+	private ObjectMap<Entity, Entity> previousMirrors = new ObjectMap<>();
+	private Array<WorldListener> renderListeners = new Array<>();
+
+	public WorldSimulation(World world) {
+		this.world = world;
+
+		final WorldSnapshot[] snapshots = {
+				new WorldSnapshot(world), new WorldSnapshot(world), new WorldSnapshot(world) };
+		world.addListener(new WorldListener() {
+			@Override
+			public void worldChanged(World world, WorldChanges changes) {
+				for (WorldSnapshot snapshot : snapshots) {
+					snapshot.markStale(changes);
+				}
+			}
+		});
+
+		// Changes made before the simulation started are pending
+		world.flushChanges();
+
+		snapshots[1].capture(world, tick);
+		back = snapshots[0];
+		ready.set(snapshots[1]);
+		front = snapshots[2];
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public void setTickListener(TickListener tickListener) {
+		this.tickListener = tickListener;
+	}
+
+	/**
+	 * Adds a listener for the changes between the snapshots that
+	 * are rendered; it's notified on the render thread.
+	 */
+	public void addRenderListener(WorldListener listener) {
+		renderListeners.add(listener);
+	}
+
+	public void removeRenderListener(WorldListener listener) {
+		renderListeners.removeValue(listener, true);
+	}
+
+	/**
+	 * Starts the simulation thread
+	 */
+	public void start() {
+		if (thread != null) {
+			throw new IllegalStateException("Simulation already started");
+		}
+
+		running = true;
+		thread = new Thread(this, "Simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the simulation thread, waiting for the current tick to finish
+	 */
+	public void stop() {
+		if (thread == null)
+			return;
+
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	@Override
+	public void run() {
+		try {
+			long nextTick = System.nanoTime();
+			while (running) {
+				long now = System.nanoTime();
+				if (now < nextTick) {
+					LockSupport.parkNanos(nextTick - now);
+					continue;
+				}
+
+				if (now - nextTick > MAX_LAG_TICKS * TICK_NANOS) {
+					nextTick = now;
+				}
+
+				tick();
+				nextTick += TICK_NANOS;
+			}
+		} catch (Throwable ex) {
+			error = ex;
+			running = false;
+		}
+	}
+
+	/**
+	 * Runs a single tick, and publishes its snapshot. Called by the
+	 * simulation thread, or directly when no thread is started.
+	 */
+	public void tick() {
+		Profiler.beginTick();
+		if (tickListener != null) {
+			tickListener.beforeTick(world, TICK);
+		}
+		world.update(TICK);
+
+		CAPTURE_SCOPE.begin();
+		back.capture(world, ++tick);
+		back = ready.getAndSet(back);
+		CAPTURE_SCOPE.end();
+		Profiler.endTick();
+	}
+
+	/**
+	 * Takes the latest snapshot for rendering, if there is a newer one than the
+	 * current. The entities of its world are replaced by mirrors that persist
+	 * between snapshots, and the render listeners are notified of its changes.
+	 * The interpolation of its world is set from the time since it was captured,
+	 * so entities move smoothly until the next snapshot. Must be called on the
+	 * render thread.
+	 */
+	public WorldSnapshot acquire() {
+		if (error != null) {
+			throw new RuntimeException("Simulation failed", error);
+		}
+
+		if (ready.get().getTick() > front.getTick()) {
+			front = ready.getAndSet(front);
+			updateMirrors();
+
+			World world = front.getWorld();
+			if (!world.getChanges().isEmpty()) {
+				for (int i = 0; i < renderListeners.size; ++i) {
+					renderListeners.get(i).worldChanged(world, world.getChanges());
+				}
+				world.getChanges().clear();
+			}
+		}
+
+		float interpolation = (System.nanoTime() - front.getCaptureTime()) / (float) TICK_NANOS;
+		front.getWorld().setInterpolation(Math.min(Math.max(interpolation, 0f), 1f));
+
+		return front;
+	}
+
+	private void updateMirrors() {
+		ObjectMap<Entity, Entity> tmp = previousMirrors;
+		previousMirrors = mirrors;
+		mirrors = tmp;
+		mirrors.clear();
+
+		World world = front.getWorld();
+		Array<Entity> entities = world.getEntities();
+		entities.clear();
+
+		Array<Entity> sources = front.getSources();
+		Array<Entity> states = front.getStates();
+		for (int i = 0; i < sources.size; ++i) {
+			Entity mirror = previousMirrors.get(sources.get(i));
+			if (mirror == null)
+				mirror = states.get(i).createMirror();
+			mirror.copyState(states.get(i));
+			mirror.setWorld(world);
+
+			mirrors.put(sources.get(i), mirror);
+			entities.add(mirror);
+		}
+		previousMirrors.clear();
+	}
+
+	/**
+	 * Gets the rendered mirror of the given simulated entity, or null
+	 */
+	public Entity getMirror(Entity entity) {
+		return mirrors.get(entity);
+	}
+
+	/**
+	 * Gets the snapshot that is currently rendered
+	 */
+	public WorldSnapshot getFront() {
+		return front;
+	}
+}
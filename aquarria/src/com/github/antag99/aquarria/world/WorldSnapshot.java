@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.world;
+
+import java.util.BitSet;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.github.antag99.aquarria.entity.Entity;
+
+/**
+ * A copy of a simulated world, that is rendered while the simulation continues.
+ * The cells are kept in a mirror world, which is brought up to date by copying
+ * the chunks that changed since the snapshot was last captured. Entities are
+ * captured as mirrors of the simulated entities.
+ * </p>
+ * A snapshot is owned by one thread at a time; it's handed between the
+ * simulation and the renderer by {@link WorldSimulation}.
+ */
+public class WorldSnapshot {
+	private World world;
+	private int tick = -1;
+	private long captureTime;
+
+	/* Chunks that changed since this snapshot was captured, only used when capturing */
+	private BitSet staleChunks = new BitSet();
+	private boolean allStale = true;
+	private int chunksX;
+	private int chunksY;
+	private WorldRegion sourceRegion;
+	private WorldRegion region;
+
+	/* The simulated entities, and the state of each when captured */
+	private Array<Entity> sources = new Array<>();
+	private Array<Entity> states = new Array<>();
+	private ObjectMap<Entity, Entity> statesBySource = new ObjectMap<>();
+	private ObjectMap<Entity, Entity> previousStatesBySource = new ObjectMap<>();
+
+	public WorldSnapshot(World source) {
+		world = new World(source.getWidth(), source.getHeight(), source.getSeed());
+		chunksX = (source.getWidth() + WorldChanges.CHUNK_SIZE - 1) >> WorldChanges.CHUNK_SHIFT;
+		chunksY = (source.getHeight() + WorldChanges.CHUNK_SIZE - 1) >> WorldChanges.CHUNK_SHIFT;
+		sourceRegion = new WorldRegion(source);
+		region = new WorldRegion(world);
+	}
+
+	/**
+	 * Marks the chunks of the given changes as stale, so that they are
+	 * copied when this snapshot is next captured.
+	 */
+	void markStale(WorldChanges changes) {
+		if (changes.isAllChanged()) {
+			allStale = true;
+		} else {
+			for (int i = 0; i < changes.getChangedChunks().size; ++i) {
+				staleChunks.set(changes.getChangedChunks().get(i));
+			}
+		}
+	}
+
+	/**
+	 * Brings this snapshot up to date with the given world, which is the
+	 * one the snapshot was created for.
+	 */
+	void capture(World source, int tick) {
+		this.tick = tick;
+		this.captureTime = System.nanoTime();
+
+		if (allStale) {
+			staleChunks.set(0, chunksX * chunksY);
+			allStale = false;
+		}
+
+		for (int chunk = staleChunks.nextSetBit(0); chunk != -1; chunk = staleChunks.nextSetBit(chunk + 1)) {
+			int x = (chunk % chunksX) << WorldChanges.CHUNK_SHIFT;
+			int y = (chunk / chunksX) << WorldChanges.CHUNK_SHIFT;
+			int width = Math.min(WorldChanges.CHUNK_SIZE, world.getWidth() - x);
+			int height = Math.min(WorldChanges.CHUNK_SIZE, world.getHeight() - y);
+
+			region.set(x, y, width, height).copyFrom(sourceRegion.set(x, y, width, height));
+			for (int j = y; j < y + height; ++j) {
+				int index = region.index(x, j);
+				System.arraycopy(source.liquidLevel, index, world.liquidLevel, index, width);
+				System.arraycopy(source.tileAttachment, index, world.tileAttachment, index, width);
+			}
+			world.changed(x, y, width, height, WorldChanges.LIQUID | WorldChanges.ATTACHMENT);
+		}
+		staleChunks.clear();
+
+		// Reuse the mirrors of entities that were captured before
+		ObjectMap<Entity, Entity> tmp = previousStatesBySource;
+		previousStatesBySource = statesBySource;
+		statesBySource = tmp;
+		statesBySource.clear();
+
+		sources.clear();
+		states.clear();
+		Array<Entity> entities = source.getEntities();
+		for (int i = 0; i < entities.size; ++i) {
+			Entity entity = entities.get(i);
+			if (!entity.isActive())
+				continue;
+
+			Entity state = previousStatesBySource.get(entity);
+			if (state == null)
+				state = entity.createMirror();
+			state.copyState(entity);
+
+			statesBySource.put(entity, state);
+			sources.add(entity);
+			states.add(state);
+		}
+		previousStatesBySource.clear();
+	}
+
+	/**
+	 * Gets the mirror world of this snapshot. Its entities are managed by
+	 * {@link WorldSimulation}, and its changes are those made since the
+	 * snapshot was last rendered.
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/** Gets the number of the tick this snapshot was captured after */
+	public int getTick() {
+		return tick;
+	}
+
+	/** Gets the time this snapshot was captured, in {@link System#nanoTime()} */
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	/**
+	 * Gets the simulated entities; they must only be used
+	 * as keys, as they're owned by the simulation.
+	 */
+	public Array<Entity> getSources() {
+		return sources;
+	}
+
+	/** Gets the captured state of each entity of {@link #getSources()} */
+	public Array<Entity> getStates() {
+		return states;
+	}
+}
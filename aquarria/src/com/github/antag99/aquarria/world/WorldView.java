@@ -40,6 +40,7 @@ import com.badlogic.gdx.graphics.OrthographicCamera;
  */
 public class WorldView {
 	private World world;
+	private WorldRegion region;
 	private OrthographicCamera camera;
 
 	private byte[] tileFrame;
@@ -53,6 +54,7 @@ public class WorldView {
 	 */
 	public WorldView(World world) {
 		this.world = world;
+		this.region = new WorldRegion(world);
 		this.camera = new OrthographicCamera();
 
 		width = world.getWidth();
@@ -134,6 +136,29 @@ public class WorldView {
 		return world;
 	}
 
+	/**
+	 * Sets the world of this view, such as the latest snapshot of
+	 * a simulated world. It must be of the same size.
+	 */
+	public void setWorld(World world) {
+		if (world.getWidth() != width || world.getHeight() != height) {
+			throw new IllegalArgumentException("world size mismatch: " + world.getWidth() + "x" + world.getHeight());
+		}
+
+		if (this.world != world) {
+			this.world = world;
+			this.region = new WorldRegion(world);
+		}
+	}
+
+	/**
+	 * Gets a region covering the whole world, for unchecked access while
+	 * framing tiles. It must not be moved.
+	 */
+	public WorldRegion getRegion() {
+		return region;
+	}
+
 	/**
 	 * Gets the camera of this view
 	 */
@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.xnb;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decoder for the block compressed surface formats DXT1, DXT3 and DXT5.
+ * <p>
+ * Pixels are decoded to RGBA8888, either as ints ({@code 0xRRGGBBAA}) or as
+ * bytes, in the layout used by {@link com.badlogic.gdx.graphics.Pixmap}.
+ * Decoding doesn't allocate anything per block, and reads the data with
+ * absolute gets, so that rows of blocks can be decoded in parallel.
+ * </p>
+ */
+public final class DxtDecoder {
+	/** XNA surface format of DXT1 data; 8 bytes per 4x4 block */
+	public static final int DXT1 = 4;
+	/** XNA surface format of DXT3 data; 16 bytes per 4x4 block */
+	public static final int DXT3 = 5;
+	/** XNA surface format of DXT5 data; 16 bytes per 4x4 block */
+	public static final int DXT5 = 6;
+
+	private DxtDecoder() {
+	}
+
+	/**
+	 * Gets whether the given XNA surface format is a block compressed format.
+	 */
+	public static boolean isSupported(int format) {
+		return format == DXT1 || format == DXT3 || format == DXT5;
+	}
+
+	/**
+	 * Gets the amount of bytes of compressed data of an image of the given size.
+	 */
+	public static int getCompressedSize(int format, int width, int height) {
+		return ((width + 3) / 4) * ((height + 3) / 4) * getBlockSize(format);
+	}
+
+	/**
+	 * Decodes the data at the position of the given buffer into the pixel
+	 * array, which must hold at least {@code width * height} pixels.
+	 */
+	public static void decode(int format, int width, int height, ByteBuffer data, int[] pixels) {
+		checkArguments(format, width, height, data);
+		if (pixels.length < width * height) {
+			throw new IllegalArgumentException("Pixel array is too small: " + pixels.length);
+		}
+		decodeRows(format, width, height, data, data.position(), 0, (height + 3) / 4, pixels, null);
+		data.position(data.position() + getCompressedSize(format, width, height));
+	}
+
+	/**
+	 * Decodes the data at the position of the given buffer into RGBA8888 bytes,
+	 * which are put from the position of the pixel buffer. The pixel buffer
+	 * is positioned after the decoded pixels.
+	 */
+	public static void decode(int format, int width, int height, ByteBuffer data, ByteBuffer pixels) {
+		decode(format, width, height, data, pixels, null, 1);
+	}
+
+	/**
+	 * Decodes the data like {@link #decode(int, int, int, ByteBuffer, ByteBuffer)},
+	 * but splits the rows of blocks into the given amount of tasks, which are
+	 * run by the given executor.
+	 */
+	public static void decode(final int format, final int width, final int height, ByteBuffer data, ByteBuffer pixels,
+			ExecutorService executor, int taskCount) {
+		checkArguments(format, width, height, data);
+		if (pixels.remaining() < width * height * 4) {
+			throw new IllegalArgumentException("Pixel buffer is too small: " + pixels.remaining());
+		}
+		if (taskCount < 1) {
+			throw new IllegalArgumentException("taskCount < 1");
+		}
+
+		final ByteBuffer source = data.duplicate();
+		final int sourceOffset = data.position();
+		final ByteBuffer target = pixels.slice();
+		target.order(ByteOrder.BIG_ENDIAN);
+
+		int blockRows = (height + 3) / 4;
+		taskCount = Math.min(taskCount, blockRows);
+
+		if (executor == null || taskCount == 1) {
+			decodeRows(format, width, height, source, sourceOffset, 0, blockRows, null, target);
+		} else {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(taskCount);
+			for (int i = 0; i < taskCount; ++i) {
+				final int firstRow = blockRows * i / taskCount;
+				final int lastRow = blockRows * (i + 1) / taskCount;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						ByteBuffer rows = target.duplicate();
+						rows.order(ByteOrder.BIG_ENDIAN);
+						decodeRows(format, width, height, source.duplicate(), sourceOffset,
+								firstRow, lastRow, null, rows);
+						return null;
+					}
+				}));
+			}
+
+			try {
+				for (Future<Void> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(ex);
+			} catch (ExecutionException ex) {
+				throw new RuntimeException("Error decoding " + format, ex.getCause());
+			} finally {
+				for (Future<Void> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+
+		data.position(data.position() + getCompressedSize(format, width, height));
+		pixels.position(pixels.position() + width * height * 4);
+	}
+
+	private static int getBlockSize(int format) {
+		switch (format) {
+		case DXT1:
+			return 8;
+		case DXT3:
+		case DXT5:
+			return 16;
+		default:
+			throw new IllegalArgumentException("Unsupported surface format: " + format);
+		}
+	}
+
+	private static void checkArguments(int format, int width, int height, ByteBuffer data) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+		}
+		int size = getCompressedSize(format, width, height);
+		if (data.remaining() < size) {
+			throw new IllegalArgumentException("Expected " + size + " bytes of data, has " + data.remaining());
+		}
+	}
+
+	/**
+	 * Decodes the rows of blocks in [firstRow, lastRow) into either the int
+	 * array or the (big endian) byte buffer, starting at offset 0.
+	 */
+	private static void decodeRows(int format, int width, int height, ByteBuffer data, int offset,
+			int firstRow, int lastRow, int[] intPixels, ByteBuffer bytePixels) {
+		int blockSize = getBlockSize(format);
+		int blocksWide = (width + 3) / 4;
+		int[] block = new int[16];
+		int[] colors = new int[4];
+		int[] alphas = new int[8];
+
+		for (int blockY = firstRow; blockY < lastRow; ++blockY) {
+			int index = offset + blockY * blocksWide * blockSize;
+			for (int blockX = 0; blockX < blocksWide; ++blockX, index += blockSize) {
+				switch (format) {
+				case DXT1:
+					decodeColors(data, index, block, colors, true);
+					break;
+				case DXT3:
+					decodeColors(data, index + 8, block, colors, false);
+					decodeExplicitAlpha(data, index, block);
+					break;
+				case DXT5:
+					decodeColors(data, index + 8, block, colors, false);
+					decodeInterpolatedAlpha(data, index, block, alphas);
+					break;
+				}
+
+				// Blocks at the right and bottom edges might be partially outside the image
+				int x = blockX * 4;
+				int y = blockY * 4;
+				int columns = Math.min(4, width - x);
+				int rows = Math.min(4, height - y);
+				for (int row = 0; row < rows; ++row) {
+					int pixel = (y + row) * width + x;
+					if (intPixels != null) {
+						System.arraycopy(block, row * 4, intPixels, pixel, columns);
+					} else {
+						for (int column = 0; column < columns; ++column) {
+							bytePixels.putInt((pixel + column) * 4, block[row * 4 + column]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/** Decodes a color block; alpha is opaque, unless DXT1 uses its transparent color */
+	private static void decodeColors(ByteBuffer data, int index, int[] block, int[] colors, boolean dxt1) {
+		int c0 = getUnsignedShort(data, index);
+		int c1 = getUnsignedShort(data, index + 2);
+		int r0 = expand(c0 >>> 11, 5), g0 = expand((c0 >>> 5) & 0x3f, 6), b0 = expand(c0 & 0x1f, 5);
+		int r1 = expand(c1 >>> 11, 5), g1 = expand((c1 >>> 5) & 0x3f, 6), b1 = expand(c1 & 0x1f, 5);
+
+		colors[0] = rgba(r0, g0, b0, 0xff);
+		colors[1] = rgba(r1, g1, b1, 0xff);
+		if (c0 > c1 || !dxt1) {
+			colors[2] = rgba((2 * r0 + r1) / 3, (2 * g0 + g1) / 3, (2 * b0 + b1) / 3, 0xff);
+			colors[3] = rgba((r0 + 2 * r1) / 3, (g0 + 2 * g1) / 3, (b0 + 2 * b1) / 3, 0xff);
+		} else {
+			colors[2] = rgba((r0 + r1) / 2, (g0 + g1) / 2, (b0 + b1) / 2, 0xff);
+			colors[3] = 0;
+		}
+
+		int indices = getInt(data, index + 4);
+		for (int i = 0; i < 16; ++i) {
+			block[i] = colors[(indices >>> (i * 2)) & 0x3];
+		}
+	}
+
+	/** Replaces the alpha of the block with the 4-bit values of DXT3 */
+	private static void decodeExplicitAlpha(ByteBuffer data, int index, int[] block) {
+		long bits = getInt(data, index) & 0xffffffffL | (long) getInt(data, index + 4) << 32;
+		for (int i = 0; i < 16; ++i) {
+			int alpha = (int) (bits >>> (i * 4)) & 0xf;
+			block[i] = (block[i] & 0xffffff00) | (alpha * 17);
+		}
+	}
+
+	/** Replaces the alpha of the block with the interpolated 3-bit indices of DXT5 */
+	private static void decodeInterpolatedAlpha(ByteBuffer data, int index, int[] block, int[] alphas) {
+		int a0 = data.get(index) & 0xff;
+		int a1 = data.get(index + 1) & 0xff;
+		alphas[0] = a0;
+		alphas[1] = a1;
+		if (a0 > a1) {
+			for (int i = 1; i < 7; ++i) {
+				alphas[i + 1] = ((7 - i) * a0 + i * a1) / 7;
+			}
+		} else {
+			for (int i = 1; i < 5; ++i) {
+				alphas[i + 1] = ((5 - i) * a0 + i * a1) / 5;
+			}
+			alphas[6] = 0;
+			alphas[7] = 0xff;
+		}
+
+		long bits = 0;
+		for (int i = 0; i < 6; ++i) {
+			bits |= (long) (data.get(index + 2 + i) & 0xff) << (i * 8);
+		}
+		for (int i = 0; i < 16; ++i) {
+			int alpha = alphas[(int) (bits >>> (i * 3)) & 0x7];
+			block[i] = (block[i] & 0xffffff00) | alpha;
+		}
+	}
+
+	private static int expand(int value, int bits) {
+		return (value << (8 - bits)) | (value >>> (2 * bits - 8));
+	}
+
+	private static int rgba(int r, int g, int b, int a) {
+		return r << 24 | g << 16 | b << 8 | a;
+	}
+
+	private static int getUnsignedShort(ByteBuffer data, int index) {
+		return (data.get(index) & 0xff) | (data.get(index + 1) & 0xff) << 8;
+	}
+
+	private static int getInt(ByteBuffer data, int index) {
+		return (data.get(index) & 0xff) | (data.get(index + 1) & 0xff) << 8
+				| (data.get(index + 2) & 0xff) << 16 | (data.get(index + 3) & 0xff) << 24;
+	}
+}
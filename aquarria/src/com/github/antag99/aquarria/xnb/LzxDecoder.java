@@ -49,7 +49,16 @@ package com.github.antag99.aquarria.xnb;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
-class LzxDecoder {
+/**
+ * Decoder for the LZX variant used by compressed XNB files.
+ * <p>
+ * A decoder owns its window and decoding tables, which are reused for every
+ * call to {@link #decompress(ByteBuffer, int, ByteBuffer, int)}; create one
+ * decoder per thread and keep it around. Both the input and the output may be
+ * heap or direct buffers.
+ * </p>
+ */
+public class LzxDecoder {
 	private static final int MIN_MATCH = 2;
 	// private static final int MAX_MATCH = 257;
 	private static final int NUM_CHARS = 256;
@@ -67,6 +76,8 @@ class LzxDecoder {
 	private static final int ALIGNED_MAXSYMBOLS = ALIGNED_NUM_ELEMENTS;
 	private static final int ALIGNED_TABLEBITS = 7;
 
+	private static final int WINDOW_SIZE = 1 << 16;
+
 	private static final int[] positionBase;
 	private static final int[] extraBits;
 
@@ -92,10 +103,12 @@ class LzxDecoder {
 		Uncompressed;
 	}
 
+	private static final LzxBlockType[] blockTypes = LzxBlockType.values();
+
 	/** LRU offset system */
 	private int R0, R1, R2;
 
-	/** Decoding window */
+	/** Decoding window, reused between files */
 	private byte[] window;
 	private int windowSize;
 	private int windowPos;
@@ -118,6 +131,9 @@ class LzxDecoder {
 	private HuffTable lengthTree;
 	private HuffTable alignedTree;
 
+	/** Bit reader, rewound at the start of every frame */
+	private LzxBuffer buffer = new LzxBuffer();
+
 	// private int actualSize = 0;
 	private int framesRead = 0;
 
@@ -129,19 +145,17 @@ class LzxDecoder {
 		mainTree = new HuffTable(MAINTREE_MAXSYMBOLS, MAINTREE_TABLEBITS);
 		lengthTree = new HuffTable(LENGTH_MAXSYMBOLS, LENGTH_TABLEBITS);
 		alignedTree = new HuffTable(ALIGNED_MAXSYMBOLS, ALIGNED_TABLEBITS);
+		windowSize = WINDOW_SIZE;
+		window = new byte[windowSize];
 	}
 
 	private void reset() {
 		R0 = R1 = R2 = 1;
 		readHeader = true;
-		windowSize = 1 << 16;
 		// actualSize = windowSize;
-		window = new byte[windowSize];
-		for (int i = 0; i < windowSize; i++)
-			window[i] = (byte) 0xDC;
+		Arrays.fill(window, (byte) 0xDC);
 		windowPos = 0;
 		mainElementCount = NUM_CHARS + (16 << 4);
-		readHeader = true;
 		framesRead = 0;
 		blockRemaining = 0;
 		blockType = LzxBlockType.Invalid;
@@ -154,8 +168,17 @@ class LzxDecoder {
 		alignedTree.reset();
 	}
 
+	/**
+	 * Decompresses a sequence of LZX frames, starting at the position of the
+	 * input buffer. The decompressed data is put at the position of the output
+	 * buffer; afterwards, the input is positioned after the compressed data.
+	 */
 	public void decompress(ByteBuffer input, int inputLength,
 			ByteBuffer output, int outputLength) {
+		if (output.remaining() < outputLength) {
+			throw new IllegalArgumentException("Output buffer has " + output.remaining()
+					+ " bytes remaining, " + outputLength + " required");
+		}
 
 		reset();
 
@@ -166,65 +189,50 @@ class LzxDecoder {
 		int frameSize;
 		int pos = input.position();
 
-		while (input.position() < endPosition) {
-
-			// System.out.println("pos=" + pos);
-
-			// seek to the correct position
-			// input.rewind();
-			input.position(pos);
-
-			// System.out.println("input.position= " + input.position());
-
+		while (pos < endPosition) {
 			int hi, lo;
-			hi = input.get() & 0xFF;
-			lo = input.get() & 0xFF;
+			hi = input.get(pos) & 0xFF;
+			lo = input.get(pos + 1) & 0xFF;
 			blockSize = (hi << 8) | lo;
 			// all blocks by default will output 32Kb of data, so thus
 			// is our frame size
 			frameSize = 0x8000;
 			// ... unless this block is special, that it outputs a different
 			// amount of data. this blocks header is identified by a 0xFF byte
-			if (hi == 0xFF)
-			{
+			if (hi == 0xFF) {
 				// that means the lo byte was the hi byte
 				hi = lo;
-				lo = input.get() & 0xFF;
+				lo = input.get(pos + 2) & 0xFF;
 				// ... which combined to a different output/frame size for this
 				// particular block
 				frameSize = (hi << 8) | lo;
 				// now get our block size
-				hi = input.get() & 0xFF;
-				lo = input.get() & 0xFF;
+				hi = input.get(pos + 3) & 0xFF;
+				lo = input.get(pos + 4) & 0xFF;
 				blockSize = (hi << 8) | lo;
 				pos += 5;
-			}
-			else {
+			} else {
 				pos += 2;
 			}
 
-			// System.out.println("FrameSize=" + frameSize);
-			// System.out.println("#BlockSize=" + blockSize);
-
 			// either says there is nothing to decode
 			if (blockSize == 0 || frameSize == 0) {
-				// System.out.println("Done decompressing");
 				break;
 			}
 
-			decompressBlock(input, blockSize, output, frameSize);
+			decompressBlock(input, pos, blockSize, output, frameSize);
 			pos += blockSize;
 		}
 
+		input.position(Math.min(pos, endPosition));
 	}
 
-	private void decompressBlock(ByteBuffer input, int inputLength,
+	private void decompressBlock(ByteBuffer input, int startpos, int inputLength,
 			ByteBuffer output, int outputLength) {
-
-		int startpos = input.position();
 		int endpos = startpos + inputLength;
 
-		LzxBuffer buffer = new LzxBuffer(input);
+		LzxBuffer buffer = this.buffer;
+		buffer.init(input, startpos, endpos);
 
 		if (readHeader) {
 			if (buffer.readBits(1) == 1) {
@@ -232,13 +240,12 @@ class LzxDecoder {
 				int hi = buffer.readBits(16);
 				int lo = buffer.readBits(16);
 				intelFileSize = (hi << 16) | lo;
-
-				// System.out.println("Intel file size: " + intelFileSize);
 			}
 
 			readHeader = false;
 		}
 
+		byte[] window = this.window;
 		int window_posn = windowPos;
 		int window_size = windowSize;
 		int R0 = this.R0;
@@ -249,24 +256,13 @@ class LzxDecoder {
 		int this_run, main_element, match_length, match_offset, length_footer, extra, verbatim_bits;
 		int rundest, runsrc, copy_length, aligned_bits;
 
-		// System.out.println("window_posn=" + window_posn);
-		// System.out.println("window_size=" + window_size);
-		// System.out.println("R0=" + R0);
-		// System.out.println("R1=" + R1);
-		// System.out.println("R2=" + R2);
-
 		while (togo > 0) {
-			// System.out.println("Togo: " + togo);
-
 			if (blockRemaining == 0) {
-				// System.out.println("Current block type: " + blockType);
 				if (blockType == LzxBlockType.Uncompressed) {
-
 					// realign bitstream to word
 					if ((blockLength & 1) == 1) {
-						input.get();
+						buffer.skipBytes(1);
 					}
-					buffer.reset();
 				}
 
 				int nextBlockType = buffer.readBits(3);
@@ -274,9 +270,7 @@ class LzxDecoder {
 					throw new RuntimeException("Invalid block type: " + nextBlockType);
 				}
 
-				blockType = LzxBlockType.values()[nextBlockType];
-
-				// System.out.println("New block type: " + blockType);
+				blockType = blockTypes[nextBlockType];
 
 				int a = buffer.readBits(16);
 				int b = buffer.readBits(8);
@@ -284,14 +278,11 @@ class LzxDecoder {
 				blockLength = (a << 8) | b;
 				blockRemaining = blockLength;
 
-				// System.out.println("Block length: " + blockLength);
-
 				switch (blockType) {
 				case Aligned:
 					for (int i = 0, j = 0; i < 8; ++i) {
 						j = buffer.readBits(3);
 						alignedTree.getLength()[i] = (byte) j;
-						// System.out.println("I= " + i + ", J=" + j);
 					}
 					alignedTree.makeDecodeTable();
 					/*
@@ -310,29 +301,10 @@ class LzxDecoder {
 					break;
 				case Uncompressed:
 					intelStarted = true; /* because we can't assume otherwise */
-					buffer.ensureBits(16); /* get up to 16 pad bits into the buffer */
-					if (buffer.getRemainingBits() > 16) {
-						input.position(input.position() - 2); /* and align the bitstream! */
-					}
-					byte hi,
-					mh,
-					ml,
-					lo;
-					lo = input.get();
-					ml = input.get();
-					mh = input.get();
-					hi = input.get();
-					R0 = (int) (lo | ml << 8 | mh << 16 | hi << 24);
-					lo = input.get();
-					ml = input.get();
-					mh = input.get();
-					hi = input.get();
-					R1 = (int) (lo | ml << 8 | mh << 16 | hi << 24);
-					lo = input.get();
-					ml = input.get();
-					mh = input.get();
-					hi = input.get();
-					R2 = (int) (lo | ml << 8 | mh << 16 | hi << 24);
+					buffer.alignToWord(); /* skip the pad bits */
+					R0 = buffer.readInt();
+					R1 = buffer.readInt();
+					R2 = buffer.readInt();
 					break;
 				default:
 					throw new RuntimeException("Unknown block type " + blockType);
@@ -340,25 +312,18 @@ class LzxDecoder {
 			}
 
 			/* buffer exhaustion check */
-			if (input.position() > (startpos + inputLength))
-			{
+			if (buffer.getBitPosition() > (long) endpos << 3) {
 				/*
 				 * it's possible to have a file where the next run is less than
 				 * 16 bits in size. In this case, the READ_HUFFSYM() macro used
-				 * in building the tables will exhaust the buffer, so we should
-				 * allow for this, but not allow those accidentally read bits to
-				 * be used (so we check that there are at least 16 bits
-				 * remaining - in this boundary case they aren't really part of
-				 * the compressed data)
+				 * in building the tables will read past the input, so bits past
+				 * the end read as zeros; but those bits must never actually be
+				 * consumed.
 				 */
-				// System.out.println("WTF");
-
-				if (input.position() > (startpos + inputLength + 2) || buffer.getRemainingBits() < 16)
-					throw new RuntimeException();
+				throw new RuntimeException("Compressed block overrun");
 			}
 
-			while ((this_run = (int) blockRemaining) > 0 && togo > 0)
-			{
+			while ((this_run = (int) blockRemaining) > 0 && togo > 0) {
 				if (this_run > togo)
 					this_run = togo;
 				togo -= this_run;
@@ -367,265 +332,111 @@ class LzxDecoder {
 				/* apply 2^x-1 mask */
 				window_posn &= window_size - 1;
 
-				// System.out.println("this_run= " + this_run);
-				// System.out.println("togo= " + togo);
-				// System.out.println("blockRemaining= " + blockRemaining);
-				// System.out.println("window_posn= " + window_posn);
-				// System.out.println("window_size= " + window_size);
-
 				/* runs can't straddle the window wraparound */
 				if ((window_posn + this_run) > window_size)
 					throw new RuntimeException("(window_posn + this_run) > window_size");
 
-				switch (blockType)
-				{
-				case Verbatim:
-					while (this_run > 0)
-					{
-						main_element = mainTree.readHuffSym(buffer);
-						// main_element = (int)ReadHuffSym(m_state.MAINTREE_table, m_state.MAINTREE_len,
-						// LzxConstants.MAINTREE_MAXSYMBOLS, LzxConstants.MAINTREE_TABLEBITS,
-						// bitbuf);
-						if (main_element < NUM_CHARS)
-						{
-							/* literal: 0 to NUM_CHARS-1 */
-							window[window_posn++] = (byte) main_element;
-							this_run--;
-						}
-						else
-						{
-							/* match: NUM_CHARS + ((slot<<3) | length_header (3 bits)) */
-							main_element -= NUM_CHARS;
-
-							match_length = main_element & NUM_PRIMARY_LENGTHS;
-							if (match_length == NUM_PRIMARY_LENGTHS)
-							{
-								// length_footer = (int)ReadHuffSym(m_state.LENGTH_table, m_state.LENGTH_len,
-								// LzxConstants.LENGTH_MAXSYMBOLS, LzxConstants.LENGTH_TABLEBITS,
-								// bitbuf);
-								length_footer = lengthTree.readHuffSym(buffer);
-								match_length += length_footer;
-							}
-							match_length += MIN_MATCH;
-
-							match_offset = main_element >> 3;
-
-							if (match_offset > 2)
-							{
-								/* not repeated offset */
-								if (match_offset != 3)
-								{
-									extra = extraBits[match_offset];
-									verbatim_bits = (int) buffer.readBits(extra);
-									match_offset = (int) positionBase[match_offset] - 2 + verbatim_bits;
-								}
-								else
-								{
-									match_offset = 1;
-								}
-
-								/* update repeated offset LRU queue */
-								R2 = R1;
-								R1 = R0;
-								R0 = match_offset;
-							}
-							else if (match_offset == 0)
-							{
-								match_offset = (int) R0;
-							}
-							else if (match_offset == 1)
-							{
-								match_offset = (int) R1;
-								R1 = R0;
-								R0 = match_offset;
-							}
-							else /* match_offset == 2 */
-							{
-								match_offset = (int) R2;
-								R2 = R0;
-								R0 = match_offset;
-							}
+				if (blockType == LzxBlockType.Uncompressed) {
+					buffer.readBytes(window, window_posn, this_run);
+					window_posn += this_run;
+					continue;
+				}
 
-							rundest = (int) window_posn;
-							this_run -= match_length;
+				boolean aligned = blockType == LzxBlockType.Aligned;
 
-							/* copy any wrapped around source data */
-							if (window_posn >= match_offset)
-							{
-								/* no wrap */
-								runsrc = rundest - match_offset;
-							}
-							else
-							{
-								runsrc = rundest + ((int) window_size - match_offset);
-								copy_length = match_offset - (int) window_posn;
-								if (copy_length < match_length)
-								{
-									match_length -= copy_length;
-									window_posn += copy_length;
-									while (copy_length-- > 0)
-										window[rundest++] = window[runsrc++];
-									runsrc = 0;
-								}
-							}
-							window_posn += match_length;
+				while (this_run > 0) {
+					main_element = mainTree.readHuffSym(buffer);
 
-							/* copy match data - no worries about destination wraps */
-							while (match_length-- > 0)
-								window[rundest++] = window[runsrc++];
-						}
+					if (main_element < NUM_CHARS) {
+						/* literal: 0 to NUM_CHARS-1 */
+						window[window_posn++] = (byte) main_element;
+						this_run--;
+						continue;
 					}
-					break;
 
-				case Aligned:
-					while (this_run > 0)
-					{
-						// main_element = (int)ReadHuffSym(m_state.MAINTREE_table, m_state.MAINTREE_len,
-						// LzxConstants.MAINTREE_MAXSYMBOLS, LzxConstants.MAINTREE_TABLEBITS,
-						// bitbuf);
-						main_element = mainTree.readHuffSym(buffer);
-
-						// System.err.println("main_element= " + main_element);
-						// System.err.println("this_run= " + this_run);
-
-						if (main_element < NUM_CHARS)
-						{
-							/* literal 0 to NUM_CHARS-1 */
-							window[window_posn++] = (byte) main_element;
-							this_run--;
-						}
-						else
-						{
-							/* match: NUM_CHARS + ((slot<<3) | length_header (3 bits)) */
-							main_element -= NUM_CHARS;
-
-							match_length = main_element & NUM_PRIMARY_LENGTHS;
-							// System.err.println("match_length= " + match_length);
-							if (match_length == NUM_PRIMARY_LENGTHS)
-							{
-								// length_footer = (int)ReadHuffSym(m_state.LENGTH_table, m_state.LENGTH_len,
-								// LzxConstants.LENGTH_MAXSYMBOLS, LzxConstants.LENGTH_TABLEBITS,
-								// bitbuf);
-								length_footer = lengthTree.readHuffSym(buffer);
-
-								// System.err.println("length_footer= " + length_footer);
-
-								match_length += length_footer;
-							}
-							match_length += MIN_MATCH;
-
-							match_offset = main_element >> 3;
-
-							// System.err.println("match_offset= " + match_offset);
-
-							if (match_offset > 2)
-							{
-								/* not repeated offset */
-								extra = extraBits[match_offset];
-								match_offset = (int) positionBase[match_offset] - 2;
-								if (extra > 3)
-								{
-									/* verbatim and aligned bits */
-									extra -= 3;
-									verbatim_bits = (int) buffer.readBits(extra);
-									match_offset += (verbatim_bits << 3);
-									// aligned_bits = (int)ReadHuffSym(m_state.ALIGNED_table, m_state.ALIGNED_len,
-									// LzxConstants.ALIGNED_MAXSYMBOLS, LzxConstants.ALIGNED_TABLEBITS,
-									// bitbuf);
-									aligned_bits = alignedTree.readHuffSym(buffer);
-									match_offset += aligned_bits;
-								}
-								else if (extra == 3)
-								{
-									/* aligned bits only */
-									// aligned_bits = (int)ReadHuffSym(m_state.ALIGNED_table, m_state.ALIGNED_len,
-									// LzxConstants.ALIGNED_MAXSYMBOLS, LzxConstants.ALIGNED_TABLEBITS,
-									// bitbuf);
-									aligned_bits = alignedTree.readHuffSym(buffer);
-									match_offset += aligned_bits;
-								}
-								else if (extra > 0) /* extra==1, extra==2 */
-								{
-									/* verbatim bits only */
-									verbatim_bits = buffer.readBits(extra);
-									match_offset += verbatim_bits;
-								}
-								else /* extra == 0 */
-								{
-									/* ??? */
-									match_offset = 1;
-								}
-
-								/* update repeated offset LRU queue */
-								R2 = R1;
-								R1 = R0;
-								R0 = match_offset;
-							}
-							else if (match_offset == 0)
-							{
-								match_offset = (int) R0;
-							}
-							else if (match_offset == 1)
-							{
-								match_offset = (int) R1;
-								R1 = R0;
-								R0 = match_offset;
-							}
-							else /* match_offset == 2 */
-							{
-								match_offset = (int) R2;
-								R2 = R0;
-								R0 = match_offset;
-							}
-
-							rundest = (int) window_posn;
-							this_run -= match_length;
+					/* match: NUM_CHARS + ((slot<<3) | length_header (3 bits)) */
+					main_element -= NUM_CHARS;
 
-							/* copy any wrapped around source data */
-							if (window_posn >= match_offset)
-							{
-								/* no wrap */
-								runsrc = rundest - match_offset;
-							}
-							else
-							{
-								runsrc = rundest + ((int) window_size - match_offset);
-								copy_length = match_offset - (int) window_posn;
-								if (copy_length < match_length)
-								{
-									match_length -= copy_length;
-									window_posn += copy_length;
-									while (copy_length-- > 0) {
-										window[rundest++] = window[runsrc++];
-									}
-									runsrc = 0;
-								}
+					match_length = main_element & NUM_PRIMARY_LENGTHS;
+					if (match_length == NUM_PRIMARY_LENGTHS) {
+						length_footer = lengthTree.readHuffSym(buffer);
+						match_length += length_footer;
+					}
+					match_length += MIN_MATCH;
+
+					match_offset = main_element >> 3;
+
+					if (match_offset > 2) {
+						/* not repeated offset */
+						extra = extraBits[match_offset];
+						if (!aligned) {
+							if (match_offset != 3) {
+								verbatim_bits = buffer.readBits(extra);
+								match_offset = positionBase[match_offset] - 2 + verbatim_bits;
+							} else {
+								match_offset = 1;
 							}
-							window_posn += match_length;
-
-							/* copy match data - no worries about destination wraps */
-							while (match_length-- > 0) {
-								window[rundest++] = window[runsrc++];
+						} else {
+							match_offset = positionBase[match_offset] - 2;
+							if (extra > 3) {
+								/* verbatim and aligned bits */
+								extra -= 3;
+								verbatim_bits = buffer.readBits(extra);
+								match_offset += (verbatim_bits << 3);
+								aligned_bits = alignedTree.readHuffSym(buffer);
+								match_offset += aligned_bits;
+							} else if (extra == 3) {
+								/* aligned bits only */
+								aligned_bits = alignedTree.readHuffSym(buffer);
+								match_offset += aligned_bits;
+							} else if (extra > 0) /* extra==1, extra==2 */{
+								/* verbatim bits only */
+								verbatim_bits = buffer.readBits(extra);
+								match_offset += verbatim_bits;
+							} else /* extra == 0 */{
+								/* ??? */
+								match_offset = 1;
 							}
 						}
-					}
-					break;
-
-				case Uncompressed:
-					if ((input.position() + this_run) > endpos)
-						throw new RuntimeException("(input.position() + this_run) > endpos");
 
-					// byte[] temp_buffer = new byte[this_run];
-					// inData.Read(temp_buffer, 0, this_run);
-					// temp_buffer.CopyTo(window, (int)window_posn);
+						/* update repeated offset LRU queue */
+						R2 = R1;
+						R1 = R0;
+						R0 = match_offset;
+					} else if (match_offset == 0) {
+						match_offset = R0;
+					} else if (match_offset == 1) {
+						match_offset = R1;
+						R1 = R0;
+						R0 = match_offset;
+					} else /* match_offset == 2 */{
+						match_offset = R2;
+						R2 = R0;
+						R0 = match_offset;
+					}
 
-					// input.get(window, window_posn, window.length - window_posn);
-					input.get(window, window_posn, this_run);
-					window_posn += this_run;
-					break;
+					rundest = window_posn;
+					this_run -= match_length;
+
+					/* copy any wrapped around source data */
+					if (window_posn >= match_offset) {
+						/* no wrap */
+						runsrc = rundest - match_offset;
+					} else {
+						runsrc = rundest + (window_size - match_offset);
+						copy_length = match_offset - window_posn;
+						if (copy_length < match_length) {
+							match_length -= copy_length;
+							window_posn += copy_length;
+							System.arraycopy(window, runsrc, window, rundest, copy_length);
+							rundest += copy_length;
+							runsrc = 0;
+						}
+					}
+					window_posn += match_length;
 
-				default:
-					throw new RuntimeException("Invalid block type: " + blockType);
+					/* copy match data - no worries about destination wraps */
+					copyMatch(window, runsrc, rundest, match_length);
 				}
 			}
 		}
@@ -633,20 +444,15 @@ class LzxDecoder {
 		if (togo != 0)
 			throw new RuntimeException("togo != 0");
 
-		int start_window_pos = (int) window_posn;
+		int start_window_pos = window_posn;
 
 		if (start_window_pos == 0) {
-			start_window_pos = (int) window_size;
+			start_window_pos = window_size;
 		}
 
 		start_window_pos -= outputLength;
 
-		// System.out.println("start_window_pos= " + start_window_pos);
-		// System.out.println("outputLength= " + outputLength);
-		// System.out.println("input.position= " + input.position());
-
 		output.put(window, start_window_pos, outputLength);
-		// outData.Write(window, start_window_pos, outLen);
 
 		this.windowPos = window_posn;
 		this.R0 = R0;
@@ -655,68 +461,53 @@ class LzxDecoder {
 
 		// TODO finish intel E8 decoding
 		/* intel E8 decoding */
-		if ((framesRead++ < 32768) && intelFileSize != 0)
-		{
-			if (outputLength <= 6 || !intelStarted)
-			{
-				intelCurrentPosition += outputLength;
-			}
-			else
-			{
-				int dataend = outputLength - 10;
-				int curpos = intelCurrentPosition;
+		if ((framesRead++ < 32768) && intelFileSize != 0) {
+			intelCurrentPosition += outputLength;
+		}
+	}
 
-				intelCurrentPosition = (int) curpos + outputLength;
+	/**
+	 * Copies match data within the window. Overlapping matches repeat the
+	 * bytes between the source and the destination, which is done by copying
+	 * progressively larger chunks of the already repeated data.
+	 */
+	private static void copyMatch(byte[] window, int src, int dest, int length) {
+		if (src + length <= dest || dest + length <= src) {
+			System.arraycopy(window, src, window, dest, length);
+			return;
+		}
 
-				while (output.position() < dataend)
-				{
-					if (output.get() != 0xE8) {
-						curpos++;
-						continue;
-					}
-				}
-			}
-			// TODO: Is this an error?
-			// return -1;
+		while (length > 0) {
+			int chunk = Math.min(dest - src, length);
+			System.arraycopy(window, src, window, dest, chunk);
+			dest += chunk;
+			length -= chunk;
 		}
-		// return 0;
 	}
 
-	private void readLengths(byte[] lens, int first, int last, LzxBuffer buffer)
-	{
+	private void readLengths(byte[] lens, int first, int last, LzxBuffer buffer) {
 		int x, y;
 		int z;
 
-		// hufftbl pointer here?
-
-		for (x = 0; x < 20; x++)
-		{
+		for (x = 0; x < 20; x++) {
 			y = buffer.readBits(4);
 			preTree.getLength()[x] = (byte) y;
 		}
 		preTree.makeDecodeTable();
-		// MakeDecodeTable(LzxConstants.PRETREE_MAXSYMBOLS, LzxConstants.PRETREE_TABLEBITS,
-		// m_state.PRETREE_len, m_state.PRETREE_table);
 
-		for (x = first; x < last;)
-		{
+		for (x = first; x < last;) {
 			z = preTree.readHuffSym(buffer);
-			if (z == 17)
-			{
+			if (z == 17) {
 				y = buffer.readBits(4);
 				y += 4;
 				while (y-- != 0)
 					lens[x++] = 0;
-			}
-			else if (z == 18)
-			{
+			} else if (z == 18) {
 				y = buffer.readBits(5);
 				y += 20;
 				while (y-- != 0)
 					lens[x++] = 0;
-			}
-			else if (z == 19)
-			{
+			} else if (z == 19) {
 				y = buffer.readBits(1);
 				y += 4;
 				z = preTree.readHuffSym(buffer);
@@ -725,9 +516,7 @@ class LzxDecoder {
 					z += 17;
 				while (y-- != 0)
 					lens[x++] = (byte) z;
-			}
-			else
-			{
+			} else {
 				z = lens[x] - z;
 				if (z < 0)
 					z += 17;
@@ -737,8 +526,12 @@ class LzxDecoder {
 	}
 }
 
+/**
+ * Huffman decoding table. Entries pack the code length above the symbol,
+ * so that a single lookup yields both.
+ */
 class HuffTable {
-	private short[] table;
+	private int[] table;
 	private byte[] length;
 
 	private int maxSymbols;
@@ -749,7 +542,7 @@ class HuffTable {
 	public HuffTable(int maxSymbols, int tableBits) {
 		this.maxSymbols = maxSymbols;
 		this.tableBits = tableBits;
-		table = new short[(1 << tableBits) + (maxSymbols << 1)];
+		table = new int[(1 << tableBits) + (maxSymbols << 1)];
 		length = new byte[maxSymbols + SAFETY];
 	}
 
@@ -761,28 +554,22 @@ class HuffTable {
 		short sym;
 		int leaf;
 		byte bit_num = 1;
-		int fill;
 		int pos = 0; /* the current position in the decode table */
 		int table_mask = (1 << (int) tableBits);
 		int bit_mask = table_mask >>> 1; /* don't do 0 length codes */
 		int next_symbol = bit_mask; /* base of allocation for long codes */
 
 		/* fill entries for codes short enough for a direct mapping */
-		while (bit_num <= tableBits)
-		{
-			for (sym = 0; sym < maxSymbols; sym++)
-			{
-				if (length[sym] == bit_num)
-				{
+		while (bit_num <= tableBits) {
+			for (sym = 0; sym < maxSymbols; sym++) {
+				if (length[sym] == bit_num) {
 					leaf = pos;
 
 					if ((pos += bit_mask) > table_mask)
 						return;// 1; /* table overrun */
 
 					/* fill all possible lookups of this symbol with the symbol itself */
-					fill = bit_mask;
-					while (fill-- > 0)
-						table[leaf++] = sym;
+					Arrays.fill(table, leaf, pos, sym | bit_num << 16);
 				}
 			}
 			bit_mask >>>= 1;
@@ -790,39 +577,32 @@ class HuffTable {
 		}
 
 		/* if there are any codes longer than tableBits */
-		if (pos != table_mask)
-		{
+		if (pos != table_mask) {
 			/* clear the remainder of the table */
-			for (sym = (short) pos; sym < table_mask; sym++)
-				table[sym] = 0;
+			Arrays.fill(table, pos, table_mask, 0);
 
 			/* give ourselves room for codes to grow by up to 16 more bits */
 			pos <<= 16;
 			table_mask <<= 16;
 			bit_mask = 1 << 15;
 
-			while (bit_num <= 16)
-			{
-				for (sym = 0; sym < maxSymbols; sym++)
-				{
-					if (length[sym] == bit_num)
-					{
+			while (bit_num <= 16) {
+				for (sym = 0; sym < maxSymbols; sym++) {
+					if (length[sym] == bit_num) {
 						leaf = pos >>> 16;
-						for (fill = 0; fill < bit_num - tableBits; fill++)
-						{
+						for (int fill = 0; fill < bit_num - tableBits; fill++) {
 							/* if this path hasn't been taken yet, 'allocate' two entries */
-							if (table[leaf] == 0)
-							{
+							if (table[leaf] == 0) {
 								table[(next_symbol << 1)] = 0;
 								table[(next_symbol << 1) + 1] = 0;
-								table[leaf] = (short) (next_symbol++);
+								table[leaf] = next_symbol++;
 							}
 							/* follow the path and select either left or right for next bit */
 							leaf = (table[leaf] << 1);
 							if (((pos >>> (int) (15 - fill)) & 1) == 1)
 								leaf++;
 						}
-						table[leaf] = sym;
+						table[leaf] = sym | bit_num << 16;
 
 						if ((pos += bit_mask) > table_mask)
 							return;// 1;
@@ -843,36 +623,34 @@ class HuffTable {
 				return;// 1;
 	}
 
-	public int readHuffSym(LzxBuffer buffer)
-	{
-		int i, j;
+	public int readHuffSym(LzxBuffer buffer) {
 		buffer.ensureBits(16);
-		if ((i = table[buffer.peekBits((byte) tableBits)]) >= maxSymbols)
-		{
-			j = (int) (1 << (int) ((4 * 8) - tableBits));
-			do
-			{
-				j >>>= 1;
-				i <<= 1;
-				i |= (buffer.getBitBuffer() & j) != 0 ? (int) 1 : 0;
-
+		long bits = buffer.getBitBuffer();
+		int entry = table[(int) (bits >>> (64 - tableBits))];
+		if ((entry & 0xffff) >= maxSymbols) {
+			/* walk the tree for codes longer than the direct lookup */
+			long j = 1L << (63 - tableBits);
+			do {
 				if (j == 0)
-					throw new RuntimeException(); // return 0;
-
-			} while ((i = table[i]) >= maxSymbols);
+					throw new RuntimeException("Invalid huffman code");
+				int i = entry << 1;
+				if ((bits & j) != 0)
+					i++;
+				j >>>= 1;
+				entry = table[i];
+			} while ((entry & 0xffff) >= maxSymbols);
 		}
-		j = length[i];
-		buffer.removeBits((byte) j);
+		buffer.removeBits(entry >>> 16);
 
-		return i;
+		return entry & 0xffff;
 	}
 
 	public void reset() {
-		Arrays.fill(table, (short) 0);
+		Arrays.fill(table, 0);
 		Arrays.fill(length, (byte) 0);
 	}
 
-	public short[] getTable() {
+	public int[] getTable() {
 		return table;
 	}
 
@@ -881,13 +659,34 @@ class HuffTable {
 	}
 }
 
+/**
+ * Bit reader over little-endian 16-bit words. Up to 64 bits are buffered,
+ * refilled three or four words at a time; bytes past the end of the frame
+ * read as zeros, so that lookahead never touches the next frame.
+ */
 class LzxBuffer {
 	private ByteBuffer byteBuffer;
+	private byte[] array;
+	private int arrayOffset;
+	/** Position of the next byte to buffer; may be past the limit */
+	private int position;
+	private int limit;
+
 	private int remainingBits = 0;
-	private int bitBuffer = 0;
+	private long bitBuffer = 0;
 
-	public LzxBuffer(ByteBuffer buffer) {
+	public void init(ByteBuffer buffer, int position, int limit) {
 		this.byteBuffer = buffer;
+		if (buffer.hasArray()) {
+			array = buffer.array();
+			arrayOffset = buffer.arrayOffset();
+		} else {
+			array = null;
+			arrayOffset = 0;
+		}
+		this.position = position;
+		this.limit = limit;
+		reset();
 	}
 
 	public void reset() {
@@ -896,25 +695,51 @@ class LzxBuffer {
 	}
 
 	public void ensureBits(int bitCount) {
-		if (bitCount < 0 || bitCount > 32) {
-			throw new IllegalArgumentException(Integer.toString(bitCount));
+		if (remainingBits < bitCount) {
+			fill();
+		}
+	}
+
+	private void fill() {
+		if (position + 8 <= limit) {
+			// Fast path, no need to check for the end of the frame
+			if (array != null) {
+				int index = arrayOffset + position;
+				while (remainingBits <= 48) {
+					int word = (array[index] & 0xff) | (array[index + 1] & 0xff) << 8;
+					bitBuffer |= (long) word << (48 - remainingBits);
+					remainingBits += 16;
+					index += 2;
+				}
+				position = index - arrayOffset;
+			} else {
+				while (remainingBits <= 48) {
+					int word = (byteBuffer.get(position) & 0xff) | (byteBuffer.get(position + 1) & 0xff) << 8;
+					bitBuffer |= (long) word << (48 - remainingBits);
+					remainingBits += 16;
+					position += 2;
+				}
+			}
+			return;
 		}
 
-		while (remainingBits < bitCount) {
-			int lo = byteBuffer.get() & 0xff;
-			int hi = byteBuffer.get() & 0xff;
-			bitBuffer |= ((hi << 8) | lo) << (4 * 8 - 16 - remainingBits);
+		while (remainingBits <= 48) {
+			int word = getByte(position) | getByte(position + 1) << 8;
+			bitBuffer |= (long) word << (48 - remainingBits);
 			remainingBits += 16;
+			position += 2;
 		}
 	}
 
-	public int peekBits(int bitCount) {
-		if (bitCount > remainingBits) {
-			throw new IllegalArgumentException("Not enough bits: required "
-					+ bitCount + " has " + remainingBits);
+	private int getByte(int index) {
+		if (index >= limit) {
+			return 0;
 		}
+		return (array != null ? array[arrayOffset + index] : byteBuffer.get(index)) & 0xff;
+	}
 
-		return (bitBuffer >>> (32 - bitCount));
+	public int peekBits(int bitCount) {
+		return (int) (bitBuffer >>> (64 - bitCount));
 	}
 
 	public void removeBits(int bitCount) {
@@ -934,7 +759,54 @@ class LzxBuffer {
 		return result;
 	}
 
-	public int getBitBuffer() {
+	/**
+	 * Discards the 1-16 pad bits that align the stream to a word, and the
+	 * buffered words after them, leaving the reader at a byte position.
+	 */
+	public void alignToWord() {
+		ensureBits(16);
+		int padBits = remainingBits & 15;
+		if (padBits == 0) {
+			padBits = 16;
+		}
+		position -= (remainingBits - padBits) >> 3;
+		reset();
+	}
+
+	/** Reads a little-endian int; the reader must be byte aligned */
+	public int readInt() {
+		int result = getByte(position) | getByte(position + 1) << 8
+				| getByte(position + 2) << 16 | getByte(position + 3) << 24;
+		position += 4;
+		return result;
+	}
+
+	/** Reads raw bytes; the reader must be byte aligned */
+	public void readBytes(byte[] dst, int offset, int length) {
+		if (position + length > limit) {
+			throw new RuntimeException("Uncompressed block overrun");
+		}
+		if (array != null) {
+			System.arraycopy(array, arrayOffset + position, dst, offset, length);
+		} else {
+			byteBuffer.position(position);
+			byteBuffer.get(dst, offset, length);
+		}
+		position += length;
+	}
+
+	/** Skips raw bytes; the reader must be byte aligned */
+	public void skipBytes(int count) {
+		position += count;
+		reset();
+	}
+
+	/** Gets the number of bits consumed, measured from the start of the buffer */
+	public long getBitPosition() {
+		return ((long) position << 3) - remainingBits;
+	}
+
+	public long getBitBuffer() {
 		return bitBuffer;
 	}
 
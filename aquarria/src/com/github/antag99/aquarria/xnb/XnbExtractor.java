@@ -29,19 +29,36 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.xnb;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.List;
 
+import com.badlogic.gdx.Files.FileType;
 import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector3;
 
 public abstract class XnbExtractor {
 	private static final int HEADER_SIZE = 14;
+	/** XNA surface format of uncompressed RGBA data */
+	protected static final int SURFACEFORMAT_COLOR = 0;
 
 	private LzxDecoder lzxDecoder = new LzxDecoder();
+	/** Compressed files are decompressed into this buffer, which is reused between files */
+	private ByteBuffer decompressedBuffer;
+	/** The file that is mapped into the buffer, or null if it was read onto the heap */
+	private File mappedFile;
 
 	protected ByteBuffer buffer;
 	protected byte targetPlatform;
@@ -58,7 +75,7 @@ public abstract class XnbExtractor {
 	}
 
 	protected void readHeader(FileHandle file) {
-		buffer = ByteBuffer.wrap(file.readBytes());
+		buffer = map(file);
 		buffer.order(ByteOrder.LITTLE_ENDIAN);
 
 		if (buffer.get() != 'X' || buffer.get() != 'N' || buffer.get() != 'B') {
@@ -74,12 +91,15 @@ public abstract class XnbExtractor {
 
 		// XNB files can be compressed with a slightly modified LZX algorithm
 		if (wasCompressed) {
-			ByteBuffer decompressedBuffer = ByteBuffer.allocate(decompressedSize);
-			decompressedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (decompressedBuffer == null || decompressedBuffer.capacity() < decompressedSize) {
+				// Kept off the heap, so that large assets don't inflate it
+				decompressedBuffer = ByteBuffer.allocateDirect(MathUtils.nextPowerOfTwo(decompressedSize));
+				decompressedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+			}
 
+			decompressedBuffer.clear();
 			lzxDecoder.decompress(buffer, compressedSize - HEADER_SIZE, decompressedBuffer, decompressedSize);
-
-			decompressedBuffer.position(0);
+			decompressedBuffer.flip();
 
 			buffer = decompressedBuffer;
 		}
@@ -113,6 +133,64 @@ public abstract class XnbExtractor {
 		}
 	}
 
+	/**
+	 * Maps the given file into memory, falling back to reading it onto
+	 * the heap for files that are not on the file system.
+	 */
+	private ByteBuffer map(FileHandle file) {
+		mappedFile = null;
+		if (file.type() == FileType.Classpath || !file.file().isFile()) {
+			return ByteBuffer.wrap(file.readBytes());
+		}
+
+		try {
+			RandomAccessFile input = new RandomAccessFile(file.file(), "r");
+			try {
+				FileChannel channel = input.getChannel();
+				ByteBuffer result = channel.map(MapMode.READ_ONLY, 0, channel.size());
+				mappedFile = file.file();
+				return result;
+			} finally {
+				input.close();
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Error reading " + file.path(), ex);
+		}
+	}
+
+	/**
+	 * Writes the next {@code length} bytes of the asset to the given channel.
+	 * Uncompressed data is transferred straight from the source file.
+	 */
+	protected void transfer(WritableByteChannel channel, int length) throws IOException {
+		if (buffer.remaining() < length) {
+			throw new RuntimeException("Unexpected end of data: " + length + " bytes required, "
+					+ buffer.remaining() + " remaining");
+		}
+
+		if (!wasCompressed && mappedFile != null) {
+			FileInputStream input = new FileInputStream(mappedFile);
+			try {
+				FileChannel source = input.getChannel();
+				long position = buffer.position();
+				long end = position + length;
+				while (position < end) {
+					position += source.transferTo(position, end - position, channel);
+				}
+			} finally {
+				input.close();
+			}
+		} else {
+			ByteBuffer data = buffer.duplicate();
+			data.limit(data.position() + length);
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+		}
+
+		buffer.position(buffer.position() + length);
+	}
+
 	protected static int get7BitEncodedInt(ByteBuffer buffer) {
 		int result = 0;
 		int bitsRead = 0;
@@ -169,6 +247,40 @@ public abstract class XnbExtractor {
 		return new String(buf, utf8);
 	}
 
+	/**
+	 * Reads the pixel data of a texture into a new pixmap. COLOR data is already
+	 * laid out as RGBA8888 bytes; block compressed data is decoded.
+	 */
+	protected static Pixmap getPixmap(ByteBuffer buffer, int surfaceFormat, int width, int height, int size) {
+		int expectedSize;
+		if (surfaceFormat == SURFACEFORMAT_COLOR) {
+			expectedSize = width * height * 4;
+		} else if (DxtDecoder.isSupported(surfaceFormat)) {
+			expectedSize = DxtDecoder.getCompressedSize(surfaceFormat, width, height);
+		} else {
+			throw new RuntimeException("Unsupported surface format: " + surfaceFormat);
+		}
+
+		if (size != expectedSize) {
+			throw new RuntimeException("Invalid size: " + size + "(width=" + width + ", height=" + height + ")");
+		}
+
+		Pixmap pixmap = new Pixmap(width, height, Format.RGBA8888);
+		ByteBuffer pixels = pixmap.getPixels();
+		pixels.clear();
+		if (surfaceFormat == SURFACEFORMAT_COLOR) {
+			int limit = buffer.limit();
+			buffer.limit(buffer.position() + size);
+			pixels.put(buffer);
+			buffer.limit(limit);
+		} else {
+			DxtDecoder.decode(surfaceFormat, width, height, buffer, pixels);
+		}
+		pixels.clear();
+
+		return pixmap;
+	}
+
 	protected static Rectangle getRectangle(ByteBuffer buffer) {
 		return new Rectangle(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
 	}
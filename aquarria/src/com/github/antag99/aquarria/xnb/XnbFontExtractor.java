@@ -29,22 +29,18 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.xnb;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.imageio.ImageIO;
-
 import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.JsonWriter;
 
 public class XnbFontExtractor extends XnbExtractor {
-	private static final int SURFACEFORMAT_DXT3 = 5;
-
 	@Override
 	public void extract(FileHandle source, FileHandle dest) {
 		super.extract(source, dest);
@@ -62,7 +58,7 @@ public class XnbFontExtractor extends XnbExtractor {
 			int height = buffer.getInt();
 
 			int mipCount = buffer.getInt();
-			buffer.getInt();
+			int size = buffer.getInt();
 
 			if (mipCount != 1) {
 				throw new RuntimeException("Invalid mipmap count: " + mipCount);
@@ -70,17 +66,11 @@ public class XnbFontExtractor extends XnbExtractor {
 
 			FileHandle textureFile = dest.sibling(dest.nameWithoutExtension() + ".png");
 
-			if (surfaceFormat != SURFACEFORMAT_DXT3) {
-				throw new RuntimeException("Unexpected surface format: " + surfaceFormat);
-			}
-
+			Pixmap pixmap = getPixmap(buffer, surfaceFormat, width, height, size);
 			try {
-				BufferedImage image = Dxt3.getBufferedImage(width, height, buffer);
-				OutputStream textureFileStream = textureFile.write(false);
-				ImageIO.write(image, "png", textureFileStream);
-				textureFileStream.close();
-			} catch (IOException ex) {
-				throw new RuntimeException(ex);
+				PixmapIO.writePNG(textureFile, pixmap);
+			} finally {
+				pixmap.dispose();
 			}
 		}
 
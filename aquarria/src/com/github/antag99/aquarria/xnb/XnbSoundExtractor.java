@@ -29,10 +29,13 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.xnb;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 import com.badlogic.gdx.files.FileHandle;
 
@@ -70,7 +73,7 @@ public class XnbSoundExtractor extends XnbExtractor {
 		buffer.getShort(); // Unknown
 		int dataChunkSize = buffer.getInt();
 
-		// Note that the samples are written directly from the source buffer
+		// Note that the samples are transferred directly from the source
 		ByteBuffer headerBuffer = ByteBuffer.allocate(44);
 		headerBuffer.order(ByteOrder.LITTLE_ENDIAN);
 		headerBuffer.put((byte) 'R');
@@ -99,11 +102,21 @@ public class XnbSoundExtractor extends XnbExtractor {
 		headerBuffer.put((byte) 'a');
 		headerBuffer.putInt(dataChunkSize);
 
+		headerBuffer.flip();
+
 		try {
 			OutputStream outputStream = dest.write(false);
-			outputStream.write(headerBuffer.array(), headerBuffer.arrayOffset(), headerBuffer.position());
-			outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), dataChunkSize);
-			outputStream.close();
+			try {
+				WritableByteChannel channel = outputStream instanceof FileOutputStream
+						? ((FileOutputStream) outputStream).getChannel()
+						: Channels.newChannel(outputStream);
+				while (headerBuffer.hasRemaining()) {
+					channel.write(headerBuffer);
+				}
+				transfer(channel, dataChunkSize);
+			} finally {
+				outputStream.close();
+			}
 		} catch (IOException ex) {
 			throw new RuntimeException(ex);
 		}
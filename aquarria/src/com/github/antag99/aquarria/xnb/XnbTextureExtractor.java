@@ -29,19 +29,27 @@
  ******************************************************************************/
 package com.github.antag99.aquarria.xnb;
 
-import java.nio.ByteOrder;
-
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.PixmapIO;
 
 public class XnbTextureExtractor extends XnbExtractor {
-	private static int COLOR = 0;
-
 	@Override
 	public void extract(FileHandle source, FileHandle dest) {
-		super.extract(source, dest);
+		Pixmap pixmap = extractPixmap(source);
+		try {
+			PixmapIO.writePNG(dest, pixmap);
+		} finally {
+			pixmap.dispose();
+		}
+	}
+
+	/**
+	 * Reads the texture into a new pixmap, without the round-trip through
+	 * a PNG file; the caller is responsible for disposing the pixmap.
+	 */
+	public Pixmap extractPixmap(FileHandle source) {
+		readHeader(source);
 
 		if (!primaryType.equals("Texture2D")) {
 			throw new RuntimeException("Expected primary type to be Texture2D, was " + primaryType);
@@ -50,11 +58,6 @@ public class XnbTextureExtractor extends XnbExtractor {
 		int surfaceFormat = buffer.getInt();
 		int width = buffer.getInt();
 		int height = buffer.getInt();
-
-		if (surfaceFormat != COLOR) {
-			throw new RuntimeException("Expected surface format to be COLOR, was " + surfaceFormat);
-		}
-
 		int mipCount = buffer.getInt();
 		int size = buffer.getInt();
 
@@ -62,20 +65,6 @@ public class XnbTextureExtractor extends XnbExtractor {
 			throw new RuntimeException("Invalid mipmap count: " + mipCount);
 		}
 
-		if (size != width * height * 4) {
-			throw new RuntimeException("Invalid size: " + size + "(width=" + width + ", height=" + height + ")");
-		}
-
-		// To read RGBA values as integers
-		buffer.order(ByteOrder.BIG_ENDIAN);
-
-		Pixmap pixmap = new Pixmap(width, height, Format.RGBA8888);
-		for (int y = 0; y < height; ++y) {
-			for (int x = 0; x < width; ++x) {
-				pixmap.drawPixel(x, y, buffer.getInt());
-			}
-		}
-		PixmapIO.writePNG(dest, pixmap);
-		pixmap.dispose();
+		return getPixmap(buffer, surfaceFormat, width, height, size);
 	}
 }
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.tests;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.antag99.aquarria.xnb.DxtDecoder;
+
+/**
+ * Decodes single 4x4 blocks with known results. Colors are 0xRRGGBBAA.
+ */
+public class DxtDecoderTests {
+	/* Color indices 0, 1, 2, 3 in every row */
+	private static final int[] COLOR_INDICES = { 0xe4, 0xe4, 0xe4, 0xe4 };
+
+	@Test
+	public void testDxt1FourColors() {
+		// Red above blue, so the block has four opaque colors
+		int[] block = decode(DxtDecoder.DXT1, bytes(0x00, 0xf8, 0x1f, 0x00), bytes(COLOR_INDICES));
+		assertRows(block, 0xff0000ff, 0x0000ffff, 0xaa0055ff, 0x5500aaff);
+	}
+
+	@Test
+	public void testDxt1ThreeColorsAndTransparent() {
+		// Blue above red selects the midpoint and transparent black
+		int[] block = decode(DxtDecoder.DXT1, bytes(0x1f, 0x00, 0x00, 0xf8), bytes(COLOR_INDICES));
+		assertRows(block, 0x0000ffff, 0xff0000ff, 0x7f007fff, 0x00000000);
+
+		// Pixmap byte order is the same for byte output
+		ByteBuffer pixels = ByteBuffer.allocate(16 * 4);
+		DxtDecoder.decode(DxtDecoder.DXT1, 4, 4, ByteBuffer.wrap(bytes(0x1f, 0x00, 0x00, 0xf8, 0xe4, 0xe4, 0xe4, 0xe4)), pixels);
+		Assert.assertEquals(64, pixels.position());
+		Assert.assertEquals(0x7f, pixels.get(2 * 4) & 0xff);
+		Assert.assertEquals(0xff, pixels.get(2 * 4 + 3) & 0xff);
+		Assert.assertEquals(0x00, pixels.get(3 * 4 + 3) & 0xff);
+	}
+
+	@Test
+	public void testDxt3() {
+		// Pixel i has alpha i; the colors always use four color mode
+		byte[] alpha = bytes(0x10, 0x32, 0x54, 0x76, 0x98, 0xba, 0xdc, 0xfe);
+		int[] block = decode(DxtDecoder.DXT3, alpha, bytes(0x1f, 0x00, 0x00, 0xf8), bytes(COLOR_INDICES));
+		int[] colors = { 0x0000ff00, 0xff000000, 0x5500aa00, 0xaa005500 };
+		for (int i = 0; i < 16; ++i) {
+			Assert.assertEquals(colors[i % 4] | i * 17, block[i]);
+		}
+	}
+
+	@Test
+	public void testDxt5EightAlphas() {
+		// Pixels 0-7 and 8-15 use alpha indices 0-7
+		int[] block = decode(DxtDecoder.DXT5, bytes(0xff, 0x00, 0x88, 0xc6, 0xfa, 0x88, 0xc6, 0xfa),
+				bytes(0xff, 0xff, 0xff, 0xff, 0, 0, 0, 0));
+		assertAlphas(block, 255, 0, 218, 182, 145, 109, 72, 36);
+	}
+
+	@Test
+	public void testDxt5SixAlphas() {
+		int[] block = decode(DxtDecoder.DXT5, bytes(0x00, 0xff, 0x88, 0xc6, 0xfa, 0x88, 0xc6, 0xfa),
+				bytes(0xff, 0xff, 0xff, 0xff, 0, 0, 0, 0));
+		assertAlphas(block, 0, 255, 51, 102, 153, 204, 0, 255);
+	}
+
+	private static int[] decode(int format, byte[]... parts) {
+		ByteBuffer data = ByteBuffer.allocate(DxtDecoder.getCompressedSize(format, 4, 4));
+		for (byte[] part : parts)
+			data.put(part);
+		data.flip();
+
+		int[] pixels = new int[16];
+		DxtDecoder.decode(format, 4, 4, data, pixels);
+		Assert.assertEquals(data.limit(), data.position());
+		return pixels;
+	}
+
+	private static void assertRows(int[] block, int... row) {
+		for (int i = 0; i < 16; ++i) {
+			Assert.assertEquals("Pixel " + i, row[i % 4], block[i]);
+		}
+	}
+
+	private static void assertAlphas(int[] block, int... alphas) {
+		for (int i = 0; i < 16; ++i) {
+			Assert.assertEquals("Pixel " + i, 0xffffff00 | alphas[i % 8], block[i]);
+		}
+	}
+
+	private static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; ++i)
+			bytes[i] = (byte) values[i];
+		return bytes;
+	}
+}
@@ -43,7 +43,6 @@ import com.badlogic.gdx.utils.Array;
 public class LicenseHeaderTests {
 	private static Array<String> exceptions = Array.with(
 			"LzxDecoder.java",
-			"Dxt3.java",
 			"WinRegistry.java",
 			"sudoplay",
 
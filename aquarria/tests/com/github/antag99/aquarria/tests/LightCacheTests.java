@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.tests;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.antag99.aquarria.BasicTileType;
+import com.github.antag99.aquarria.world.LightCache;
+import com.github.antag99.aquarria.world.LightSolver;
+import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldChanges;
+
+public class LightCacheTests {
+	@Test
+	public void testSameLightAsWholeWorld() {
+		Random random = new Random(50);
+		World world = LightSolverTests.createWorld(random);
+		world.getChanges().clear();
+
+		BasicTileType air = new BasicTileType();
+		air.setSolid(false);
+		BasicTileType solid = new BasicTileType();
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			LightCache cache = new LightCache(new LightSolver(pool));
+			world.addListener(cache);
+			for (int round = 0; round < 60; ++round) {
+				// Dig out or build on top of some columns, which moves their surface
+				for (int k = random.nextInt(8); k > 0; --k) {
+					int x = random.nextInt(world.getWidth());
+					int level = world.getSurfaceLevel(x);
+					if (random.nextBoolean() && level > 0) {
+						world.setTileType(x, level - 1, air);
+					} else if (level < world.getHeight()) {
+						world.setTileType(x, level, solid);
+					}
+				}
+				world.flushChanges();
+
+				int x = random.nextInt(world.getWidth());
+				int y = random.nextInt(world.getHeight());
+				int width = 1 + random.nextInt(world.getWidth() - x);
+				int height = 1 + random.nextInt(world.getHeight() - y);
+				cache.update(world, x, y, width, height);
+				assertWholeWorldLight(world, x, y, width, height);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testOnlyStaleChunksComputed() {
+		World world = LightSolverTests.createWorld(new Random(51));
+		world.getChanges().clear();
+
+		BasicTileType air = new BasicTileType();
+		air.setSolid(false);
+
+		ForkJoinPool pool = new ForkJoinPool(1);
+		try {
+			LightCache cache = new LightCache(new LightSolver(pool));
+			world.addListener(cache);
+			cache.update(world, 0, 0, world.getWidth(), world.getHeight());
+
+			// A cell far from the change keeps whatever light it has
+			world.setLight(0, 0, 0.5f);
+			int x = world.getWidth() - 1;
+			world.setTileType(x, world.getSurfaceLevel(x) - 1, air);
+			world.flushChanges();
+
+			cache.update(world, 0, 0, world.getWidth(), world.getHeight());
+			Assert.assertEquals(0.5f, world.getLight(0, 0), 1f / 255f);
+
+			world.setLight(0, 0, 0f);
+			assertWholeWorldLight(world, world.getWidth() - 40, 0, 40, world.getHeight());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testSurfaceMovesAcrossChunks() {
+		World world = LightSolverTests.createWorld(new Random(52));
+		world.getChanges().clear();
+
+		BasicTileType air = new BasicTileType();
+		air.setSolid(false);
+		BasicTileType solid = new BasicTileType();
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			LightCache cache = new LightCache(new LightSolver(pool));
+			world.addListener(cache);
+			cache.update(world, 0, 0, world.getWidth(), world.getHeight());
+
+			// Columns whose light reaches just across the border of a chunk, on
+			// either side, dug down through every row and built back up
+			int border = 4 * WorldChanges.CHUNK_SIZE;
+			for (int x : new int[] { border - 1 + LightSolver.RADIUS, border - LightSolver.RADIUS }) {
+				for (int j = world.getSurfaceLevel(x) - 1; j >= 0; --j) {
+					world.setTileType(x, j, air);
+					world.flushChanges();
+					cache.update(world, 0, 0, world.getWidth(), world.getHeight());
+					assertWholeWorldLight(world, 0, 0, world.getWidth(), world.getHeight());
+				}
+				for (int j = 0; j < world.getHeight(); ++j) {
+					world.setTileType(x, j, solid);
+					world.flushChanges();
+					cache.update(world, 0, 0, world.getWidth(), world.getHeight());
+					assertWholeWorldLight(world, 0, 0, world.getWidth(), world.getHeight());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 * Asserts that the light of the given region is that computed for the whole
+	 * world, which is left as it was when the assertion holds.
+	 */
+	private static void assertWholeWorldLight(World world, int x, int y, int width, int height) {
+		float[] actual = new float[width * height];
+		for (int j = 0; j < height; ++j) {
+			for (int i = 0; i < width; ++i) {
+				actual[j * width + i] = world.getLight(x + i, y + j);
+			}
+		}
+
+		world.computeLight(0, 0, world.getWidth(), world.getHeight());
+		for (int j = 0; j < height; ++j) {
+			for (int i = 0; i < width; ++i) {
+				Assert.assertEquals("Light at " + (x + i) + ", " + (y + j),
+						world.getLight(x + i, y + j), actual[j * width + i], 0f);
+			}
+		}
+	}
+}
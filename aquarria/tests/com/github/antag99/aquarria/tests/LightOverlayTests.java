@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.tests;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.antag99.aquarria.world.LightOverlay;
+import com.github.antag99.aquarria.world.World;
+
+public class LightOverlayTests {
+	@Test
+	public void testCornersAtStep() {
+		Random random = new Random(3);
+		World world = new World(100, 80, 0L);
+		for (int j = 0; j < world.getHeight(); ++j) {
+			for (int i = 0; i < world.getWidth(); ++i) {
+				world.setLight(i, j, random.nextFloat());
+			}
+		}
+
+		LightOverlay cells = new LightOverlay();
+		LightOverlay grid = new LightOverlay();
+		int[][] regions = { { 0, 0, 100, 80 }, { 13, 7, 61, 45 }, { 99, 79, 1, 1 }, { 40, 0, 60, 33 } };
+		for (int[] region : regions) {
+			int width = region[2], height = region[3];
+			cells.update(world, region[0], region[1], width, height);
+			for (int step = 2; step <= 8; step *= 2) {
+				grid.update(world, region[0], region[1], width, height, step);
+				Assert.assertEquals((width + step - 1) / step, grid.getColumns());
+				Assert.assertEquals((height + step - 1) / step, grid.getRows());
+
+				// Corners past the region take the light at its edge
+				for (int j = 0; j <= grid.getRows(); ++j) {
+					for (int i = 0; i <= grid.getColumns(); ++i) {
+						Assert.assertEquals("Corner " + i + ", " + j + " at step " + step,
+								cells.getCornerLight(Math.min(i * step, width), Math.min(j * step, height)),
+								grid.getCornerLight(i, j), 0f);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.tests;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.antag99.aquarria.BasicTileType;
+import com.github.antag99.aquarria.world.LightSolver;
+import com.github.antag99.aquarria.world.World;
+
+public class LightSolverTests {
+	private static final int WIDTH = 300;
+	private static final int HEIGHT = 200;
+
+	@Test
+	public void testSameLightAsSerial() {
+		Random random = new Random(47);
+		World world = createWorld(random);
+
+		// Rectangles touching each edge and corner of the world, then random ones
+		int[][] rectangles = {
+				{ 0, 0, WIDTH, HEIGHT },
+				{ 0, 0, 1, 1 },
+				{ WIDTH - 1, HEIGHT - 1, 1, 1 },
+				{ 0, 37, 90, 120 },
+				{ WIDTH - 70, 10, 70, 150 },
+				{ 20, 0, 200, 64 },
+				{ 5, HEIGHT - 65, 250, 65 },
+				{ 0, 0, WIDTH, 1 },
+				{ WIDTH - 1, 0, 1, HEIGHT },
+		};
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			LightSolver solver = new LightSolver(pool);
+			for (int i = 0; i < rectangles.length + 100; ++i) {
+				int x, y, width, height;
+				if (i < rectangles.length) {
+					x = rectangles[i][0];
+					y = rectangles[i][1];
+					width = rectangles[i][2];
+					height = rectangles[i][3];
+				} else {
+					x = random.nextInt(WIDTH);
+					y = random.nextInt(HEIGHT);
+					width = 1 + random.nextInt(WIDTH - x);
+					height = 1 + random.nextInt(HEIGHT - y);
+				}
+
+				scrambleLight(world, random);
+				world.computeLight(x, y, width, height);
+				float[] expected = new float[width * height];
+				for (int j = 0; j < height; ++j) {
+					for (int k = 0; k < width; ++k) {
+						expected[j * width + k] = world.getLight(x + k, y + j);
+					}
+				}
+
+				scrambleLight(world, random);
+				solver.computeLight(world, x, y, width, height);
+				for (int j = 0; j < height; ++j) {
+					for (int k = 0; k < width; ++k) {
+						Assert.assertEquals("Light at " + (x + k) + ", " + (y + j) + " of region "
+								+ x + ", " + y + ", " + width + "x" + height,
+								expected[j * width + k], world.getLight(x + k, y + j), 0f);
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Creates a world with a steep surface, with narrow shafts and overhangs,
+	 * without depending on the registry. Rows are filled from the bottom, as the
+	 * surface of a column is found by looking down from the changed tile.
+	 */
+	static World createWorld(Random random) {
+		BasicTileType air = new BasicTileType();
+		air.setSolid(false);
+		BasicTileType solid = new BasicTileType();
+
+		// Cliffs of random width, so that much of the light comes in from the side
+		int[] surface = new int[WIDTH];
+		for (int i = 0; i < WIDTH;) {
+			int level = random.nextInt(HEIGHT + 1);
+			for (int end = Math.min(WIDTH, i + 1 + random.nextInt(12)); i < end; ++i) {
+				surface[i] = level;
+			}
+		}
+
+		// A plateau lit only from above, just within reach of the tile below it
+		int plateau = LightSolver.TILE_SIZE + LightSolver.RADIUS - 1;
+		for (int i = 100; i < 140; ++i) {
+			surface[i] = i < 110 || i >= 130 ? HEIGHT : plateau;
+		}
+
+		World world = new World(WIDTH, HEIGHT, 0L);
+		for (int j = 0; j < HEIGHT; ++j) {
+			for (int i = 0; i < WIDTH; ++i) {
+				boolean floating = j > surface[i] && j < surface[i] + 4 && random.nextInt(8) == 0;
+				world.setTileType(i, j, j < surface[i] || floating ? solid : air);
+			}
+		}
+		return world;
+	}
+
+	private static void scrambleLight(World world, Random random) {
+		for (int j = 0; j < HEIGHT; ++j) {
+			for (int i = 0; i < WIDTH; ++i) {
+				world.setLight(i, j, random.nextFloat());
+			}
+		}
+	}
+}
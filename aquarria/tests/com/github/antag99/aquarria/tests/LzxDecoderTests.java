@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.antag99.aquarria.xnb.LzxDecoder;
+
+/**
+ * Decodes hand-built aligned and uncompressed blocks, which the encoder
+ * used by the benchmarks never produces.
+ */
+public class LzxDecoderTests {
+	private static final int BLOCK_VERBATIM = 1;
+	private static final int BLOCK_ALIGNED = 2;
+	private static final int BLOCK_UNCOMPRESSED = 3;
+
+	private static final int MAIN_ELEMENTS = 256 + (16 << 4);
+	private static final int LENGTH_ELEMENTS = 249;
+
+	private static final int[] positionBase = new int[51];
+	private static final int[] extraBits = new int[52];
+
+	static {
+		for (int i = 0, j = 0; i <= 50; i += 2) {
+			extraBits[i] = extraBits[i + 1] = j;
+			if ((i != 0) && (j < 17))
+				j++;
+		}
+		for (int i = 0, j = 0; i <= 50; i++) {
+			positionBase[i] = j;
+			j += 1 << extraBits[i];
+		}
+	}
+
+	/* Complete codes; aligned bits are uneven, so that they differ from verbatim bits */
+	private static final byte[] mainLengths = filledLengths(MAIN_ELEMENTS, MAIN_ELEMENTS, 9);
+	private static final byte[] lengthLengths = filledLengths(LENGTH_ELEMENTS, 7, 7);
+	private static final byte[] alignedLengths = { 1, 2, 3, 4, 5, 6, 7, 7 };
+	private static final byte[] preLengths = filledLengths(20, 12, 4);
+
+	@Test
+	public void testAlignedBlock() {
+		Random random = new Random(42);
+		byte[] literals = new byte[1200];
+		random.nextBytes(literals);
+
+		StreamWriter writer = new StreamWriter();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+		// Offsets with no extra bits, verbatim bits only, aligned bits only, and both
+		int[][] matches = { { 1, 5 }, { 3, 4 }, { 10, 9 }, { 20, 6 }, { 100, 40 }, { 1000, 257 }, { 1, 3 } };
+		int blockLength = literals.length;
+		for (int[] match : matches)
+			blockLength += match[1];
+
+		writer.writeCompressedHeader(BLOCK_ALIGNED, blockLength);
+		for (byte literal : literals) {
+			writer.writeLiteral(literal);
+			expected.write(literal);
+		}
+		for (int[] match : matches) {
+			writer.writeMatch(match[0], match[1], true);
+			copy(expected, match[0], match[1]);
+		}
+
+		assertDecodes(expected.toByteArray(), writer.finishFrame(blockLength));
+	}
+
+	@Test
+	public void testUncompressedBlocks() {
+		StreamWriter writer = new StreamWriter();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+		// Odd lengths are padded to a whole word before the next block
+		byte[] first = "Uncompressed".getBytes();
+		byte[] second = "odd block".getBytes();
+		writer.writeUncompressed(first, 3, 7, 11);
+		expected.write(first, 0, first.length);
+		writer.writeUncompressed(second, 5, 3, 7);
+		expected.write(second, 0, second.length);
+
+		// The repeated offsets are taken from the last uncompressed header
+		int[] lengths = { 4, 6, 8 };
+		writer.writeCompressedHeader(BLOCK_VERBATIM, 1 + 4 + 6 + 8);
+		writer.writeLiteral((byte) '!');
+		expected.write('!');
+		for (int i = 0; i < 3; ++i) {
+			writer.writeRepeatedMatch(i, lengths[i]);
+		}
+		copy(expected, 5, 4); // R0
+		copy(expected, 3, 6); // R1, swapped with R0
+		copy(expected, 7, 8); // R2, swapped with R0
+
+		int frameSize = first.length + second.length + 1 + 4 + 6 + 8;
+		assertDecodes(expected.toByteArray(), writer.finishFrame(frameSize));
+	}
+
+	private static void assertDecodes(byte[] expected, byte[] stream) {
+		LzxDecoder decoder = new LzxDecoder();
+		ByteBuffer[] inputs = { ByteBuffer.wrap(stream), ByteBuffer.allocateDirect(stream.length) };
+		inputs[1].put(stream).flip();
+
+		for (ByteBuffer input : inputs) {
+			ByteBuffer output = ByteBuffer.allocate(expected.length);
+			decoder.decompress(input, stream.length, output, expected.length);
+			Assert.assertEquals(stream.length, input.position());
+			Assert.assertArrayEquals(expected, output.array());
+		}
+	}
+
+	/** Repeats earlier output, byte by byte so that overlapping matches repeat too */
+	private static void copy(ByteArrayOutputStream output, int offset, int length) {
+		byte[] data = output.toByteArray();
+		byte[] copied = Arrays.copyOf(data, data.length + length);
+		for (int i = data.length; i < copied.length; ++i)
+			copied[i] = copied[i - offset];
+		output.write(copied, data.length, length);
+	}
+
+	/** Gives the first count elements the given length, and the rest one more */
+	private static byte[] filledLengths(int elements, int count, int length) {
+		byte[] lengths = new byte[elements];
+		Arrays.fill(lengths, (byte) (length + 1));
+		Arrays.fill(lengths, 0, count, (byte) length);
+		return lengths;
+	}
+
+	/** Assigns canonical codes: shorter codes first, then by symbol */
+	private static int[] buildCodes(byte[] lengths) {
+		int[] codes = new int[lengths.length];
+		int code = 0;
+		for (int length = 1; length <= 16; ++length) {
+			for (int symbol = 0; symbol < lengths.length; ++symbol)
+				if (lengths[symbol] == length)
+					codes[symbol] = code++;
+			code <<= 1;
+		}
+		return codes;
+	}
+
+	/** Writes a single frame of LZX blocks, with the same trees for every compressed block */
+	private static class StreamWriter {
+		private ByteArrayOutputStream output = new ByteArrayOutputStream();
+		private int bitBuffer;
+		private int bitCount;
+
+		private int[] mainCodes = buildCodes(mainLengths);
+		private int[] lengthCodes = buildCodes(lengthLengths);
+		private int[] alignedCodes = buildCodes(alignedLengths);
+		private int[] preCodes = buildCodes(preLengths);
+
+		/* Tree lengths of the previous block, which the length encoding is relative to */
+		private byte[] previousMainLengths = new byte[MAIN_ELEMENTS];
+		private byte[] previousLengthLengths = new byte[LENGTH_ELEMENTS];
+
+		public StreamWriter() {
+			write(0, 1); // No intel E8 translation
+		}
+
+		public void writeCompressedHeader(int blockType, int length) {
+			write(blockType, 3);
+			write(length >>> 8, 16);
+			write(length & 0xff, 8);
+			if (blockType == BLOCK_ALIGNED) {
+				for (byte alignedLength : alignedLengths)
+					write(alignedLength, 3);
+			}
+			writeLengths(mainLengths, previousMainLengths, 0, 256);
+			writeLengths(mainLengths, previousMainLengths, 256, MAIN_ELEMENTS);
+			writeLengths(lengthLengths, previousLengthLengths, 0, LENGTH_ELEMENTS);
+			previousMainLengths = mainLengths;
+			previousLengthLengths = lengthLengths;
+		}
+
+		public void writeUncompressed(byte[] data, int r0, int r1, int r2) {
+			write(BLOCK_UNCOMPRESSED, 3);
+			write(data.length >>> 8, 16);
+			write(data.length & 0xff, 8);
+			// 1-16 pad bits align the stream to a word
+			write(0, 16 - bitCount);
+			writeInt(r0);
+			writeInt(r1);
+			writeInt(r2);
+			output.write(data, 0, data.length);
+			if ((data.length & 1) == 1)
+				output.write(0);
+		}
+
+		public void writeLiteral(byte literal) {
+			write(mainCodes[literal & 0xff], mainLengths[literal & 0xff]);
+		}
+
+		public void writeMatch(int offset, int length, boolean aligned) {
+			int formattedOffset = offset + 2;
+			int slot = 3;
+			while (positionBase[slot + 1] <= formattedOffset)
+				slot++;
+			writeMatchHeader(slot, length);
+
+			int extra = extraBits[slot];
+			int footer = formattedOffset - positionBase[slot];
+			if (aligned && extra >= 3) {
+				write(footer >>> 3, extra - 3);
+				write(alignedCodes[footer & 7], alignedLengths[footer & 7]);
+			} else {
+				write(footer, extra);
+			}
+		}
+
+		public void writeRepeatedMatch(int repeatedOffset, int length) {
+			writeMatchHeader(repeatedOffset, length);
+		}
+
+		private void writeMatchHeader(int slot, int length) {
+			int lengthHeader = Math.min(length - 2, 7);
+			int mainElement = 256 + (slot << 3 | lengthHeader);
+			write(mainCodes[mainElement], mainLengths[mainElement]);
+			if (lengthHeader == 7)
+				write(lengthCodes[length - 9], lengthLengths[length - 9]);
+		}
+
+		/** Writes tree lengths as deltas against the previous block, using the pretree */
+		private void writeLengths(byte[] lengths, byte[] previous, int first, int last) {
+			for (int i = 0; i < 20; ++i)
+				write(preLengths[i], 4);
+			for (int i = first; i < last; ++i) {
+				int delta = (previous[i] - lengths[i] + 17) % 17;
+				write(preCodes[delta], preLengths[delta]);
+			}
+		}
+
+		private void writeInt(int value) {
+			for (int i = 0; i < 4; ++i)
+				output.write(value >>> (i * 8));
+		}
+
+		/** Writes bits most significant first into little-endian 16-bit words */
+		private void write(int value, int count) {
+			for (int i = count - 1; i >= 0; --i) {
+				bitBuffer = (bitBuffer << 1) | ((value >>> i) & 1);
+				if (++bitCount == 16) {
+					output.write(bitBuffer);
+					output.write(bitBuffer >>> 8);
+					bitBuffer = 0;
+					bitCount = 0;
+				}
+			}
+		}
+
+		/** Pads the last word, and frames the blocks with the size of their output */
+		public byte[] finishFrame(int frameSize) {
+			if (bitCount != 0)
+				write(0, 16 - bitCount);
+			byte[] blocks = output.toByteArray();
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			frame.write(0xFF);
+			frame.write(frameSize >>> 8);
+			frame.write(frameSize);
+			frame.write(blocks.length >>> 8);
+			frame.write(blocks.length);
+			frame.write(blocks, 0, blocks.length);
+			return frame.toByteArray();
+		}
+	}
+}
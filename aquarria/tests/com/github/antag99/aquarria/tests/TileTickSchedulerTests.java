@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.tests;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.github.antag99.aquarria.world.TileTickScheduler;
+
+public class TileTickSchedulerTests {
+	private IntArray due = new IntArray();
+
+	@Test
+	public void testDelaysAcrossLevels() {
+		// Delays at the edges of the first two levels, from ticks that aren't slot aligned
+		int[] delays = { 1, 63, 64, 4095, 4096 };
+		long[] starts = { 0, 1, 37, 63, 65, 4091, 4097, 262141 };
+
+		for (long start : starts) {
+			for (int delay : delays) {
+				TileTickScheduler scheduler = new TileTickScheduler();
+				advanceTo(scheduler, start);
+				scheduler.schedule(7, delay);
+				scheduler.schedule(8, delay + 1);
+
+				String message = "delay " + delay + " from tick " + start;
+				Assert.assertEquals(message, start + delay, runUntilTicked(scheduler, 7, start + MAX_WAIT));
+				Assert.assertEquals(message, start + delay + 1, runUntilTicked(scheduler, 8, start + MAX_WAIT));
+				Assert.assertEquals(message, 0, scheduler.getPendingCount());
+				Assert.assertEquals(message, -1, runUntilTicked(scheduler, -1, start + MAX_WAIT));
+			}
+		}
+	}
+
+	@Test
+	public void testRescheduleEarlier() {
+		TileTickScheduler scheduler = new TileTickScheduler();
+		advanceTo(scheduler, 30);
+		scheduler.schedule(3, 5000);
+		scheduler.schedule(3, 70);
+		scheduler.schedule(3, 10);
+
+		Assert.assertEquals(40, runUntilTicked(scheduler, 3, MAX_WAIT));
+		// The replaced ticks are not run
+		Assert.assertFalse(scheduler.isScheduled(3));
+		Assert.assertEquals(-1, runUntilTicked(scheduler, 3, MAX_WAIT));
+	}
+
+	@Test
+	public void testRescheduleLater() {
+		TileTickScheduler scheduler = new TileTickScheduler();
+		advanceTo(scheduler, 30);
+		scheduler.schedule(3, 10);
+		scheduler.schedule(3, 70);
+		scheduler.schedule(3, 5000);
+
+		// The earlier tick is kept
+		Assert.assertEquals(40, runUntilTicked(scheduler, 3, MAX_WAIT));
+
+		// Once run, the cell can be scheduled again, also at the tick of a replaced one
+		scheduler.schedule(3, (int) (5030 - scheduler.getCurrentTick()));
+		Assert.assertEquals(5030, runUntilTicked(scheduler, 3, MAX_WAIT));
+		Assert.assertEquals(-1, runUntilTicked(scheduler, 3, MAX_WAIT));
+	}
+
+	@Test
+	public void testClear() {
+		TileTickScheduler scheduler = new TileTickScheduler();
+		advanceTo(scheduler, 11);
+		scheduler.schedule(1, 1);
+		scheduler.schedule(2, 100);
+		scheduler.schedule(3, 5000);
+		Assert.assertEquals(3, scheduler.getPendingCount());
+
+		scheduler.clear();
+		Assert.assertEquals(0, scheduler.getPendingCount());
+		Assert.assertFalse(scheduler.isScheduled(2));
+
+		scheduler.schedule(2, 20);
+		Assert.assertEquals(31, runUntilTicked(scheduler, 2, MAX_WAIT));
+		Assert.assertEquals(-1, runUntilTicked(scheduler, -1, MAX_WAIT));
+	}
+
+	/* Longer than any delay used, to check that nothing else comes due */
+	private static final long MAX_WAIT = 2 * 4096 + 64;
+
+	private void advanceTo(TileTickScheduler scheduler, long tick) {
+		while (scheduler.getCurrentTick() < tick) {
+			scheduler.advance(due);
+			Assert.assertEquals(0, due.size);
+		}
+	}
+
+	/**
+	 * Advances until the given cell is ticked, returning that tick, or -1 if it
+	 * isn't ticked before the given tick. No other cell may come due.
+	 */
+	private long runUntilTicked(TileTickScheduler scheduler, int cell, long until) {
+		while (scheduler.getCurrentTick() < until) {
+			due.clear();
+			scheduler.advance(due);
+			for (int i = 0; i < due.size; ++i) {
+				Assert.assertEquals("Unexpected tick at " + scheduler.getCurrentTick(), cell, due.get(i));
+			}
+			if (due.size != 0) {
+				Assert.assertEquals(1, due.size);
+				return scheduler.getCurrentTick();
+			}
+		}
+		return -1;
+	}
+}
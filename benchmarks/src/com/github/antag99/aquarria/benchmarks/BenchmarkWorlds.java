@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.github.antag99.aquarria.BasicItemType;
+import com.github.antag99.aquarria.BasicTileType;
+import com.github.antag99.aquarria.BasicType;
+import com.github.antag99.aquarria.BasicWallType;
+import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.TreeTileType;
+import com.github.antag99.aquarria.Type;
+import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldGenerator;
+
+/**
+ * Sets up the registry and worlds without any assets or GL context, so that
+ * the game logic can be benchmarked headless. Worlds are seeded, so every
+ * run simulates the same thing.
+ */
+public final class BenchmarkWorlds {
+	private BenchmarkWorlds() {
+	}
+
+	/**
+	 * Registers the types the game refers to, without any textures.
+	 * Does nothing if the registry has already been initialized.
+	 */
+	public static synchronized void initializeRegistry() {
+		if (GameRegistry.airTile != null)
+			return;
+
+		Array<Type> types = new Array<>();
+		types.add(tile(new BasicTileType(), "airTile", false, null));
+		types.add(tile(new BasicTileType(), "stone", true, "stone"));
+		types.add(tile(new BasicTileType(), "dirt", true, "dirt"));
+		types.add(tile(new BasicTileType(), "grass", true, "dirt"));
+		types.add(tile(new TreeTileType(), "tree", false, null));
+
+		types.add(named(new BasicWallType(), "airWall"));
+		types.add(named(new BasicWallType(), "dirtWall"));
+
+		for (String id : new String[] { "airItem", "pickaxe", "hammer", "dirt", "stone", "dirtWall", "stoneWall" }) {
+			BasicItemType item = named(new BasicItemType(), id);
+			item.setWidth(16f);
+			item.setHeight(16f);
+			item.setMaxStack(id.equals("pickaxe") || id.equals("hammer") ? 1 : 999);
+			types.add(item);
+		}
+
+		GameRegistry.initialize(types);
+	}
+
+	private static BasicTileType tile(BasicTileType type, String id, boolean solid, String drop) {
+		named(type, id);
+		type.setSolid(solid);
+		type.setDrop(drop);
+		return type;
+	}
+
+	private static <T extends BasicType> T named(T type, String id) {
+		type.setId(id);
+		type.setName(id);
+		return type;
+	}
+
+	/**
+	 * Generates a world with the given seed
+	 */
+	public static World generate(int width, int height, long seed) {
+		initializeRegistry();
+
+		World world = new World(width, height, seed);
+		new WorldGenerator(world, seed).generate();
+		return world;
+	}
+}
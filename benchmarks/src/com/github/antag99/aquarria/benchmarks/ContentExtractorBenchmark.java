@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.github.antag99.aquarria.ContentExtractor;
+
+/**
+ * Measures how {@link ContentExtractor#extract()} scales with the
+ * amount of worker threads, on a set of synthetic textures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContentExtractorBenchmark {
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	@Param({ "64" })
+	public int images;
+
+	@Param({ "512" })
+	public int imageSize;
+
+	private FileHandle workDirectory;
+	private FileHandle outputDirectory;
+	private ContentExtractor extractor;
+
+	@Setup
+	public void setup() {
+		GdxNativesLoader.load();
+
+		workDirectory = FileHandle.tempDirectory("aquarria-benchmark");
+		FileHandle contentDirectory = workDirectory.child("Content");
+		outputDirectory = workDirectory.child("assets");
+
+		FileHandle imagesDirectory = contentDirectory.child("Images");
+		for (int i = 0; i < images; ++i) {
+			XnbFiles.write(imagesDirectory.child("Image_" + i + ".xnb"),
+					XnbFiles.createTexture(imageSize, imageSize, i));
+		}
+
+		extractor = new ContentExtractor(contentDirectory, outputDirectory);
+		extractor.setThreadCount(threads);
+	}
+
+	@Setup(Level.Iteration)
+	public void clearOutput() {
+		// Extraction is incremental; start from scratch every time
+		outputDirectory.deleteDirectory();
+	}
+
+	@TearDown
+	public void tearDown() {
+		workDirectory.deleteDirectory();
+	}
+
+	@Benchmark
+	public void extract() {
+		extractor.extract();
+	}
+}
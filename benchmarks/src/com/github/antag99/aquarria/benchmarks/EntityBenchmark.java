@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.Item;
+import com.github.antag99.aquarria.entity.Entity;
+import com.github.antag99.aquarria.entity.ItemEntity;
+import com.github.antag99.aquarria.world.World;
+
+/**
+ * Measures collision detection and physics of a single entity, either
+ * resting on the ground or falling through the air.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+	private static final float FRAME = 1f / 60f;
+
+	@Param({ "ground", "air" })
+	public String placement;
+
+	/** Size of the entity in tiles */
+	@Param({ "1", "3" })
+	public int size;
+
+	private World world;
+	private Entity entity;
+	private float startX, startY;
+
+	@Setup
+	public void setup() {
+		world = BenchmarkWorlds.generate(1024, 512, 0L);
+
+		Item item = new Item(GameRegistry.dirtItem, 1);
+		final float entitySize = size;
+		entity = new ItemEntity(item) {
+			@Override
+			public float getWidth() {
+				return entitySize;
+			}
+
+			@Override
+			public float getHeight() {
+				return entitySize;
+			}
+		};
+		world.addEntity(entity);
+
+		// Find a spot on the surface where the entity fits
+		int x = world.getWidth() / 2;
+		int surfaceLevel = 0;
+		for (int i = x; i < x + size; ++i) {
+			surfaceLevel = Math.max(surfaceLevel, world.getSurfaceLevel(i));
+		}
+		startX = x + 0.25f;
+		startY = placement.equals("air") ? surfaceLevel + 32f : surfaceLevel;
+
+		entity.setX(startX);
+		entity.setY(startY);
+		if (entity.inCollision()) {
+			throw new IllegalStateException("Entity starts in a collision");
+		}
+	}
+
+	@Benchmark
+	public boolean inCollision() {
+		return entity.inCollision();
+	}
+
+	/** Restores the position first, so that every call does the same work */
+	@Benchmark
+	public Entity update() {
+		entity.setX(startX);
+		entity.setY(startY);
+		entity.setVelocityX(4f);
+		entity.setVelocityY(0f);
+		entity.update(FRAME);
+		return entity;
+	}
+}
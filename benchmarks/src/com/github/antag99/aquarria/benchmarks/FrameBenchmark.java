@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.BlockFrame;
+import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.TreeFrame;
+import com.github.antag99.aquarria.world.World;
+
+/**
+ * Measures the frame lookups done for every visible tile when rendering.
+ * Scores are per lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+	private static final int TREE_TILES = 1024;
+
+	private World world;
+	private int[] treeX = new int[TREE_TILES];
+	private int[] treeY = new int[TREE_TILES];
+
+	@Setup
+	public void setup() {
+		world = BenchmarkWorlds.generate(1024, 512, 0L);
+
+		// Collect the positions of tree tiles, repeating them if there are few
+		int count = 0;
+		for (int i = 0; i < world.getWidth() && count < TREE_TILES; ++i) {
+			for (int j = 0; j < world.getHeight() && count < TREE_TILES; ++j) {
+				if (world.getTileType(i, j) == GameRegistry.treeTile) {
+					treeX[count] = i;
+					treeY[count] = j;
+					count++;
+				}
+			}
+		}
+		if (count == 0) {
+			throw new IllegalStateException("No trees were generated");
+		}
+		for (int i = count; i < TREE_TILES; ++i) {
+			treeX[i] = treeX[i % count];
+			treeY[i] = treeY[i % count];
+		}
+	}
+
+	/** Looks up every combination of adjacent solid tiles */
+	@Benchmark
+	@OperationsPerInvocation(16)
+	public int blockFrame() {
+		int hash = 0;
+		for (int i = 0; i < 16; ++i) {
+			BlockFrame frame = BlockFrame.findFrame((i & 1) != 0, (i & 2) != 0, (i & 4) != 0, (i & 8) != 0);
+			hash += frame.ordinal();
+		}
+		return hash;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TREE_TILES)
+	public int treeFrame() {
+		int hash = 0;
+		for (int i = 0; i < TREE_TILES; ++i) {
+			TreeFrame frame = TreeFrame.findFrame(world, treeX[i], treeY[i]);
+			hash += frame.ordinal();
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.world.World;
+
+/**
+ * Measures {@link World#computeLight(int, int, int, int)} around the surface
+ * of a generated world, for regions of the size WorldRenderer lights. The
+ * renderer adds a margin of the largest viewport dimension on each side, so
+ * 80x45 tiles (1280x720 pixels) are lit as 240x205 tiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightBenchmark {
+	/** Viewport size in tiles */
+	@Param({ "40x23", "80x45", "120x68", "240x135" })
+	public String viewport;
+
+	private World world;
+	private int x, y, width, height;
+
+	@Setup
+	public void setup() {
+		world = BenchmarkWorlds.generate(1024, 512, 0L);
+
+		int separator = viewport.indexOf('x');
+		int viewportWidth = Integer.parseInt(viewport.substring(0, separator));
+		int viewportHeight = Integer.parseInt(viewport.substring(separator + 1));
+		int margin = Math.max(viewportWidth, viewportHeight);
+
+		width = Math.min(viewportWidth + margin * 2, world.getWidth());
+		height = Math.min(viewportHeight + margin * 2, world.getHeight());
+
+		// Centered on the surface, where there is both open air and terrain
+		int centerX = world.getWidth() / 2;
+		int centerY = world.getSurfaceLevel(centerX);
+		x = Math.max(0, Math.min(centerX - width / 2, world.getWidth() - width));
+		y = Math.max(0, Math.min(centerY - height / 2, world.getHeight() - height));
+	}
+
+	@Benchmark
+	public World computeLight() {
+		world.computeLight(x, y, width, height);
+		return world;
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.world.World;
+
+/**
+ * Measures liquid flow, by updating a world without entities for one 60 Hz
+ * frame (four liquid ticks). Every iteration starts from the same scenario.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiquidFlowBenchmark {
+	private static final float FRAME = 1f / 60f;
+
+	/**
+	 * pool: a basin of mostly settled water; fall: a block of water dropping
+	 * onto a floor; surface: water poured over generated terrain
+	 */
+	@Param({ "pool", "fall", "surface" })
+	public String scenario;
+
+	private World world;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		BenchmarkWorlds.initializeRegistry();
+
+		if (scenario.equals("pool")) {
+			world = createFloor(256, 128);
+			for (int j = 1; j < 64; ++j) {
+				world.setTileType(64, j, GameRegistry.stoneTile);
+				world.setTileType(191, j, GameRegistry.stoneTile);
+			}
+			fill(65, 1, 126, 48);
+		} else if (scenario.equals("fall")) {
+			world = createFloor(256, 128);
+			fill(112, 64, 32, 32);
+		} else if (scenario.equals("surface")) {
+			world = BenchmarkWorlds.generate(512, 256, 0L);
+			for (int i = 0; i < world.getWidth(); ++i) {
+				int surfaceLevel = world.getSurfaceLevel(i);
+				fill(i, surfaceLevel + 8, 1, 4);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown scenario: " + scenario);
+		}
+	}
+
+	private static World createFloor(int width, int height) {
+		World world = new World(width, height, 0L);
+		for (int i = 0; i < width; ++i) {
+			world.setTileType(i, 0, GameRegistry.stoneTile);
+		}
+		return world;
+	}
+
+	private void fill(int x, int y, int width, int height) {
+		for (int i = x; i < x + width; ++i) {
+			for (int j = y; j < y + height; ++j) {
+				if (world.inBounds(i, j) && !world.getTileType(i, j).isSolid())
+					world.setLiquid(i, j, 255);
+			}
+		}
+	}
+
+	@Benchmark
+	public World update() {
+		world.update(FRAME);
+		return world;
+	}
+}
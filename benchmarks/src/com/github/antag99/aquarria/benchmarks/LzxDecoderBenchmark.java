@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.xnb.LzxDecoder;
+
+/**
+ * Measures {@link LzxDecoder} throughput on synthetic LZX streams. Every
+ * operation decodes exactly one MiB, so the reported ops/s is MiB/s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LzxDecoderBenchmark {
+	private static final int SIZE = 1 << 20;
+
+	/** Kind of data; textures compress well, noise hardly at all */
+	@Param({ "texture", "noise" })
+	public String data;
+
+	@Param({ "false", "true" })
+	public boolean direct;
+
+	private LzxDecoder decoder;
+	private ByteBuffer input;
+	private ByteBuffer output;
+
+	@Setup
+	public void setup() {
+		byte[] uncompressed;
+		if (data.equals("texture")) {
+			uncompressed = Arrays.copyOf(XnbFiles.createTexture(512, 512, 0), SIZE);
+		} else if (data.equals("noise")) {
+			uncompressed = new byte[SIZE];
+			new Random(0).nextBytes(uncompressed);
+		} else {
+			throw new IllegalArgumentException("Unknown data: " + data);
+		}
+
+		byte[] compressed = LzxEncoder.encode(uncompressed);
+		input = direct ? ByteBuffer.allocateDirect(compressed.length) : ByteBuffer.allocate(compressed.length);
+		input.put(compressed).flip();
+		output = direct ? ByteBuffer.allocateDirect(SIZE) : ByteBuffer.allocate(SIZE);
+		decoder = new LzxDecoder();
+
+		// Make sure that the stream actually round-trips
+		decompress();
+		byte[] decompressed = new byte[SIZE];
+		output.flip();
+		output.get(decompressed);
+		if (!Arrays.equals(decompressed, uncompressed)) {
+			throw new IllegalStateException("LZX stream does not round-trip");
+		}
+	}
+
+	@Benchmark
+	public ByteBuffer decompress() {
+		input.position(0);
+		output.clear();
+		decoder.decompress(input, input.limit(), output, SIZE);
+		return output;
+	}
+}
@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Minimal LZX encoder producing the framed streams found in compressed XNB
+ * files. It only emits verbatim blocks from a greedy LZ77 parse, which is
+ * enough to create realistic input for the decoder benchmarks.
+ */
+public final class LzxEncoder {
+	private static final int FRAME_SIZE = 0x8000;
+	private static final int MAIN_ELEMENTS = 256 + (16 << 4);
+	private static final int LENGTH_ELEMENTS = 249;
+	private static final int MIN_MATCH = 3;
+	private static final int MAX_MATCH = 257;
+	private static final int MAX_OFFSET = FRAME_SIZE;
+	private static final int HASH_BITS = 15;
+	private static final int MAX_CHAIN = 16;
+
+	private static final int[] positionBase = new int[51];
+	private static final int[] extraBits = new int[52];
+
+	static {
+		for (int i = 0, j = 0; i <= 50; i += 2) {
+			extraBits[i] = extraBits[i + 1] = j;
+			if ((i != 0) && (j < 17))
+				j++;
+		}
+		for (int i = 0, j = 0; i <= 50; i++) {
+			positionBase[i] = j;
+			j += 1 << extraBits[i];
+		}
+	}
+
+	/* Tree lengths of the previous block, which the length encoding is relative to */
+	private byte[] previousMainLengths = new byte[MAIN_ELEMENTS];
+	private byte[] previousLengthLengths = new byte[LENGTH_ELEMENTS];
+
+	private int[] head = new int[1 << HASH_BITS];
+	private int[] chain;
+
+	private LzxEncoder() {
+	}
+
+	/**
+	 * Compresses the given data into a sequence of LZX frames, as read by
+	 * {@code LzxDecoder.decompress}.
+	 */
+	public static byte[] encode(byte[] data) {
+		return new LzxEncoder().encodeFrames(data);
+	}
+
+	private byte[] encodeFrames(byte[] data) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+		Arrays.fill(head, -1);
+		chain = new int[data.length];
+
+		for (int frameStart = 0; frameStart < data.length; frameStart += FRAME_SIZE) {
+			int frameSize = Math.min(FRAME_SIZE, data.length - frameStart);
+			byte[] block = encodeFrame(data, frameStart, frameSize, frameStart == 0);
+
+			if (frameSize == FRAME_SIZE) {
+				output.write(block.length >>> 8);
+				output.write(block.length);
+			} else {
+				output.write(0xFF);
+				output.write(frameSize >>> 8);
+				output.write(frameSize);
+				output.write(block.length >>> 8);
+				output.write(block.length);
+			}
+			output.write(block, 0, block.length);
+		}
+
+		return output.toByteArray();
+	}
+
+	private byte[] encodeFrame(byte[] data, int start, int size, boolean first) {
+		int end = start + size;
+
+		// Tokens are either literals (>= 0) or matches (length << 16 | offset, negated)
+		int[] tokens = new int[size];
+		int tokenCount = 0;
+		int[] mainFrequencies = new int[MAIN_ELEMENTS];
+		int[] lengthFrequencies = new int[LENGTH_ELEMENTS];
+
+		for (int pos = start; pos < end;) {
+			int bestLength = 0;
+			int bestOffset = 0;
+
+			if (pos + MIN_MATCH <= end) {
+				int hash = hash(data, pos);
+				for (int candidate = head[hash], n = 0; candidate >= 0 && pos - candidate <= MAX_OFFSET && n < MAX_CHAIN; candidate = chain[candidate], n++) {
+					int limit = Math.min(MAX_MATCH, end - pos);
+					int length = 0;
+					while (length < limit && data[candidate + length] == data[pos + length])
+						length++;
+					if (length > bestLength) {
+						bestLength = length;
+						bestOffset = pos - candidate;
+					}
+				}
+			}
+
+			int advance;
+			if (bestLength >= MIN_MATCH) {
+				tokens[tokenCount++] = -((bestLength << 16) | bestOffset);
+				int lengthHeader = Math.min(bestLength - 2, 7);
+				mainFrequencies[256 + (positionSlot(bestOffset + 2) << 3 | lengthHeader)]++;
+				if (lengthHeader == 7)
+					lengthFrequencies[bestLength - 2 - 7]++;
+				advance = bestLength;
+			} else {
+				tokens[tokenCount++] = data[pos] & 0xff;
+				mainFrequencies[data[pos] & 0xff]++;
+				advance = 1;
+			}
+
+			for (int i = 0; i < advance; ++i, ++pos) {
+				if (pos + MIN_MATCH <= data.length) {
+					int hash = hash(data, pos);
+					chain[pos] = head[hash];
+					head[hash] = pos;
+				}
+			}
+		}
+
+		byte[] mainLengths = buildLengths(mainFrequencies, 16);
+		byte[] lengthLengths = buildLengths(lengthFrequencies, 16);
+		int[] mainCodes = buildCodes(mainLengths);
+		int[] lengthCodes = buildCodes(lengthLengths);
+
+		BitWriter writer = new BitWriter();
+		if (first)
+			writer.write(0, 1); // No intel E8 translation
+
+		writer.write(1, 3); // Verbatim block
+		writer.write(size >>> 8, 16);
+		writer.write(size & 0xff, 8);
+		writeLengths(writer, mainLengths, previousMainLengths, 0, 256);
+		writeLengths(writer, mainLengths, previousMainLengths, 256, MAIN_ELEMENTS);
+		writeLengths(writer, lengthLengths, previousLengthLengths, 0, LENGTH_ELEMENTS);
+		previousMainLengths = mainLengths;
+		previousLengthLengths = lengthLengths;
+
+		for (int i = 0; i < tokenCount; ++i) {
+			int token = tokens[i];
+			if (token >= 0) {
+				writer.write(mainCodes[token], mainLengths[token]);
+				continue;
+			}
+
+			int length = -token >>> 16;
+			int formattedOffset = (-token & 0xffff) + 2;
+			int slot = positionSlot(formattedOffset);
+			int lengthHeader = Math.min(length - 2, 7);
+			int mainElement = 256 + (slot << 3 | lengthHeader);
+			writer.write(mainCodes[mainElement], mainLengths[mainElement]);
+			if (lengthHeader == 7)
+				writer.write(lengthCodes[length - 9], lengthLengths[length - 9]);
+			writer.write(formattedOffset - positionBase[slot], extraBits[slot]);
+		}
+
+		return writer.finish();
+	}
+
+	private static int hash(byte[] data, int pos) {
+		int value = (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff) << 16;
+		return (value * 0x9E3779B1) >>> (32 - HASH_BITS);
+	}
+
+	private static int positionSlot(int formattedOffset) {
+		int slot = 3;
+		while (positionBase[slot + 1] <= formattedOffset)
+			slot++;
+		return slot;
+	}
+
+	/** Writes tree lengths as deltas against the previous block, using a pretree */
+	private static void writeLengths(BitWriter writer, byte[] lengths, byte[] previous, int first, int last) {
+		int[] deltas = new int[last - first];
+		int[] frequencies = new int[20];
+		for (int i = first; i < last; ++i) {
+			int delta = (previous[i] - lengths[i] + 17) % 17;
+			deltas[i - first] = delta;
+			frequencies[delta]++;
+		}
+
+		byte[] preLengths = buildLengths(frequencies, 15);
+		int[] preCodes = buildCodes(preLengths);
+		for (int i = 0; i < 20; ++i)
+			writer.write(preLengths[i], 4);
+		for (int delta : deltas)
+			writer.write(preCodes[delta], preLengths[delta]);
+	}
+
+	/** Builds length-limited Huffman code lengths, flattening the frequencies until they fit */
+	private static byte[] buildLengths(int[] frequencies, int maxLength) {
+		int[] weights = frequencies.clone();
+		int used = 0;
+		for (int weight : weights)
+			if (weight != 0)
+				used++;
+		// The decoder expects complete codes, which needs at least two symbols
+		for (int i = 0; used < 2; ++i) {
+			if (weights[i] == 0) {
+				weights[i] = 1;
+				used++;
+			}
+		}
+
+		while (true) {
+			byte[] lengths = huffmanLengths(weights);
+			int longest = 0;
+			for (byte length : lengths)
+				longest = Math.max(longest, length);
+			if (longest <= maxLength)
+				return lengths;
+			for (int i = 0; i < weights.length; ++i)
+				if (weights[i] != 0)
+					weights[i] = (weights[i] + 1) >>> 1;
+		}
+	}
+
+	private static byte[] huffmanLengths(int[] weights) {
+		int n = weights.length;
+		// Nodes 0..n-1 are leaves, the rest are internal nodes
+		final long[] nodeWeights = new long[n * 2];
+		int[] parents = new int[n * 2];
+		PriorityQueue<Integer> queue = new PriorityQueue<Integer>(n, new java.util.Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int result = Long.compare(nodeWeights[a], nodeWeights[b]);
+				return result != 0 ? result : Integer.compare(a, b);
+			}
+		});
+		for (int i = 0; i < n; ++i) {
+			if (weights[i] != 0) {
+				nodeWeights[i] = weights[i];
+				queue.add(i);
+			}
+		}
+
+		int next = n;
+		while (queue.size() > 1) {
+			int a = queue.poll();
+			int b = queue.poll();
+			nodeWeights[next] = nodeWeights[a] + nodeWeights[b];
+			parents[a] = parents[b] = next;
+			queue.add(next++);
+		}
+
+		int root = next - 1;
+		byte[] lengths = new byte[n];
+		for (int i = 0; i < n; ++i) {
+			if (weights[i] == 0)
+				continue;
+			int depth = 0;
+			for (int node = i; node != root; node = parents[node])
+				depth++;
+			lengths[i] = (byte) depth;
+		}
+		return lengths;
+	}
+
+	/** Assigns canonical codes: shorter codes first, then by symbol */
+	private static int[] buildCodes(byte[] lengths) {
+		int[] codes = new int[lengths.length];
+		int code = 0;
+		for (int length = 1; length <= 16; ++length) {
+			for (int symbol = 0; symbol < lengths.length; ++symbol)
+				if (lengths[symbol] == length)
+					codes[symbol] = code++;
+			code <<= 1;
+		}
+		return codes;
+	}
+
+	/** Writes bits most significant first into little-endian 16-bit words */
+	private static class BitWriter {
+		private ByteArrayOutputStream output = new ByteArrayOutputStream();
+		private int bitBuffer;
+		private int bitCount;
+
+		public void write(int value, int count) {
+			for (int i = count - 1; i >= 0; --i) {
+				bitBuffer = (bitBuffer << 1) | ((value >>> i) & 1);
+				if (++bitCount == 16) {
+					output.write(bitBuffer);
+					output.write(bitBuffer >>> 8);
+					bitBuffer = 0;
+					bitCount = 0;
+				}
+			}
+		}
+
+		public byte[] finish() {
+			if (bitCount != 0)
+				write(0, 16 - bitCount);
+			return output.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.world.World;
+
+/**
+ * Measures the {@link World} accessors, which all go through
+ * {@link World#checkBounds(int, int)}, by sweeping over a region of cells.
+ * Scores are per cell.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldAccessBenchmark {
+	private static final int SIZE = 256;
+	private static final int CELLS = SIZE * SIZE;
+	private static final int LIQUID_SIZE = 64;
+	private static final int LIQUID_CELLS = LIQUID_SIZE * LIQUID_SIZE;
+
+	private World world;
+	private int phase;
+
+	@Setup
+	public void setup() {
+		world = BenchmarkWorlds.generate(1024, 512, 0L);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public int getTileType() {
+		int solid = 0;
+		for (int j = 0; j < SIZE; ++j) {
+			for (int i = 0; i < SIZE; ++i) {
+				if (world.getTileType(i, j).isSolid())
+					solid++;
+			}
+		}
+		return solid;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public int getWallType() {
+		int hash = 0;
+		for (int j = 0; j < SIZE; ++j) {
+			for (int i = 0; i < SIZE; ++i) {
+				hash += System.identityHashCode(world.getWallType(i, j));
+			}
+		}
+		return hash;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public int getLiquid() {
+		int liquid = 0;
+		for (int j = 0; j < SIZE; ++j) {
+			for (int i = 0; i < SIZE; ++i) {
+				liquid += world.getLiquid(i, j);
+			}
+		}
+		return liquid;
+	}
+
+	/**
+	 * Also maintains the set of active liquids; every call moves liquid to the
+	 * other half of the cells. Covers a smaller region, as the cost of that
+	 * grows with the amount of active liquids.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LIQUID_CELLS)
+	public void setLiquid() {
+		phase ^= 1;
+		for (int j = 0; j < LIQUID_SIZE; ++j) {
+			for (int i = 0; i < LIQUID_SIZE; ++i) {
+				world.setLiquid(i, j, ((i ^ j ^ phase) & 1) * 255);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.world.World;
+import com.github.antag99.aquarria.world.WorldGenerator;
+import com.github.antag99.aquarria.world.WorldGeneratorTask;
+
+/**
+ * Measures each {@link WorldGeneratorTask} on its own, on a world the size
+ * of the one the game creates. The tasks before it are run first, so that
+ * every task sees the world it would see during generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WorldGeneratorBenchmark {
+	@Param({ "ClearWorldTask", "TerrainGeneratorTask", "DirtGeneratorTask", "SurfaceWallGeneratorTask",
+			"SurfaceTileGeneratorTask", "TreeGeneratorTask", "SpawnPointTask" })
+	public String task;
+
+	@Param({ "1024x512" })
+	public String size;
+
+	private WorldGenerator generator;
+	private WorldGeneratorTask generatorTask;
+	private long seed;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+		BenchmarkWorlds.initializeRegistry();
+
+		int separator = size.indexOf('x');
+		++seed;
+		World world = new World(Integer.parseInt(size.substring(0, separator)),
+				Integer.parseInt(size.substring(separator + 1)), seed);
+		generator = new WorldGenerator(world, seed);
+
+		generatorTask = null;
+		for (WorldGeneratorTask otherTask : generator.getTasks()) {
+			if (otherTask.getClass().getSimpleName().equals(task)) {
+				generatorTask = otherTask;
+				break;
+			}
+			otherTask.generate(generator, seed);
+		}
+
+		if (generatorTask == null) {
+			throw new IllegalArgumentException("Unknown task: " + task);
+		}
+	}
+
+	@Benchmark
+	public WorldGenerator generate() {
+		generatorTask.generate(generator, seed);
+		return generator;
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import com.badlogic.gdx.files.FileHandle;
+
+/**
+ * Writes synthetic XNB files, so that the content pipeline can be
+ * benchmarked without a Terraria installation.
+ */
+public final class XnbFiles {
+	private static final String TEXTURE_READER = "Microsoft.Xna.Framework.Content.Texture2DReader";
+
+	private XnbFiles() {
+	}
+
+	/**
+	 * Creates the payload of an uncompressed COLOR texture, with some noise in it so
+	 * that the PNG encoder has to do some actual work.
+	 */
+	public static byte[] createTexture(int width, int height, long seed) {
+		Random random = new Random(seed);
+		ByteBuffer buffer = ByteBuffer.allocate(createTextureHeaderSize() + width * height * 4);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		putTypeReader(buffer, TEXTURE_READER);
+
+		buffer.putInt(0); // Surface format (COLOR)
+		buffer.putInt(width);
+		buffer.putInt(height);
+		buffer.putInt(1); // Mip count
+		buffer.putInt(width * height * 4);
+
+		for (int y = 0; y < height; ++y) {
+			for (int x = 0; x < width; ++x) {
+				int shade = (x ^ y) & 0xff;
+				buffer.put((byte) shade);
+				buffer.put((byte) (shade + random.nextInt(8)));
+				buffer.put((byte) (255 - shade));
+				buffer.put((byte) (random.nextInt(4) == 0 ? 0 : 255));
+			}
+		}
+
+		return buffer.array();
+	}
+
+	/**
+	 * Writes an uncompressed XNB file containing the given payload.
+	 */
+	public static void write(FileHandle file, byte[] payload) {
+		ByteBuffer header = ByteBuffer.allocate(10);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		header.put((byte) 'X').put((byte) 'N').put((byte) 'B');
+		header.put((byte) 'w'); // Target platform
+		header.put((byte) 5); // XNA version
+		header.put((byte) 0); // Flags
+		header.putInt(header.capacity() + payload.length);
+
+		file.writeBytes(header.array(), false);
+		file.writeBytes(payload, true);
+	}
+
+	private static int createTextureHeaderSize() {
+		return 1 + 1 + TEXTURE_READER.length() + 4 + 1 + 1 + 5 * 4;
+	}
+
+	private static void putTypeReader(ByteBuffer buffer, String typeReader) {
+		byte[] name = typeReader.getBytes(Charset.forName("UTF-8"));
+		buffer.put((byte) 1); // Type reader count
+		buffer.put((byte) name.length);
+		buffer.put(name);
+		buffer.putInt(0); // Type reader version
+		buffer.put((byte) 0); // Shared resource count
+		buffer.put((byte) 1); // Primary asset
+	}
+}
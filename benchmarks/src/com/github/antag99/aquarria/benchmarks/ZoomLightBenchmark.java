@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2014-2015, Anton Gustafsson
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * * Neither the name of Aquarria nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.github.antag99.aquarria.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.antag99.aquarria.GameRegistry;
+import com.github.antag99.aquarria.world.LightCache;
+import com.github.antag99.aquarria.world.LightOverlay;
+import com.github.antag99.aquarria.world.LightSolver;
+import com.github.antag99.aquarria.world.World;
+
+/**
+ * Measures the light work of a frame at different camera zooms, on a
+ * 1280x720 screen; the view covers zoom squared as many cells. A tile at the
+ * surface in view changes every frame, like when digging. The cached light
+ * with the coarser overlay grid of zoomed out frames is compared with
+ * computing the light of the view every frame, as done without a cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoomLightBenchmark {
+	@Param({ "1", "4" })
+	public int zoom;
+
+	private static final int SCREEN_WIDTH = 1280;
+	private static final int SCREEN_HEIGHT = 720;
+
+	private World world;
+	private LightCache lightCache;
+	private LightOverlay lightOverlay = new LightOverlay();
+	private int x, y, width, height;
+	private int changeX;
+
+	@Setup
+	public void setup() {
+		world = BenchmarkWorlds.generate(1024, 512, 0L);
+		lightCache = new LightCache(new LightSolver(new ForkJoinPool(1)));
+		world.addListener(lightCache);
+		world.flushChanges();
+
+		// The view is centered at the surface, as the renderer would see it
+		width = (int) (SCREEN_WIDTH / World.PIXELS_PER_METER) * zoom;
+		height = (int) (SCREEN_HEIGHT / World.PIXELS_PER_METER) * zoom;
+		changeX = world.getWidth() / 2;
+		x = changeX - width / 2;
+		y = Math.max(0, Math.min(world.getSurfaceLevel(changeX) - height / 2, world.getHeight() - height));
+	}
+
+	@TearDown
+	public void tearDown() {
+		lightCache.getSolver().getPool().shutdown();
+	}
+
+	/*
+	 * Places or removes the tile at the surface in the middle of the view
+	 */
+	private void changeSurface() {
+		int level = world.getSurfaceLevel(changeX);
+		if (world.getTileType(changeX, level - 1) == GameRegistry.dirtTile) {
+			world.setTileType(changeX, level - 1, GameRegistry.airTile);
+		} else {
+			world.setTileType(changeX, level, GameRegistry.dirtTile);
+		}
+		world.flushChanges();
+	}
+
+	@Benchmark
+	public LightOverlay cachedLight() {
+		changeSurface();
+
+		int step = Integer.highestOneBit(zoom);
+		int overlayX = x / step * step;
+		int overlayY = y / step * step;
+		lightCache.update(world, overlayX, overlayY, x + width - overlayX, y + height - overlayY);
+		lightOverlay.update(world, overlayX, overlayY, x + width - overlayX, y + height - overlayY, step);
+		return lightOverlay;
+	}
+
+	@Benchmark
+	public LightOverlay serialLight() {
+		changeSurface();
+
+		int lightX = Math.max(x - LightSolver.RADIUS, 0);
+		int lightY = Math.max(y - LightSolver.RADIUS, 0);
+		int lightEndX = Math.min(x + width + LightSolver.RADIUS, world.getWidth());
+		int lightEndY = Math.min(y + height + LightSolver.RADIUS, world.getHeight());
+		world.computeLight(lightX, lightY, lightEndX - lightX, lightEndY - lightY);
+		lightOverlay.update(world, x, y, width, height);
+		return lightOverlay;
+	}
+}